@@ -0,0 +1,145 @@
+package com.innowise.benchmark;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionProvider;
+import com.innowise.lock.NoOpMigrationLock;
+import com.innowise.model.MigrationSettings;
+import com.innowise.service.MigrationFileReader;
+import com.innowise.service.MigrationManager;
+import com.innowise.service.SchemaManager;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures a full {@link MigrationManager#applyMigrations()} run against an in-memory H2 database in PostgreSQL mode,
+ * so the benchmark runs offline. The number of physical connections opened per run is reported as the
+ * {@code handshakes} counter. {@code groupSize} 0 applies all migrations in one transaction
+ * {@code connections} {@code pooled} shares one pooled session per run, {@code per-call} opens a new physical
+ * connection for every {@link ConnectionManager#getConnection()} call, as the manager did before pooling
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ApplyMigrationsBenchmark {
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    @Param("200")
+    public int migrationCount;
+
+    @Param({"1", "0"})
+    public int groupSize;
+
+    @Param({"pooled", "per-call"})
+    public String connections;
+
+    private String url;
+
+    private Path migrationsDir;
+    private Path cacheDir;
+    private ConnectionManager connectionManager;
+    private MigrationManager migrationManager;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Handshakes {
+        public int handshakes;
+    }
+
+    @Setup(Level.Trial)
+    public void createMigrations() throws Exception {
+        migrationsDir = SyntheticMigrations.createFolder(migrationCount, 20);
+        cacheDir = Files.createTempDirectory("checksum-cache");
+    }
+
+    @Setup(Level.Invocation)
+    public void createDatabase() {
+        url = "jdbc:h2:mem:bench" + DATABASE_COUNTER.incrementAndGet() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+        connectionManager = "per-call".equals(connections) ? new PerCallConnectionManager(url) : new ConnectionManager(url, "sa", "");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setMigrationLock(new NoOpMigrationLock());
+        settings.setGroupSize(groupSize);
+        migrationManager = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                new MigrationFileReader(cacheDir.toString()), settings);
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropDatabase() throws SQLException {
+        connectionManager.close();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMigrations() {
+        SyntheticMigrations.delete(migrationsDir);
+        SyntheticMigrations.delete(cacheDir);
+    }
+
+    @Benchmark
+    public void applyMigrations(Handshakes counters) {
+        migrationManager.applyMigrations();
+        counters.handshakes += connectionManager.getOpenedConnectionCount();
+    }
+
+    /**
+     * Opens a physical connection for every call and never shares a run connection
+     */
+    private static final class PerCallConnectionManager extends ConnectionManager {
+
+        private PerCallConnectionManager(String url) {
+            super(new PerCallConnectionProvider(url));
+        }
+
+        @Override
+        public void beginRun() {
+        }
+
+        @Override
+        public void endRun() {
+        }
+    }
+
+    private static final class PerCallConnectionProvider implements ConnectionProvider {
+
+        private final String url;
+        private final AtomicInteger openedConnections = new AtomicInteger();
+
+        private PerCallConnectionProvider(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            openedConnections.incrementAndGet();
+            return DriverManager.getConnection(url, "sa", "");
+        }
+
+        @Override
+        public int getOpenedConnectionCount() {
+            return openedConnections.get();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.innowise.benchmark;
+
+import com.innowise.model.Migration;
+import com.innowise.service.MigrationFileReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the migration index and checksumming the files, with a cold and a warm checksum cache
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MigrationFileReaderBenchmark {
+
+    @Param("10000")
+    public int migrationCount;
+
+    private Path migrationsDir;
+    private Path coldCacheDir;
+    private Path warmCacheDir;
+
+    @Setup(Level.Trial)
+    public void createMigrations() throws Exception {
+        migrationsDir = SyntheticMigrations.createFolder(migrationCount, 5);
+        warmCacheDir = Files.createTempDirectory("checksum-cache-warm");
+        MigrationFileReader reader = new MigrationFileReader(warmCacheDir.toString());
+        reader.resolveChecksums(reader.loadMigrations(migrationsDir.toString()));
+    }
+
+    @Setup(Level.Invocation)
+    public void createColdCache() throws Exception {
+        coldCacheDir = Files.createTempDirectory("checksum-cache-cold");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteColdCache() {
+        SyntheticMigrations.delete(coldCacheDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMigrations() {
+        SyntheticMigrations.delete(migrationsDir);
+        SyntheticMigrations.delete(warmCacheDir);
+    }
+
+    @Benchmark
+    public List<Migration> loadIndex() {
+        return new MigrationFileReader(warmCacheDir.toString()).loadMigrations(migrationsDir.toString());
+    }
+
+    @Benchmark
+    public List<Migration> loadAndChecksumColdCache() {
+        MigrationFileReader reader = new MigrationFileReader(coldCacheDir.toString());
+        List<Migration> migrations = reader.loadMigrations(migrationsDir.toString());
+        reader.resolveChecksums(migrations);
+        return migrations;
+    }
+
+    @Benchmark
+    public List<Migration> loadAndChecksumWarmCache() {
+        MigrationFileReader reader = new MigrationFileReader(warmCacheDir.toString());
+        List<Migration> migrations = reader.loadMigrations(migrationsDir.toString());
+        reader.resolveChecksums(migrations);
+        return migrations;
+    }
+}
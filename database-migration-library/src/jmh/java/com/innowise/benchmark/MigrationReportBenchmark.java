@@ -0,0 +1,54 @@
+package com.innowise.benchmark;
+
+import com.innowise.model.ReportFormat;
+import com.innowise.service.MigrationReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures streaming large numbers of results to the JSON and NDJSON reports
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MigrationReportBenchmark {
+
+    @Param({"1000", "100000"})
+    public int resultCount;
+
+    @Param({"JSON", "NDJSON"})
+    public ReportFormat format;
+
+    private Path reportFile;
+
+    @Setup
+    public void createReportFile() throws Exception {
+        reportFile = Files.createTempFile("migration-report", ".json");
+    }
+
+    @TearDown
+    public void deleteReportFile() throws Exception {
+        Files.deleteIfExists(reportFile);
+    }
+
+    @Benchmark
+    public void generateReport() {
+        try (MigrationReport report = new MigrationReport(reportFile.toString(), format)) {
+            for (int version = 1; version <= resultCount; version++) {
+                report.addMigrationResult(version, true, "Migration executed successfully");
+            }
+        }
+    }
+}
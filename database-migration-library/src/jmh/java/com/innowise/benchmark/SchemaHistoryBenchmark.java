@@ -0,0 +1,72 @@
+package com.innowise.benchmark;
+
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationDrift;
+import com.innowise.model.MigrationType;
+import com.innowise.model.SchemaHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the applied-history snapshot and the lookups made for every migration file
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchemaHistoryBenchmark {
+
+    @Param("10000")
+    public int migrationCount;
+
+    private SchemaHistory history;
+    private List<Migration> migrations;
+
+    @Setup
+    public void createHistory() {
+        history = buildHistory();
+        migrations = new ArrayList<>(migrationCount);
+        for (int version = 1; version <= migrationCount; version++) {
+            Migration migration = new Migration(version, "Synthetic", Path.of("V" + version + "__Synthetic.sql"),
+                    MigrationType.SQL, 0, 0);
+            migration.setChecksum(version * 31);
+            migrations.add(migration);
+        }
+    }
+
+    @Benchmark
+    public SchemaHistory buildHistory() {
+        SchemaHistory snapshot = new SchemaHistory(256);
+        for (int version = 1; version <= migrationCount; version++) {
+            snapshot.put(version, version * 31);
+        }
+        return snapshot;
+    }
+
+    @Benchmark
+    public int lookupAll() {
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (history.isApplied(migration)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    @Benchmark
+    public List<MigrationDrift> validate() {
+        return history.validate(migrations);
+    }
+}
@@ -0,0 +1,45 @@
+package com.innowise.benchmark;
+
+import com.innowise.parser.SqlStatementSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting a script into statements together with the checksum computed in the same pass
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SqlStatementSplitterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int statementCount;
+
+    private String script;
+
+    @Setup
+    public void createScript() {
+        script = SyntheticMigrations.script(statementCount);
+    }
+
+    @Benchmark
+    public int splitAndChecksum(Blackhole blackhole) {
+        SqlStatementSplitter splitter = new SqlStatementSplitter(new StringReader(script), "benchmark.sql");
+        String statement;
+        while ((statement = splitter.nextStatement()) != null) {
+            blackhole.consume(statement);
+        }
+        return splitter.getChecksum();
+    }
+}
@@ -0,0 +1,77 @@
+package com.innowise.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates migration folders and scripts for the benchmarks
+ */
+
+final class SyntheticMigrations {
+
+    private SyntheticMigrations() {
+    }
+
+    /**
+     * Creates a temporary folder with {@code count} migrations, alternating table creation and data inserts
+     * @param count the number of migration files
+     * @param rowsPerInsert the number of rows inserted by each data migration
+     * @return the created folder
+     */
+    static Path createFolder(int count, int rowsPerInsert) {
+        try {
+            Path directory = Files.createTempDirectory("migrations-bench");
+            for (int version = 1; version <= count; version++) {
+                String sql = version % 2 == 1 ? createTable(version) : insertRows(version - 1, rowsPerInsert);
+                Files.writeString(directory.resolve("V" + version + "__Synthetic_" + version + ".sql"), sql);
+            }
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds a script of {@code statements} statements with comments, quoted literals and a dollar-quoted body
+     * @param statements the number of statements
+     * @return the script text
+     */
+    static String script(int statements) {
+        StringBuilder sql = new StringBuilder("-- synthetic script\n");
+        for (int i = 0; i < statements; i++) {
+            if (i % 100 == 0) {
+                sql.append("CREATE FUNCTION f").append(i).append("() RETURNS int AS $$ SELECT 1; $$ LANGUAGE sql;\n");
+            } else {
+                sql.append("INSERT INTO t (id, name) VALUES (").append(i).append(", 'name; ").append(i).append("'); /* row */\n");
+            }
+        }
+        return sql.toString();
+    }
+
+    static void delete(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String createTable(int version) {
+        return "CREATE TABLE t" + version + " (\n    id INT PRIMARY KEY,\n    name VARCHAR(100) NOT NULL\n);";
+    }
+
+    private static String insertRows(int table, int rows) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 1; i <= rows; i++) {
+            sql.append("INSERT INTO t").append(table).append(" (id, name) VALUES (").append(i).append(", 'row ").append(i).append("');\n");
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.innowise.analysis;
+
+import com.innowise.model.PlannedStatement;
+
+import java.util.regex.Pattern;
+
+/**
+ * Flags column type changes, which rewrite the table and its indexes under an ACCESS EXCLUSIVE lock
+ * unless the old and new types are binary coercible
+ */
+
+public class ColumnTypeChangeRule implements DdlRule {
+
+    private static final Pattern TYPE_CHANGE = Pattern.compile(
+            "\\bALTER\\s+(?:COLUMN\\s+)?\\S+\\s+(?:SET\\s+DATA\\s+)?TYPE\\b", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String getId() {
+        return "column-type-change";
+    }
+
+    @Override
+    public String check(PlannedStatement statement) {
+        if (!"ALTER TABLE".equals(statement.getKind()) || !TYPE_CHANGE.matcher(statement.getSql()).find()) {
+            return null;
+        }
+        return "Changing a column type may rewrite " + statement.getTable()
+                + " under an ACCESS EXCLUSIVE lock; add a new column and backfill it instead";
+    }
+}
@@ -0,0 +1,36 @@
+package com.innowise.analysis;
+
+import com.innowise.model.PlannedStatement;
+import com.innowise.model.RuleSeverity;
+
+/**
+ * The DdlRule interface describes a check run over the statements of pending migrations before they are applied
+ * Statements are passed already classified by {@link com.innowise.parser.StatementClassifier}; statements on tables
+ * created by a pending migration are not passed, as those tables are empty
+ * Implementations are discovered with {@link java.util.ServiceLoader} in addition to the built-in rules
+ * A migration suppresses a rule with the header option {@code -- migration: allow=<rule id>}
+ */
+
+public interface DdlRule {
+
+    /**
+     * Returns the rule id used in severity settings, suppression comments and findings
+     * @return the id, lower case words separated by dashes
+     */
+    String getId();
+
+    /**
+     * Returns the severity used unless the settings override it
+     * @return the default severity
+     */
+    default RuleSeverity getDefaultSeverity() {
+        return RuleSeverity.WARNING;
+    }
+
+    /**
+     * Checks one statement
+     * @param statement the classified statement, {@link PlannedStatement#getSql()} holds its full text
+     * @return a message describing the problem, or {@code null} if the statement passes
+     */
+    String check(PlannedStatement statement);
+}
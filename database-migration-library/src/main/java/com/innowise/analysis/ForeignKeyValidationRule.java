@@ -0,0 +1,31 @@
+package com.innowise.analysis;
+
+import com.innowise.model.PlannedStatement;
+
+import java.util.regex.Pattern;
+
+/**
+ * Flags foreign keys added to existing tables without {@code NOT VALID}
+ * Validation scans the table while writes to it and to the referenced table are blocked
+ */
+
+public class ForeignKeyValidationRule implements DdlRule {
+
+    private static final Pattern FOREIGN_KEY = Pattern.compile("\\bFOREIGN\\s+KEY\\b|\\bREFERENCES\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOT_VALID = Pattern.compile("\\bNOT\\s+VALID\\b", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String getId() {
+        return "foreign-key-not-valid";
+    }
+
+    @Override
+    public String check(PlannedStatement statement) {
+        if (!"ALTER TABLE".equals(statement.getKind()) || !FOREIGN_KEY.matcher(statement.getSql()).find()
+                || NOT_VALID.matcher(statement.getSql()).find()) {
+            return null;
+        }
+        return "Adding a foreign key to " + statement.getTable() + " validates all rows while blocking writes; "
+                + "add it NOT VALID and run VALIDATE CONSTRAINT in a later migration";
+    }
+}
@@ -0,0 +1,25 @@
+package com.innowise.analysis;
+
+import com.innowise.model.LockMode;
+import com.innowise.model.PlannedStatement;
+
+/**
+ * Flags indexes created without {@code CONCURRENTLY}, which block writes to the table for the whole build
+ */
+
+public class NonConcurrentIndexRule implements DdlRule {
+
+    @Override
+    public String getId() {
+        return "index-not-concurrent";
+    }
+
+    @Override
+    public String check(PlannedStatement statement) {
+        if (!"CREATE INDEX".equals(statement.getKind()) || statement.getLockMode() == LockMode.SHARE_UPDATE_EXCLUSIVE) {
+            return null;
+        }
+        return "Creating an index on " + statement.getTable() + " without CONCURRENTLY blocks writes; "
+                + "use CREATE INDEX CONCURRENTLY in a migration with transactional=false";
+    }
+}
@@ -0,0 +1,31 @@
+package com.innowise.analysis;
+
+import com.innowise.model.PlannedStatement;
+
+import java.util.regex.Pattern;
+
+/**
+ * Flags columns added with a volatile default, which rewrites the whole table under an ACCESS EXCLUSIVE lock
+ * Constant defaults and stable functions such as {@code now()} are stored in the catalog and do not rewrite
+ */
+
+public class VolatileDefaultRule implements DdlRule {
+
+    private static final Pattern VOLATILE_DEFAULT = Pattern.compile(
+            "\\bADD\\s+(?:COLUMN\\s+)?[^,]*?\\bDEFAULT\\s+[^,]*?\\b(?:RANDOM|GEN_RANDOM_UUID|UUID_GENERATE_V\\w+|CLOCK_TIMESTAMP|TIMEOFDAY|NEXTVAL)\\s*\\(",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    @Override
+    public String getId() {
+        return "volatile-default";
+    }
+
+    @Override
+    public String check(PlannedStatement statement) {
+        if (!"ALTER TABLE".equals(statement.getKind()) || !VOLATILE_DEFAULT.matcher(statement.getSql()).find()) {
+            return null;
+        }
+        return "Adding a column with a volatile default rewrites " + statement.getTable()
+                + "; add the column without a default and backfill it";
+    }
+}
@@ -0,0 +1,59 @@
+package com.innowise.backfill;
+
+import com.innowise.model.BackfillChunk;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.zip.CRC32;
+
+/**
+ * The BackfillMigration interface describes a data migration applied in small, separately committed chunks
+ * Rows are visited in key order: each call processes the rows whose key is greater than the last key of the previous
+ * chunk. The last key is checkpointed after every chunk, so an interrupted backfill resumes where it stopped
+ * Implementations are discovered with {@link java.util.ServiceLoader} and applied in version order with the SQL files
+ */
+
+public interface BackfillMigration {
+
+    /**
+     * Returns the migration version
+     * @return the version, sharing the numbering of the SQL migration files
+     */
+    int getVersion();
+
+    /**
+     * Returns a short description of the backfill
+     * @return the description used in logs and reports
+     */
+    String getDescription();
+
+    /**
+     * Returns the key the backfill starts after
+     * @return the initial lower bound of the key range, exclusive
+     */
+    default long getInitialKey() {
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Processes the next chunk of rows, e.g. {@code UPDATE t SET ... WHERE id IN (SELECT id FROM t WHERE id > ? ORDER BY id LIMIT ?) RETURNING id}
+     * The connection has an open transaction that is committed together with the checkpoint
+     * @param connection the connection to run the chunk on
+     * @param lastKey the last key processed so far, exclusive lower bound of this chunk
+     * @param chunkSize the maximum number of rows to process
+     * @return the number of rows processed and the highest key among them; zero rows means the backfill is complete
+     * @throws SQLException if the chunk fails
+     */
+    BackfillChunk processChunk(Connection connection, long lastKey, int chunkSize) throws SQLException;
+
+    /**
+     * Returns the checksum recorded in the schema version table
+     * @return a checksum derived from the implementing class and the version
+     */
+    default int getChecksum() {
+        CRC32 crc = new CRC32();
+        crc.update((getClass().getName() + ":" + getVersion()).getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+}
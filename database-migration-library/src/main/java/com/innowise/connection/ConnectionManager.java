@@ -1,40 +1,151 @@
 package com.innowise.connection;
 
 import com.innowise.exception.ConnectionException;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * The ConnectionManager class is responsible for managing database connections
- * It provides a method to create and return a database connection
+ * Connections are taken from a {@link ConnectionProvider}: either the built-in bounded {@link ConnectionPool}
+ * or an external {@link DataSource}. While a run is active (see {@link #beginRun()}) every call to
+ * {@link #getConnection()} returns the same session, so a whole migration run costs a single handshake
  */
 
 @Slf4j
-@AllArgsConstructor
-public class ConnectionManager {
+public class ConnectionManager implements AutoCloseable {
 
-    private String url;
-    private String user;
-    private String password;
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 5;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+
+    private final ConnectionProvider connectionProvider;
+    private Connection runConnection;
+
+    /**
+     * Creates a connection manager backed by a pool with the default settings
+     * @param url the database URL
+     * @param user the database user
+     * @param password the database password
+     */
+    public ConnectionManager(String url, String user, String password) {
+        this(new ConnectionPool(url, user, password, DEFAULT_POOL_SIZE,
+                DEFAULT_VALIDATION_TIMEOUT_SECONDS, DEFAULT_BORROW_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Creates a connection manager that obtains connections from an externally managed data source
+     * @param dataSource the data source, typically a connection pool owned by the application
+     */
+    public ConnectionManager(DataSource dataSource) {
+        this(new DataSourceConnectionProvider(dataSource));
+    }
 
     /**
-     * Establishes a connection to the database using the provided URL, user, and password
+     * Creates a connection manager that obtains connections from the given provider
+     * @param connectionProvider the connection provider
+     */
+    public ConnectionManager(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Returns a database connection
+     * Inside a run the shared run connection is returned and closing it has no effect,
+     * otherwise a connection is taken from the provider and closing it hands it back
      *
      * @return a Connection object representing the database connection
      * @throws ConnectionException If the connection to the database could not be established
      */
-    public Connection getConnection() {
+    public synchronized Connection getConnection() {
+        if (runConnection != null) {
+            return nonClosing(runConnection);
+        }
+        return openConnection();
+    }
+
+    /**
+     * Returns a connection from the provider, bypassing the run connection
+     * Used by work that needs its own session while a run is active
+     *
+     * @return a Connection object representing the database connection
+     * @throws ConnectionException If the connection to the database could not be established
+     */
+    public Connection openConnection() {
         try {
-            Connection connection = DriverManager.getConnection(url, user, password);
-            log.info("Successfully connected to the database at {}", url);
-            return connection;
+            return connectionProvider.getConnection();
         } catch (SQLException e) {
-            log.error("Failed to connect to the database at {}: {}", url, e.getMessage());
+            log.error("Failed to obtain a database connection: {}", e.getMessage());
             throw new ConnectionException("Failed to create connection", e);
         }
     }
+
+    /**
+     * Starts a run: one connection is taken from the provider and shared by all subsequent
+     * {@link #getConnection()} calls until {@link #endRun()} is called
+     * @throws ConnectionException if a run is already active or the connection could not be established
+     */
+    public synchronized void beginRun() {
+        if (runConnection != null) {
+            throw new ConnectionException("A migration run is already active", null);
+        }
+        runConnection = openConnection();
+        log.info("Migration run started on a shared connection");
+    }
+
+    /**
+     * Ends the current run and hands the shared connection back to the provider
+     * @throws ConnectionException if the connection could not be released
+     */
+    public synchronized void endRun() {
+        if (runConnection == null) {
+            return;
+        }
+        try {
+            runConnection.close();
+        } catch (SQLException e) {
+            throw new ConnectionException("Failed to release run connection", e);
+        } finally {
+            runConnection = null;
+            log.info("Migration run finished, physical connections opened so far: {}", getOpenedConnectionCount());
+        }
+    }
+
+    /**
+     * Returns the number of physical connections opened so far
+     * @return the number of handshakes performed, or -1 if the provider does not track it
+     */
+    public int getOpenedConnectionCount() {
+        return connectionProvider.getOpenedConnectionCount();
+    }
+
+    /**
+     * Ends the current run, if any, and closes the provider
+     */
+    @Override
+    public void close() {
+        try {
+            endRun();
+        } finally {
+            connectionProvider.close();
+        }
+    }
+
+    private Connection nonClosing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
 }
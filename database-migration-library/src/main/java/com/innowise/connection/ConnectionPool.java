@@ -0,0 +1,184 @@
+package com.innowise.connection;
+
+import com.innowise.exception.ConnectionException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ConnectionPool class is a bounded pool of JDBC connections opened through {@link DriverManager}
+ * Idle connections are validated before they are handed out, and closing a borrowed connection
+ * returns it to the pool instead of closing the physical connection
+ */
+
+@Slf4j
+public class ConnectionPool implements ConnectionProvider {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int validationTimeoutSeconds;
+    private final long borrowTimeoutMillis;
+
+    private final BlockingQueue<Connection> idleConnections;
+    private final Semaphore permits;
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool that opens at most {@code maxSize} connections at the same time
+     * @param url the database URL
+     * @param user the database user
+     * @param password the database password
+     * @param maxSize the maximum number of connections in use at once
+     * @param validationTimeoutSeconds the timeout passed to {@link Connection#isValid(int)} when borrowing an idle connection
+     * @param borrowTimeoutMillis how long to wait for a free connection before failing
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          int validationTimeoutSeconds, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleConnections = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no valid idle connection is available
+     * @return a pooled connection that is returned to the pool when closed
+     * @throws SQLException if a new connection could not be opened
+     * @throws ConnectionException if the pool is closed or no connection became free in time
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new ConnectionException("Connection pool is closed", null);
+        }
+        acquirePermit();
+        try {
+            return wrap(takeValidConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getOpenedConnectionCount() {
+        return openedConnections.get();
+    }
+
+    /**
+     * Closes all idle connections; connections still borrowed are closed when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            closePhysical(connection);
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConnectionException("Timed out after " + borrowTimeoutMillis + " ms waiting for a pooled connection", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a pooled connection", e);
+        }
+    }
+
+    private Connection takeValidConnection() throws SQLException {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            if (isValid(connection)) {
+                return connection;
+            }
+            log.info("Discarding invalid pooled connection to {}", url);
+            closePhysical(connection);
+        }
+        Connection physical = DriverManager.getConnection(url, user, password);
+        log.info("Opened pooled connection #{} to {}", openedConnections.incrementAndGet(), url);
+        return physical;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closePhysical(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (!idleConnections.offer(connection)) {
+                closePhysical(connection);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to reset pooled connection, discarding it", e);
+            closePhysical(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void closePhysical(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.error("Failed to close pooled connection to {}", url, e);
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        AtomicBoolean returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (returned.compareAndSet(false, true)) {
+                                release(physical);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned.get() || physical.isClosed();
+                        default:
+                            if (returned.get()) {
+                                throw new SQLException("Connection has been returned to the pool");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
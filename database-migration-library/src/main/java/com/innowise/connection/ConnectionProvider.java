@@ -0,0 +1,34 @@
+package com.innowise.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The ConnectionProvider interface is the source of connections used by {@link ConnectionManager}
+ * Closing a connection obtained from a provider hands it back to the provider
+ */
+
+public interface ConnectionProvider extends AutoCloseable {
+
+    /**
+     * Obtains a connection from the provider
+     * @return a Connection object representing the database connection
+     * @throws SQLException if the connection could not be obtained
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Returns the number of physical connections (handshakes) opened by the provider
+     * @return the number of opened connections, or -1 if the provider does not track it
+     */
+    default int getOpenedConnectionCount() {
+        return -1;
+    }
+
+    /**
+     * Releases the resources held by the provider
+     */
+    @Override
+    default void close() {
+    }
+}
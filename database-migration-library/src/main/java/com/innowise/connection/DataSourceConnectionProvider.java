@@ -0,0 +1,23 @@
+package com.innowise.connection;
+
+import lombok.AllArgsConstructor;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The DataSourceConnectionProvider class obtains connections from an externally managed {@link DataSource}
+ * Pooling, validation and shutdown are left to the data source itself
+ */
+
+@AllArgsConstructor
+public class DataSourceConnectionProvider implements ConnectionProvider {
+
+    private final DataSource dataSource;
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+}
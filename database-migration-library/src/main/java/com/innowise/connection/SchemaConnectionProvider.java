@@ -0,0 +1,44 @@
+package com.innowise.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The SchemaConnectionProvider class hands out connections of a shared provider with {@code search_path}
+ * set to one schema, so unqualified names, including the schema version table, resolve in that schema
+ * The shared provider is owned by the caller and is not closed with this provider
+ */
+
+public class SchemaConnectionProvider implements ConnectionProvider {
+
+    private final ConnectionProvider sharedProvider;
+    private final String setSearchPath;
+
+    /**
+     * Creates a provider for the given schema
+     * @param sharedProvider the provider of the underlying connections
+     * @param schema the schema to select
+     */
+    public SchemaConnectionProvider(ConnectionProvider sharedProvider, String schema) {
+        this.sharedProvider = sharedProvider;
+        this.setSearchPath = "SET search_path TO \"" + schema.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = sharedProvider.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(setSearchPath);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    @Override
+    public int getOpenedConnectionCount() {
+        return sharedProvider.getOpenedConnectionCount();
+    }
+}
@@ -0,0 +1,102 @@
+package com.innowise.constants;
+
+public class BaselineQueries {
+
+    private static final String USER_SCHEMA = "n.nspname NOT IN ('pg_catalog', 'information_schema') AND n.nspname NOT LIKE 'pg\\_%'";
+    private static final String NOT_EXTENSION_MEMBER = "NOT EXISTS (SELECT 1 FROM pg_depend e WHERE e.objid = %s AND e.deptype = 'e')";
+    private static final String SNAPSHOT_TABLE = "c.relkind IN ('r', 'p') AND " + USER_SCHEMA
+            + " AND c.relname NOT IN ('schema_version', 'schema_version_progress', 'schema_repeatable') AND "
+            + String.format(NOT_EXTENSION_MEMBER, "c.oid");
+    private static final String DEFERRED_FUNCTION = "(p.prolang = (SELECT l.oid FROM pg_language l WHERE l.lanname = 'sql') "
+            + "OR EXISTS (SELECT 1 FROM pg_depend d JOIN pg_type rt ON rt.oid = d.refobjid JOIN pg_class r ON r.oid = rt.typrelid "
+            + "WHERE d.classid = 'pg_proc'::regclass AND d.objid = p.oid AND d.refclassid = 'pg_type'::regclass AND r.relkind <> 'c'))";
+    private static final String FUNCTIONS = "SELECT pg_get_functiondef(p.oid) FROM pg_proc p JOIN pg_namespace n ON n.oid = p.pronamespace WHERE "
+            + USER_SCHEMA + " AND p.prokind IN ('f', 'p') AND " + String.format(NOT_EXTENSION_MEMBER, "p.oid") + " AND ";
+
+    public static final String SELECT_SCHEMAS = "SELECT format('CREATE SCHEMA IF NOT EXISTS %I', n.nspname) FROM pg_namespace n WHERE "
+            + USER_SCHEMA + " AND n.nspname <> 'public' AND " + String.format(NOT_EXTENSION_MEMBER, "n.oid") + " ORDER BY n.oid";
+    public static final String SELECT_EXTENSIONS = "SELECT format('CREATE EXTENSION IF NOT EXISTS %I SCHEMA %I', x.extname, n.nspname) FROM pg_extension x "
+            + "JOIN pg_namespace n ON n.oid = x.extnamespace WHERE x.extname <> 'plpgsql' ORDER BY x.oid";
+    public static final String SELECT_ENUM_TYPES = "SELECT format('CREATE TYPE %I.%I AS ENUM (%s)', n.nspname, t.typname, "
+            + "string_agg(quote_literal(v.enumlabel), ', ' ORDER BY v.enumsortorder)) FROM pg_type t "
+            + "JOIN pg_enum v ON v.enumtypid = t.oid JOIN pg_namespace n ON n.oid = t.typnamespace WHERE " + USER_SCHEMA
+            + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid") + " GROUP BY t.oid, n.nspname, t.typname ORDER BY t.oid";
+    public static final String SELECT_SEQUENCES = "SELECT format('CREATE SEQUENCE %I.%I AS %s INCREMENT BY %s MINVALUE %s MAXVALUE %s START WITH %s%s', "
+            + "n.nspname, c.relname, format_type(s.seqtypid, NULL), s.seqincrement, s.seqmin, s.seqmax, s.seqstart, "
+            + "CASE WHEN s.seqcycle THEN ' CYCLE' ELSE '' END) FROM pg_sequence s JOIN pg_class c ON c.oid = s.seqrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + USER_SCHEMA
+            + " AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = c.oid AND d.deptype IN ('i', 'e')) ORDER BY c.oid";
+    public static final String SELECT_DOMAINS = "SELECT format('CREATE DOMAIN %I.%I AS %s', n.nspname, t.typname, "
+            + "format_type(t.typbasetype, t.typtypmod)) || CASE WHEN t.typdefault IS NOT NULL THEN ' DEFAULT ' || t.typdefault ELSE '' END "
+            + "|| CASE WHEN t.typnotnull THEN ' NOT NULL' ELSE '' END || coalesce((SELECT string_agg(format(' CONSTRAINT %I %s', "
+            + "k.conname, pg_get_constraintdef(k.oid)), '' ORDER BY k.oid) FROM pg_constraint k WHERE k.contypid = t.oid), '') "
+            + "FROM pg_type t JOIN pg_namespace n ON n.oid = t.typnamespace WHERE t.typtype = 'd' AND " + USER_SCHEMA
+            + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid") + " ORDER BY t.oid";
+    public static final String SELECT_COMPOSITE_TYPES = "SELECT format('CREATE TYPE %I.%I AS (%s)', n.nspname, t.typname, "
+            + "string_agg(format('%I %s', a.attname, format_type(a.atttypid, a.atttypmod)), ', ' ORDER BY a.attnum)) FROM pg_type t "
+            + "JOIN pg_class c ON c.oid = t.typrelid AND c.relkind = 'c' JOIN pg_namespace n ON n.oid = t.typnamespace "
+            + "JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped WHERE " + USER_SCHEMA
+            + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid") + " GROUP BY t.oid, n.nspname, t.typname ORDER BY t.oid";
+    public static final String SELECT_FUNCTIONS = FUNCTIONS + "NOT " + DEFERRED_FUNCTION + " ORDER BY p.oid";
+    public static final String SELECT_DEFERRED_FUNCTIONS = FUNCTIONS + DEFERRED_FUNCTION + " ORDER BY p.oid";
+    public static final String SELECT_TABLES = "SELECT c.oid, format('%I.%I', n.nspname, c.relname), c.relkind = 'p', "
+            + "CASE WHEN c.relkind = 'p' THEN pg_get_partkeydef(c.oid) END, "
+            + "(SELECT format('%I.%I', pn.nspname, pc.relname) FROM pg_inherits i JOIN pg_class pc ON pc.oid = i.inhparent "
+            + "JOIN pg_namespace pn ON pn.oid = pc.relnamespace WHERE i.inhrelid = c.oid), "
+            + "CASE WHEN c.relispartition THEN pg_get_expr(c.relpartbound, c.oid) END FROM pg_class c "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + SNAPSHOT_TABLE
+            + " ORDER BY (SELECT count(*) FROM pg_partition_ancestors(c.oid)), c.oid";
+    public static final String SELECT_UNSUPPORTED = "SELECT format('foreign table %I.%I', n.nspname, c.relname) FROM pg_class c "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE c.relkind = 'f' AND " + USER_SCHEMA
+            + " UNION ALL SELECT format('table %I.%I inheriting from another table', n.nspname, c.relname) FROM pg_class c "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE c.relkind = 'r' AND NOT c.relispartition AND " + USER_SCHEMA
+            + " AND EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid)"
+            + " UNION ALL SELECT format('range type %I.%I', n.nspname, t.typname) FROM pg_type t "
+            + "JOIN pg_namespace n ON n.oid = t.typnamespace WHERE t.typtype IN ('r', 'm') AND " + USER_SCHEMA
+            + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid")
+            + " UNION ALL SELECT format('row security policy %I on %I.%I', y.polname, n.nspname, c.relname) FROM pg_policy y "
+            + "JOIN pg_class c ON c.oid = y.polrelid JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + USER_SCHEMA
+            + " UNION ALL SELECT format('rule %I on %I.%I', r.rulename, n.nspname, c.relname) FROM pg_rewrite r "
+            + "JOIN pg_class c ON c.oid = r.ev_class JOIN pg_namespace n ON n.oid = c.relnamespace WHERE r.rulename <> '_RETURN' AND "
+            + USER_SCHEMA + " UNION ALL SELECT format('default of column %I.%I.%I calling SQL function %s', n.nspname, c.relname, "
+            + "a.attname, p.oid::regprocedure) FROM pg_attrdef ad JOIN pg_depend d ON d.classid = 'pg_attrdef'::regclass "
+            + "AND d.objid = ad.oid AND d.refclassid = 'pg_proc'::regclass JOIN pg_proc p ON p.oid = d.refobjid "
+            + "JOIN pg_class c ON c.oid = ad.adrelid JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "JOIN pg_attribute a ON a.attrelid = ad.adrelid AND a.attnum = ad.adnum WHERE " + DEFERRED_FUNCTION + " AND " + USER_SCHEMA
+            + " UNION ALL SELECT format('constraint %I of domain %s calling SQL function %s', k.conname, k.contypid::regtype, "
+            + "p.oid::regprocedure) FROM pg_constraint k JOIN pg_depend d ON d.classid = 'pg_constraint'::regclass "
+            + "AND d.objid = k.oid AND d.refclassid = 'pg_proc'::regclass JOIN pg_proc p ON p.oid = d.refobjid "
+            + "JOIN pg_namespace n ON n.oid = p.pronamespace WHERE k.contypid <> 0 AND " + DEFERRED_FUNCTION + " AND " + USER_SCHEMA;
+    public static final String SELECT_COLUMNS = "SELECT format('%I %s', a.attname, format_type(a.atttypid, a.atttypmod)) || CASE "
+            + "WHEN a.attidentity = 'a' THEN ' GENERATED ALWAYS AS IDENTITY' "
+            + "WHEN a.attidentity = 'd' THEN ' GENERATED BY DEFAULT AS IDENTITY' "
+            + "WHEN a.attgenerated = 's' THEN ' GENERATED ALWAYS AS (' || pg_get_expr(d.adbin, d.adrelid) || ') STORED' "
+            + "WHEN d.adbin IS NOT NULL THEN ' DEFAULT ' || pg_get_expr(d.adbin, d.adrelid) ELSE '' END "
+            + "|| CASE WHEN a.attnotnull THEN ' NOT NULL' ELSE '' END, quote_ident(a.attname), a.attgenerated <> '' "
+            + "FROM pg_attribute a LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum "
+            + "WHERE a.attrelid = ? AND a.attnum > 0 AND NOT a.attisdropped ORDER BY a.attnum";
+    public static final String SELECT_TABLE_ROWS = "SELECT json_agg(t) FROM %s t";
+    public static final String INSERT_TABLE_ROWS = "INSERT INTO %s (%s) OVERRIDING SYSTEM VALUE SELECT %s FROM json_populate_recordset(NULL::%s, '%s')";
+    public static final String SELECT_SEQUENCE_OWNERS = "SELECT format('ALTER SEQUENCE %I.%I OWNED BY %I.%I.%I', sn.nspname, s.relname, n.nspname, c.relname, a.attname) "
+            + "FROM pg_depend d JOIN pg_class s ON s.oid = d.objid AND s.relkind = 'S' JOIN pg_namespace sn ON sn.oid = s.relnamespace "
+            + "JOIN pg_class c ON c.oid = d.refobjid JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum = d.refobjsubid "
+            + "WHERE d.classid = 'pg_class'::regclass AND d.deptype = 'a' AND " + SNAPSHOT_TABLE + " ORDER BY s.oid";
+    public static final String SELECT_CONSTRAINTS = "SELECT format('ALTER TABLE %I.%I ADD CONSTRAINT %I %s', n.nspname, c.relname, k.conname, "
+            + "pg_get_constraintdef(k.oid)) FROM pg_constraint k JOIN pg_class c ON c.oid = k.conrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE k.contype IN ('p', 'u', 'c', 'x', 'f') AND k.coninhcount = 0 "
+            + "AND k.conparentid = 0 AND "
+            + SNAPSHOT_TABLE + " ORDER BY k.contype = 'f', k.oid";
+    public static final String SELECT_INDEXES = "SELECT regexp_replace(pg_get_indexdef(i.indexrelid), ' ON ONLY ', ' ON ') FROM pg_index i JOIN pg_class c ON c.oid = i.indrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE " + SNAPSHOT_TABLE
+            + " AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = i.indexrelid AND k.contype IN ('p', 'u', 'x'))"
+            + " AND NOT EXISTS (SELECT 1 FROM pg_inherits h WHERE h.inhrelid = i.indexrelid) ORDER BY i.indexrelid";
+    public static final String SELECT_VIEWS = "SELECT format('CREATE %sVIEW %I.%I AS %s', CASE WHEN c.relkind = 'm' THEN 'MATERIALIZED ' ELSE '' END, "
+            + "n.nspname, c.relname, rtrim(pg_get_viewdef(c.oid), ';')) FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relkind IN ('v', 'm') AND " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "c.oid") + " ORDER BY c.oid";
+    public static final String SELECT_TRIGGERS = "SELECT pg_get_triggerdef(g.oid) FROM pg_trigger g JOIN pg_class c ON c.oid = g.tgrelid "
+            + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE NOT g.tgisinternal AND g.tgparentid = 0 AND " + SNAPSHOT_TABLE
+            + " ORDER BY g.oid";
+    public static final String SELECT_SEQUENCE_VALUES = "SELECT format('SELECT setval(%L, %s, true)', format('%I.%I', schemaname, sequencename), last_value) "
+            + "FROM pg_sequences WHERE last_value IS NOT NULL AND schemaname NOT IN ('pg_catalog', 'information_schema')";
+}
@@ -4,4 +4,7 @@ public class DatabaseConfig {
     public static final String DB_URL = "db.url";
     public static final String DB_USERNAME = "db.username";
     public static final String DB_PASSWORD = "db.password";
+    public static final String DB_POOL_SIZE = "db.pool.size";
+    public static final String DB_POOL_VALIDATION_TIMEOUT = "db.pool.validation-timeout-seconds";
+    public static final String DB_POOL_BORROW_TIMEOUT = "db.pool.borrow-timeout-ms";
 }
@@ -0,0 +1,39 @@
+package com.innowise.constants;
+
+public class MigrationConfig {
+    public static final String MIGRATION_DIR = "migration.dir";
+    public static final String MIGRATION_BATCH_SIZE = "migration.batch-size";
+    public static final String MIGRATION_VALIDATE_APPLIED = "migration.validate-applied";
+    public static final String MIGRATION_CHECKSUM_CACHE_DIR = "migration.checksum-cache.dir";
+    public static final String MIGRATION_LOCK_ENABLED = "migration.lock.enabled";
+    public static final String MIGRATION_LOCK_KEY = "migration.lock.key";
+    public static final String MIGRATION_LOCK_TIMEOUT = "migration.lock.timeout-ms";
+    public static final String MIGRATION_BACKFILL_CHUNK_SIZE = "migration.backfill.chunk-size";
+    public static final String MIGRATION_BACKFILL_MAX_ROWS_PER_SECOND = "migration.backfill.max-rows-per-second";
+    public static final String MIGRATION_BACKFILL_PAUSE = "migration.backfill.pause-ms";
+    public static final String MIGRATION_LOCK_TIMEOUT_PER_MIGRATION = "migration.lock-timeout";
+    public static final String MIGRATION_STATEMENT_TIMEOUT = "migration.statement-timeout";
+    public static final String MIGRATION_LOCK_RETRIES = "migration.retry.max-retries";
+    public static final String MIGRATION_RETRY_INITIAL_BACKOFF = "migration.retry.initial-backoff-ms";
+    public static final String MIGRATION_RETRY_MAX_BACKOFF = "migration.retry.max-backoff-ms";
+    public static final String MIGRATION_REPORT_FILE = "migration.report.file";
+    public static final String MIGRATION_REPORT_FORMAT = "migration.report.format";
+    public static final String MIGRATION_GROUP_SIZE = "migration.group.size";
+    public static final String MIGRATION_GROUP_MAX_TIME = "migration.group.max-ms";
+    public static final String MIGRATION_TARGET_SCHEMAS = "migration.targets.schemas";
+    public static final String MIGRATION_TARGET_CONCURRENCY = "migration.targets.concurrency";
+    public static final String MIGRATION_PARALLEL_WIDTH = "migration.parallel.width";
+    public static final String MIGRATION_OUT_OF_ORDER = "migration.out-of-order";
+    public static final String MIGRATION_TEMPLATE_MAX_COUNT = "migration.template.max-count";
+    public static final String MIGRATION_PLAN_FILE = "migration.plan.file";
+    public static final String MIGRATION_LOCK_WATCHDOG_ENABLED = "migration.lock-watchdog.enabled";
+    public static final String MIGRATION_LOCK_WATCHDOG_MAX_WAITING = "migration.lock-watchdog.max-waiting";
+    public static final String MIGRATION_LOCK_WATCHDOG_MAX_WAIT = "migration.lock-watchdog.max-wait-ms";
+    public static final String MIGRATION_LOCK_WATCHDOG_SAMPLE = "migration.lock-watchdog.sample-ms";
+    public static final String MIGRATION_COORDINATION_ENABLED = "migration.coordination.enabled";
+    public static final String MIGRATION_COORDINATION_POLL = "migration.coordination.poll-ms";
+    public static final String MIGRATION_COORDINATION_TIMEOUT = "migration.coordination.timeout-ms";
+    public static final String MIGRATION_WATCH_DEBOUNCE = "migration.watch.debounce-ms";
+    public static final String MIGRATION_ANALYSIS_ENABLED = "migration.analysis.enabled";
+    public static final String MIGRATION_ANALYSIS_SEVERITIES = "migration.analysis.severities";
+}
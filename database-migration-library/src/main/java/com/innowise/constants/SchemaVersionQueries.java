@@ -2,9 +2,22 @@ package com.innowise.constants;
 
 public class SchemaVersionQueries {
 
-    public static final String CREATE_TABLE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS schema_version(version INT PRIMARY KEY, checksum INT)";
+    public static final String CREATE_TABLE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS schema_version(version INT PRIMARY KEY, checksum INT, execution_time_ms BIGINT, installed_on TIMESTAMP NOT NULL DEFAULT now(), installed_rank BIGSERIAL, baseline BOOLEAN NOT NULL DEFAULT false)";
+    public static final String ADD_EXECUTION_TIME_TO_SCHEMA_VERSION = "ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS execution_time_ms BIGINT";
+    public static final String ADD_INSTALLED_ON_TO_SCHEMA_VERSION = "ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS installed_on TIMESTAMP NOT NULL DEFAULT now()";
+    public static final String ADD_INSTALLED_RANK_TO_SCHEMA_VERSION = "ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS installed_rank BIGSERIAL";
+    public static final String ADD_BASELINE_TO_SCHEMA_VERSION = "ALTER TABLE schema_version ADD COLUMN IF NOT EXISTS baseline BOOLEAN NOT NULL DEFAULT false";
     public static final String SELECT_VERSION_FROM_SCHEMA_VERSION = "SELECT version FROM schema_version ORDER BY version DESC LIMIT 1";
-    public static final String INSERT_INTO_SCHEMA_VERSION = "INSERT INTO schema_version(version, checksum) VALUES (?, ?)";
-    public static final String SELECT_ALL_FROM_SCHEMA_VERSION_FOR_UPDATE = "SELECT * FROM schema_version FOR UPDATE";
-    public static final String SELECT_CHECKSUM_FROM_SCHEMA_VERSION = "SELECT checksum FROM schema_version WHERE version = ?";
+    public static final String INSERT_INTO_SCHEMA_VERSION = "INSERT INTO schema_version(version, checksum, execution_time_ms, baseline) VALUES (?, ?, ?, ?)";
+    public static final String SELECT_HISTORY_FROM_SCHEMA_VERSION = "SELECT version, checksum FROM schema_version";
+    public static final String SELECT_SCHEMA_VERSION_EXISTS = "SELECT to_regclass('schema_version') IS NOT NULL";
+    public static final String SELECT_TABLE_STATISTICS = "SELECT c.reltuples::bigint, pg_table_size(c.oid) FROM pg_class c WHERE c.oid = to_regclass(?)";
+    public static final String SELECT_INVALID_INDEXES = "SELECT indexrelid::regclass::text FROM pg_index WHERE NOT indisvalid";
+    public static final String CREATE_TABLE_SCHEMA_REPEATABLE = "CREATE TABLE IF NOT EXISTS schema_repeatable(name TEXT PRIMARY KEY, checksum INT NOT NULL, execution_time_ms BIGINT, installed_on TIMESTAMP NOT NULL DEFAULT now())";
+    public static final String SELECT_HISTORY_FROM_SCHEMA_REPEATABLE = "SELECT name, checksum FROM schema_repeatable";
+    public static final String UPSERT_INTO_SCHEMA_REPEATABLE = "INSERT INTO schema_repeatable(name, checksum, execution_time_ms) VALUES (?, ?, ?) ON CONFLICT (name) DO UPDATE SET checksum = EXCLUDED.checksum, execution_time_ms = EXCLUDED.execution_time_ms, installed_on = now()";
+    public static final String CREATE_TABLE_SCHEMA_VERSION_PROGRESS = "CREATE TABLE IF NOT EXISTS schema_version_progress(version INT PRIMARY KEY, last_key BIGINT NOT NULL, rows_processed BIGINT NOT NULL, updated_at TIMESTAMP NOT NULL DEFAULT now())";
+    public static final String SELECT_PROGRESS_FROM_SCHEMA_VERSION_PROGRESS = "SELECT last_key, rows_processed FROM schema_version_progress WHERE version = ?";
+    public static final String UPSERT_INTO_SCHEMA_VERSION_PROGRESS = "INSERT INTO schema_version_progress(version, last_key, rows_processed) VALUES (?, ?, ?) ON CONFLICT (version) DO UPDATE SET last_key = EXCLUDED.last_key, rows_processed = EXCLUDED.rows_processed, updated_at = now()";
+    public static final String DELETE_FROM_SCHEMA_VERSION_PROGRESS = "DELETE FROM schema_version_progress WHERE version = ?";
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.innowise.constants;
+
+public class TemplateDatabaseQueries {
+
+    public static final String TEMPLATE_PREFIX = "migration_template_";
+    public static final String SELECT_TEMPLATES = "SELECT datname, shobj_description(oid, 'pg_database') FROM pg_database WHERE datname LIKE 'migration\\_template\\_%'";
+    public static final String SELECT_DATABASE_EXISTS = "SELECT 1 FROM pg_database WHERE datname = ?";
+    public static final String CREATE_DATABASE = "CREATE DATABASE %s";
+    public static final String CREATE_DATABASE_FROM_TEMPLATE = "CREATE DATABASE %s TEMPLATE %s";
+    public static final String RENAME_DATABASE = "ALTER DATABASE %s RENAME TO %s";
+    public static final String DROP_DATABASE = "DROP DATABASE IF EXISTS %s";
+    public static final String COMMENT_ON_DATABASE = "COMMENT ON DATABASE %s IS '%d'";
+}
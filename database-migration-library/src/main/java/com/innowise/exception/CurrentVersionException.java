@@ -1,8 +0,0 @@
-package com.innowise.exception;
-
-public class CurrentVersionException extends RuntimeException {
-
-    public CurrentVersionException(String message, Throwable cause) {
-        super(message, cause);
-    }
-}
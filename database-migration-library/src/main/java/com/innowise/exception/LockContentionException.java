@@ -0,0 +1,29 @@
+package com.innowise.exception;
+
+public class LockContentionException extends MigrationExecutionException {
+
+    private final int samples;
+    private final int maxQueueDepth;
+
+    public LockContentionException(String message, int samples, int maxQueueDepth, Throwable cause) {
+        super(message, cause);
+        this.samples = samples;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * Returns the number of times the lock queue was sampled before the migration was cancelled
+     * @return the number of samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Returns the longest queue of sessions seen waiting behind the migration
+     * @return the maximum number of waiting sessions
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+}
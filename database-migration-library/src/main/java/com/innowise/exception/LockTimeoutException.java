@@ -0,0 +1,8 @@
+package com.innowise.exception;
+
+public class LockTimeoutException extends MigrationExecutionException {
+
+    public LockTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package com.innowise.exception;
+
+public class MigrationAnalysisException extends RuntimeException {
+
+    public MigrationAnalysisException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
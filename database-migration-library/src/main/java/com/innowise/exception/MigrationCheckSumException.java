@@ -1,8 +0,0 @@
-package com.innowise.exception;
-
-public class MigrationCheckSumException extends RuntimeException {
-
-    public MigrationCheckSumException(String message, Throwable cause) {
-        super(message, cause);
-    }
-}
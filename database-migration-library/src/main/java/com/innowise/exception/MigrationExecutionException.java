@@ -0,0 +1,8 @@
+package com.innowise.exception;
+
+public class MigrationExecutionException extends RuntimeException {
+
+    public MigrationExecutionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
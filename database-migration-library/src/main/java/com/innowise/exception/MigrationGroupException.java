@@ -0,0 +1,19 @@
+package com.innowise.exception;
+
+public class MigrationGroupException extends MigrationExecutionException {
+
+    private final int failedVersion;
+
+    public MigrationGroupException(String message, int failedVersion, Throwable cause) {
+        super(message, cause);
+        this.failedVersion = failedVersion;
+    }
+
+    /**
+     * Returns the version of the migration that caused the group to roll back
+     * @return the failed version, or 0 if the group failed while recording the versions or committing
+     */
+    public int getFailedVersion() {
+        return failedVersion;
+    }
+}
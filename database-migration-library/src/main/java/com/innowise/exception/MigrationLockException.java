@@ -0,0 +1,8 @@
+package com.innowise.exception;
+
+public class MigrationLockException extends RuntimeException {
+
+    public MigrationLockException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
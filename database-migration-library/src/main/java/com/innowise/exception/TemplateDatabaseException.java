@@ -0,0 +1,8 @@
+package com.innowise.exception;
+
+public class TemplateDatabaseException extends RuntimeException {
+
+    public TemplateDatabaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,78 @@
+package com.innowise.lock;
+
+import com.innowise.exception.MigrationLockException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The AdvisoryMigrationLock class serializes migration runs with a PostgreSQL session-level advisory lock
+ * Unlike a row lock on the schema version table it also works on an empty database, and it is held
+ * for the whole run instead of being taken for every migration
+ */
+
+@Slf4j
+@Getter
+public class AdvisoryMigrationLock implements MigrationLock {
+
+    public static final long DEFAULT_LOCK_KEY = 0x6D6967726174696FL;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60_000;
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final String ACQUIRE_LOCK = "SELECT pg_advisory_lock(?)";
+    private static final String RELEASE_LOCK = "SELECT pg_advisory_unlock(?)";
+
+    private final long lockKey;
+    private final long timeoutMillis;
+
+    public AdvisoryMigrationLock() {
+        this(DEFAULT_LOCK_KEY, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates an advisory lock
+     * @param lockKey the advisory lock key shared by all nodes migrating the same database
+     * @param timeoutMillis how long to wait for the lock, 0 to wait indefinitely
+     */
+    public AdvisoryMigrationLock(long lockKey, long timeoutMillis) {
+        this.lockKey = lockKey;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void acquire(Connection connection) {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement();
+             PreparedStatement preparedStatement = connection.prepareStatement(ACQUIRE_LOCK)) {
+            statement.execute("SET lock_timeout = " + timeoutMillis);
+            try {
+                preparedStatement.setLong(1, lockKey);
+                preparedStatement.executeQuery().close();
+            } finally {
+                statement.execute("RESET lock_timeout");
+            }
+            log.info("Acquired migration lock {} after {} ms", lockKey, (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException e) {
+            if (LOCK_NOT_AVAILABLE.equals(e.getSQLState())) {
+                throw new MigrationLockException("Timed out after " + timeoutMillis + " ms waiting for migration lock " + lockKey, e);
+            }
+            throw new MigrationLockException("Failed to acquire migration lock " + lockKey, e);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(RELEASE_LOCK)) {
+            preparedStatement.setLong(1, lockKey);
+            preparedStatement.executeQuery().close();
+            log.info("Released migration lock {}", lockKey);
+        } catch (SQLException e) {
+            log.error("Failed to release migration lock {}", lockKey, e);
+            throw new MigrationLockException("Failed to release migration lock " + lockKey, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.innowise.lock;
+
+import com.innowise.exception.MigrationLockException;
+
+import java.sql.Connection;
+
+/**
+ * The MigrationLock interface coordinates migration runs of several nodes against the same database
+ * The lock is taken once per run on the run connection and released when the run ends
+ */
+
+public interface MigrationLock {
+
+    /**
+     * Blocks until the lock is held by the session of the given connection
+     * @param connection the run connection
+     * @throws MigrationLockException if the lock cannot be acquired
+     */
+    void acquire(Connection connection);
+
+    /**
+     * Releases the lock held by the session of the given connection
+     * @param connection the run connection
+     */
+    void release(Connection connection);
+}
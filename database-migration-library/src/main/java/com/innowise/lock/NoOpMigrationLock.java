@@ -0,0 +1,18 @@
+package com.innowise.lock;
+
+import java.sql.Connection;
+
+/**
+ * A lock that does nothing, for single-node deployments and databases without advisory locks
+ */
+
+public class NoOpMigrationLock implements MigrationLock {
+
+    @Override
+    public void acquire(Connection connection) {
+    }
+
+    @Override
+    public void release(Connection connection) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BackfillChunk {
+
+    private int rowsProcessed;
+    private long lastKey;
+
+}
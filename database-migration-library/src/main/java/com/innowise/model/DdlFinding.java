@@ -0,0 +1,21 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A statement of a migration flagged by a DDL analysis rule
+ */
+
+@Getter
+@AllArgsConstructor
+public class DdlFinding {
+
+    private int version;
+    private String file;
+    private String rule;
+    private RuleSeverity severity;
+    private String message;
+    private String sql;
+
+}
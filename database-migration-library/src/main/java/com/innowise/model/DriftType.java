@@ -0,0 +1,17 @@
+package com.innowise.model;
+
+/**
+ * Kinds of differences between the schema version table and the migration files
+ */
+
+public enum DriftType {
+
+    /** The version was applied with a different checksum than the file has now */
+    CHECKSUM_MISMATCH,
+
+    /** The version is recorded as applied but no migration file exists for it */
+    MISSING_MIGRATION,
+
+    /** The file version is below the current version but was never applied */
+    NOT_APPLIED
+}
@@ -0,0 +1,24 @@
+package com.innowise.model;
+
+/**
+ * PostgreSQL table lock modes ordered from weakest to strongest
+ * NONE is used for statements that only create new objects, UNKNOWN for statements that could not be classified
+ * and is treated as the strongest mode
+ */
+
+public enum LockMode {
+    NONE,
+    ACCESS_SHARE,
+    ROW_SHARE,
+    ROW_EXCLUSIVE,
+    SHARE_UPDATE_EXCLUSIVE,
+    SHARE,
+    SHARE_ROW_EXCLUSIVE,
+    EXCLUSIVE,
+    ACCESS_EXCLUSIVE,
+    UNKNOWN;
+
+    public LockMode max(LockMode other) {
+        return other.ordinal() > ordinal() ? other : this;
+    }
+}
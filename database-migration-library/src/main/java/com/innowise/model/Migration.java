@@ -1,14 +1,63 @@
 package com.innowise.model;
 
-import lombok.AllArgsConstructor;
+import com.innowise.backfill.BackfillMigration;
 import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.file.Path;
+
+/**
+ * An entry of the migration index
+ * Everything except the checksum is known from the directory listing; the checksum
+ * is filled in only when the file is actually read
+ */
 
 @Getter
-@AllArgsConstructor
 public class Migration {
 
     private int version;
-    private String sql;
-    private int checksum;
+    private String description;
+    private Path path;
+    private MigrationType type;
+    private long size;
+    private long lastModified;
+    private BackfillMigration backfill;
+    @Setter
+    private boolean baseline;
+    @Setter
+    private Integer checksum;
+
+    public Migration(int version, String description, Path path, MigrationType type, long size, long lastModified) {
+        this.version = version;
+        this.description = description;
+        this.path = path;
+        this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Creates a copy of the given migration, including its checksum
+     * @param other the migration to copy
+     */
+    public Migration(Migration other) {
+        this.version = other.version;
+        this.description = other.description;
+        this.path = other.path;
+        this.type = other.type;
+        this.size = other.size;
+        this.lastModified = other.lastModified;
+        this.backfill = other.backfill;
+        this.baseline = other.baseline;
+        this.checksum = other.checksum;
+    }
+
+    public Migration(BackfillMigration backfill) {
+        this.version = backfill.getVersion();
+        this.description = backfill.getDescription();
+        this.type = MigrationType.BACKFILL;
+        this.backfill = backfill;
+        this.checksum = backfill.getChecksum();
+    }
 
 }
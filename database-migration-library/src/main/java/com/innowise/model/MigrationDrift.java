@@ -0,0 +1,15 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class MigrationDrift {
+
+    private int version;
+    private DriftType type;
+    private int appliedChecksum;
+    private int fileChecksum;
+
+}
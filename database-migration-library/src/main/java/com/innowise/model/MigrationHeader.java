@@ -0,0 +1,29 @@
+package com.innowise.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Execution options declared in the header of a migration script
+ * Every option has a default, so a script without a header runs as before
+ * {@code depends} is {@code null} unless declared, meaning the migration depends on the previous version
+ * {@code allowedRules} lists the DDL analysis rules suppressed for the script, {@code all} suppresses every rule
+ */
+
+@Getter
+@Setter
+public class MigrationHeader {
+
+    public static final int DEFAULT_RETRIES = -1;
+
+    private boolean transactional = true;
+    private String lockTimeout;
+    private String statementTimeout;
+    private int retries = DEFAULT_RETRIES;
+    private List<Integer> depends;
+    private List<String> allowedRules = new ArrayList<>();
+
+}
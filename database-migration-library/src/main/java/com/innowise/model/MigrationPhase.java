@@ -0,0 +1,26 @@
+package com.innowise.model;
+
+/**
+ * Phases of a migration run that are timed separately
+ */
+
+public enum MigrationPhase {
+
+    /** Listing the migration files and building the index */
+    LOAD,
+
+    /** Waiting for the migration lock */
+    LOCK_WAIT,
+
+    /** Reading the applied history */
+    HISTORY,
+
+    /** Checksumming applied migrations for validation */
+    CHECKSUM,
+
+    /** Running the statements, COPY or backfill chunks of a migration */
+    EXECUTE,
+
+    /** Writing the schema version row and committing */
+    BOOKKEEPING
+}
@@ -0,0 +1,20 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The outcome of a dry run: the pending migrations and what they are expected to do
+ */
+
+@Getter
+@AllArgsConstructor
+public class MigrationPlan {
+
+    private int currentVersion;
+    private LockMode lockMode;
+    private boolean rewrite;
+    private List<PlannedMigration> migrations;
+}
@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+import java.util.Map;
+
 @AllArgsConstructor
 @Getter
 @Setter
@@ -12,4 +15,17 @@ public class MigrationResultRecords {
     private int version;
     private boolean isSuccess;
     private String message;
+    private long executionTimeMs;
+    private long rowsAffected;
+    private Map<MigrationPhase, Long> phaseDurationsMicros;
+    private int lockSamples;
+    private int maxLockQueueDepth;
+    private String repeatable;
+    private List<DdlFinding> findings;
+
+    public MigrationResultRecords(int version, boolean isSuccess, String message) {
+        this.version = version;
+        this.isSuccess = isSuccess;
+        this.message = message;
+    }
 }
@@ -0,0 +1,23 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The outcome of one migration run
+ */
+
+@Getter
+@AllArgsConstructor
+public class MigrationRunResult {
+
+    private int currentVersion;
+    private int appliedCount;
+    private int failedCount;
+    private long durationMillis;
+    private boolean isStopped;
+
+    public boolean isSuccess() {
+        return failedCount == 0 && !isStopped;
+    }
+}
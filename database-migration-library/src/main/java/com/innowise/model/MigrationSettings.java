@@ -0,0 +1,116 @@
+package com.innowise.model;
+
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.lock.MigrationLock;
+import com.innowise.monitoring.MigrationListener;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tunable options of a migration run
+ * Every option has a default, so a new instance can be used as is
+ */
+
+@Getter
+@Setter
+public class MigrationSettings {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_BACKFILL_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_LOCK_RETRIES = 3;
+    public static final int DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS = 200;
+    public static final int DEFAULT_RETRY_MAX_BACKOFF_MILLIS = 10_000;
+    public static final int DEFAULT_GROUP_SIZE = 1;
+    public static final int DEFAULT_TARGET_CONCURRENCY = 8;
+    public static final int DEFAULT_PARALLEL_WIDTH = 1;
+    public static final int DEFAULT_TEMPLATE_MAX_COUNT = 5;
+    public static final String DEFAULT_REPORT_FILE = "migration-report.json";
+    public static final String DEFAULT_PLAN_FILE = "migration-plan.json";
+    public static final int DEFAULT_LOCK_WATCHDOG_MAX_WAITING = 5;
+    public static final int DEFAULT_LOCK_WATCHDOG_MAX_WAIT_MILLIS = 1000;
+    public static final int DEFAULT_LOCK_WATCHDOG_SAMPLE_MILLIS = 200;
+    public static final int DEFAULT_COORDINATION_POLL_MILLIS = 1000;
+    public static final int DEFAULT_COORDINATION_TIMEOUT_MILLIS = 600_000;
+    public static final int DEFAULT_WATCH_DEBOUNCE_MILLIS = 300;
+
+    private String migrationsDir;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean validateApplied;
+    private MigrationLock migrationLock = new AdvisoryMigrationLock();
+    private int backfillChunkSize = DEFAULT_BACKFILL_CHUNK_SIZE;
+    private int backfillMaxRowsPerSecond;
+    private int backfillPauseMillis;
+    private String lockTimeout;
+    private String statementTimeout;
+    private int lockRetries = DEFAULT_LOCK_RETRIES;
+    private int retryInitialBackoffMillis = DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS;
+    private int retryMaxBackoffMillis = DEFAULT_RETRY_MAX_BACKOFF_MILLIS;
+    private List<MigrationListener> listeners = new ArrayList<>();
+    private String reportFile = DEFAULT_REPORT_FILE;
+    private int groupSize = DEFAULT_GROUP_SIZE;
+    private long groupMaxMillis;
+    private ReportFormat reportFormat = ReportFormat.JSON;
+    private int targetConcurrency = DEFAULT_TARGET_CONCURRENCY;
+    private int parallelWidth = DEFAULT_PARALLEL_WIDTH;
+    private boolean outOfOrder;
+    private int templateMaxCount = DEFAULT_TEMPLATE_MAX_COUNT;
+    private String planFile = DEFAULT_PLAN_FILE;
+    private boolean lockWatchdogEnabled;
+    private int lockWatchdogMaxWaiting = DEFAULT_LOCK_WATCHDOG_MAX_WAITING;
+    private long lockWatchdogMaxWaitMillis = DEFAULT_LOCK_WATCHDOG_MAX_WAIT_MILLIS;
+    private long lockWatchdogSampleMillis = DEFAULT_LOCK_WATCHDOG_SAMPLE_MILLIS;
+    private boolean coordinationEnabled;
+    private long coordinationPollMillis = DEFAULT_COORDINATION_POLL_MILLIS;
+    private long coordinationTimeoutMillis = DEFAULT_COORDINATION_TIMEOUT_MILLIS;
+    private long watchDebounceMillis = DEFAULT_WATCH_DEBOUNCE_MILLIS;
+    private boolean analysisEnabled = true;
+    private Map<String, RuleSeverity> ruleSeverities = new HashMap<>();
+
+    public MigrationSettings() {
+    }
+
+    /**
+     * Creates a copy of the given settings
+     * The lock and the listeners are shared with the original
+     * @param other the settings to copy
+     */
+    public MigrationSettings(MigrationSettings other) {
+        this.migrationsDir = other.migrationsDir;
+        this.batchSize = other.batchSize;
+        this.validateApplied = other.validateApplied;
+        this.migrationLock = other.migrationLock;
+        this.backfillChunkSize = other.backfillChunkSize;
+        this.backfillMaxRowsPerSecond = other.backfillMaxRowsPerSecond;
+        this.backfillPauseMillis = other.backfillPauseMillis;
+        this.lockTimeout = other.lockTimeout;
+        this.statementTimeout = other.statementTimeout;
+        this.lockRetries = other.lockRetries;
+        this.retryInitialBackoffMillis = other.retryInitialBackoffMillis;
+        this.retryMaxBackoffMillis = other.retryMaxBackoffMillis;
+        this.listeners = other.listeners;
+        this.reportFile = other.reportFile;
+        this.groupSize = other.groupSize;
+        this.groupMaxMillis = other.groupMaxMillis;
+        this.reportFormat = other.reportFormat;
+        this.targetConcurrency = other.targetConcurrency;
+        this.parallelWidth = other.parallelWidth;
+        this.outOfOrder = other.outOfOrder;
+        this.templateMaxCount = other.templateMaxCount;
+        this.planFile = other.planFile;
+        this.lockWatchdogEnabled = other.lockWatchdogEnabled;
+        this.lockWatchdogMaxWaiting = other.lockWatchdogMaxWaiting;
+        this.lockWatchdogMaxWaitMillis = other.lockWatchdogMaxWaitMillis;
+        this.lockWatchdogSampleMillis = other.lockWatchdogSampleMillis;
+        this.coordinationEnabled = other.coordinationEnabled;
+        this.coordinationPollMillis = other.coordinationPollMillis;
+        this.coordinationTimeoutMillis = other.coordinationTimeoutMillis;
+        this.watchDebounceMillis = other.watchDebounceMillis;
+        this.analysisEnabled = other.analysisEnabled;
+        this.ruleSeverities = new HashMap<>(other.ruleSeverities);
+    }
+}
@@ -0,0 +1,38 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A database or tenant schema migrated by {@link com.innowise.service.MultiTargetMigrationRunner}
+ * A target with a URL is a separate database; a target with only a schema is a schema of the default database,
+ * selected through {@code search_path}, with its own schema version table
+ */
+
+@Getter
+@AllArgsConstructor
+public class MigrationTarget {
+
+    private String name;
+    private String url;
+    private String schema;
+
+    /**
+     * Creates a target for a separate database
+     * @param name the target name used in logs and reports
+     * @param url the database URL
+     * @return the target
+     */
+    public static MigrationTarget ofUrl(String name, String url) {
+        return new MigrationTarget(name, url, null);
+    }
+
+    /**
+     * Creates a target for a schema of the default database
+     * @param schema the schema name, also used as the target name
+     * @return the target
+     */
+    public static MigrationTarget ofSchema(String schema) {
+        return new MigrationTarget(schema, null, schema);
+    }
+}
@@ -0,0 +1,20 @@
+package com.innowise.model;
+
+/**
+ * Kinds of migration files
+ */
+
+public enum MigrationType {
+
+    /** A SQL script, e.g. {@code V1__Create_authors_table.sql} */
+    SQL,
+
+    /** A CSV data file bulk-loaded with COPY, e.g. {@code V5__Load_books.csv} */
+    COPY,
+
+    /** A chunked Java data migration, see {@link com.innowise.backfill.BackfillMigration} */
+    BACKFILL,
+
+    /** A SQL script re-applied whenever it changes, e.g. {@code R__Create_views.sql}; it has no version */
+    REPEATABLE
+}
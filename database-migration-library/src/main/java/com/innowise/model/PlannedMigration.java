@@ -0,0 +1,25 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The expected effect of one pending migration: the strongest lock it takes, whether it rewrites a table
+ * and the largest number of rows one of its statements touches
+ */
+
+@Getter
+@AllArgsConstructor
+public class PlannedMigration {
+
+    private int version;
+    private String description;
+    private MigrationType type;
+    private boolean transactional;
+    private LockMode lockMode;
+    private boolean rewrite;
+    private long estimatedRows;
+    private List<PlannedStatement> statements;
+}
@@ -0,0 +1,36 @@
+package com.innowise.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The expected effect of one statement of a pending migration
+ * Row and size estimates are -1 when unknown
+ */
+
+@Getter
+public class PlannedStatement {
+
+    @Setter
+    private String sql;
+    private String kind;
+    private String table;
+    private LockMode lockMode;
+    private boolean rewrite;
+    private boolean tableScan;
+    @Setter
+    private long estimatedRows = -1;
+    @Setter
+    private long tableBytes = -1;
+    @Setter
+    private String note;
+
+    public PlannedStatement(String sql, String kind, String table, LockMode lockMode, boolean rewrite, boolean tableScan) {
+        this.sql = sql;
+        this.kind = kind;
+        this.table = table;
+        this.lockMode = lockMode;
+        this.rewrite = rewrite;
+        this.tableScan = tableScan;
+    }
+}
@@ -0,0 +1,18 @@
+package com.innowise.model;
+
+/**
+ * Output formats of the migration report
+ */
+
+public enum ReportFormat {
+
+    /**
+     * A single indented JSON array
+     */
+    JSON,
+
+    /**
+     * One JSON object per line, so the file can be tailed while the run is in progress
+     */
+    NDJSON
+}
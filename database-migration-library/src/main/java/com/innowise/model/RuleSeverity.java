@@ -0,0 +1,20 @@
+package com.innowise.model;
+
+/**
+ * Severities of DDL analysis findings
+ */
+
+public enum RuleSeverity {
+
+    /** The rule is not checked */
+    OFF,
+
+    /** The finding is written to the report */
+    INFO,
+
+    /** The finding is written to the report and logged as a warning */
+    WARNING,
+
+    /** The finding rejects the run before any migration is applied */
+    ERROR
+}
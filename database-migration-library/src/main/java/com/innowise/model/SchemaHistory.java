@@ -0,0 +1,214 @@
+package com.innowise.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The SchemaHistory class is an in-memory snapshot of the schema version table
+ * Versions and checksums are kept in an open-addressing int to int map, so lookups
+ * do not box and do not touch the database
+ */
+
+public class SchemaHistory {
+
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int currentVersion;
+
+    /**
+     * Creates an empty history sized for the expected number of applied versions
+     * @param expectedSize the expected number of applied versions
+     */
+    public SchemaHistory(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Records an applied version
+     * @param version the applied version
+     * @param checksum the checksum stored for the version
+     */
+    public void put(int version, int checksum) {
+        if (version == FREE) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+        int index = indexOf(version);
+        if (keys[index] == FREE) {
+            keys[index] = version;
+            size++;
+        }
+        values[index] = checksum;
+        currentVersion = Math.max(currentVersion, version);
+    }
+
+    /**
+     * Checks whether the version has been applied
+     * @param version the version to look up
+     * @return true if the version is present in the history
+     */
+    public boolean contains(int version) {
+        return version != FREE && keys[indexOf(version)] == version;
+    }
+
+    /**
+     * Returns the checksum stored for the version
+     * @param version the version to look up
+     * @return the stored checksum
+     * @throws IllegalArgumentException if the version has not been applied
+     */
+    public int getChecksum(int version) {
+        int index = indexOf(version);
+        if (keys[index] != version) {
+            throw new IllegalArgumentException("Version is not applied: " + version);
+        }
+        return values[index];
+    }
+
+    /**
+     * Checks whether the migration has been applied with the same checksum
+     * @param migration the migration to check
+     * @return true if the version is applied and the checksums match
+     */
+    public boolean isApplied(Migration migration) {
+        int index = indexOf(migration.getVersion());
+        return keys[index] == migration.getVersion() && values[index] == migration.getChecksum();
+    }
+
+    /**
+     * Returns the highest applied version
+     * @return the current version, or 0 if nothing has been applied
+     */
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    /**
+     * Returns the highest version up to which every given migration has been applied
+     * Unlike {@link #getCurrentVersion()} it does not skip over gaps left by migrations that failed or were applied
+     * out of order: it is the highest applied version below the first given migration that is missing
+     * @param migrations the migrations sorted by version in ascending order
+     * @return the completed version, the current version if all given migrations have been applied
+     */
+    public int getCompletedVersion(List<Migration> migrations) {
+        for (Migration migration : migrations) {
+            if (!contains(migration.getVersion())) {
+                return highestVersionBelow(migration.getVersion());
+            }
+        }
+        return currentVersion;
+    }
+
+    /**
+     * Returns the number of applied versions
+     * @return the number of versions in the history
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Compares the history with the migrations on disk in a single pass
+     * Versions up to a baseline migration are covered by it and are not compared
+     * @param migrations the migrations sorted by version in ascending order
+     * @return the drift found, ordered by version; empty if the history matches the files
+     */
+    public List<MigrationDrift> validate(List<Migration> migrations) {
+        int[] appliedVersions = sortedVersions();
+        List<MigrationDrift> drifts = new ArrayList<>();
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (migration.isBaseline()) {
+                while (applied < appliedVersions.length && appliedVersions[applied] <= migration.getVersion()) {
+                    applied++;
+                }
+            }
+        }
+
+        for (Migration migration : migrations) {
+            int version = migration.getVersion();
+            if (migration.isBaseline()) {
+                continue;
+            }
+            while (applied < appliedVersions.length && appliedVersions[applied] < version) {
+                int missing = appliedVersions[applied++];
+                drifts.add(new MigrationDrift(missing, DriftType.MISSING_MIGRATION, getChecksum(missing), 0));
+            }
+            if (applied < appliedVersions.length && appliedVersions[applied] == version) {
+                int checksum = getChecksum(version);
+                if (checksum != migration.getChecksum()) {
+                    drifts.add(new MigrationDrift(version, DriftType.CHECKSUM_MISMATCH, checksum, migration.getChecksum()));
+                }
+                applied++;
+            } else if (version < currentVersion) {
+                drifts.add(new MigrationDrift(version, DriftType.NOT_APPLIED, 0, migration.getChecksum()));
+            }
+        }
+        while (applied < appliedVersions.length) {
+            int missing = appliedVersions[applied++];
+            drifts.add(new MigrationDrift(missing, DriftType.MISSING_MIGRATION, getChecksum(missing), 0));
+        }
+        return drifts;
+    }
+
+    private int highestVersionBelow(int version) {
+        int highest = 0;
+        for (int key : keys) {
+            if (key != FREE && key < version && key > highest) {
+                highest = key;
+            }
+        }
+        return highest;
+    }
+
+    private int[] sortedVersions() {
+        int[] versions = new int[size];
+        int count = 0;
+        for (int key : keys) {
+            if (key != FREE) {
+                versions[count++] = key;
+            }
+        }
+        Arrays.sort(versions);
+        return versions;
+    }
+
+    private int indexOf(int version) {
+        int mask = keys.length - 1;
+        int index = mix(version) & mask;
+        while (keys[index] != FREE && keys[index] != version) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int version) {
+        int hash = version * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,20 @@
+package com.innowise.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The report section of one target of a multi-target run
+ */
+
+@Getter
+@AllArgsConstructor
+public class TargetRunResult {
+
+    private String target;
+    private String reportFile;
+    private boolean isSuccess;
+    private MigrationRunResult run;
+    private long durationMillis;
+    private String error;
+}
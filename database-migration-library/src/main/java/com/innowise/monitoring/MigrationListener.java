@@ -0,0 +1,48 @@
+package com.innowise.monitoring;
+
+import com.innowise.model.MigrationPhase;
+import com.innowise.model.MigrationResultRecords;
+
+/**
+ * The MigrationListener interface receives progress callbacks during a migration run
+ * All methods have empty defaults, so implementations override only what they need
+ * Callbacks should return quickly. {@link #runStarted()}, {@link #migrationCompleted} and {@link #runCompleted}
+ * are invoked one at a time on the thread that called the migration run. With a parallel width above 1,
+ * {@link #phaseCompleted} of a migration is invoked on the worker thread executing it, concurrently with callbacks
+ * for other migrations, so implementations must be thread-safe
+ */
+
+public interface MigrationListener {
+
+    /**
+     * Called when a run starts, before the lock is acquired
+     */
+    default void runStarted() {
+    }
+
+    /**
+     * Called when a phase has finished
+     * @param version the migration version, or 0 for phases of the run itself
+     * @param phase the finished phase
+     * @param durationNanos the duration of the phase
+     */
+    default void phaseCompleted(int version, MigrationPhase phase, long durationNanos) {
+    }
+
+    /**
+     * Called when the outcome of a migration is known, including failures and migrations that were applied before
+     * In a sequential run results arrive in version order; in a parallel run they arrive in completion order, so a
+     * version can be reported before a lower one that is still running. Results of repeatable migrations follow
+     * those of the versioned ones. A successful result is only reported after its transaction committed
+     * @param result the result as it appears in the report
+     */
+    default void migrationCompleted(MigrationResultRecords result) {
+    }
+
+    /**
+     * Called when a run has finished, successfully or not
+     * @param durationNanos the duration of the whole run
+     */
+    default void runCompleted(long durationNanos) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.innowise.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for every timed phase of a migration run
+ */
+
+@Name("com.innowise.MigrationPhase")
+@Label("Migration Phase")
+@Category("Database Migrations")
+@Description("A timed phase of a database migration run")
+class MigrationPhaseEvent extends Event {
+
+    @Label("Version")
+    @Description("Migration version, 0 for phases of the run itself")
+    int version;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Rows Affected")
+    long rowsAffected;
+}
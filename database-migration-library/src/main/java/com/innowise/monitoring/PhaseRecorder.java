@@ -0,0 +1,131 @@
+package com.innowise.monitoring;
+
+import com.innowise.model.MigrationPhase;
+import com.innowise.model.MigrationResultRecords;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PhaseRecorder class times the phases of one migration, or of the run itself for version 0
+ * Each finished phase is committed as a {@link MigrationPhaseEvent} JFR event and passed to the listeners
+ */
+
+public class PhaseRecorder {
+
+    private final int version;
+    private final List<MigrationListener> listeners;
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[MigrationPhase.values().length];
+    private long rowsAffected;
+    private int lockSamples;
+    private int maxLockQueueDepth;
+
+    public PhaseRecorder(int version, List<MigrationListener> listeners) {
+        this.version = version;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Starts timing a phase; closing the returned timer ends it
+     * @param phase the phase to time
+     * @return the running timer
+     */
+    public Timer start(MigrationPhase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds to the number of rows affected by the migration
+     * @param rows the number of rows, negative counts reported by the driver are ignored
+     */
+    public void addRows(long rows) {
+        if (rows > 0) {
+            rowsAffected += rows;
+        }
+    }
+
+    /**
+     * Returns the time elapsed since the recorder was created
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+    }
+
+    /**
+     * Returns the time elapsed since the recorder was created
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    /**
+     * Records what the lock watchdog saw while the migration was running
+     * @param samples the number of times the lock queue was sampled
+     * @param maxQueueDepth the longest queue of sessions waiting behind the migration
+     */
+    public void recordLockQueue(int samples, int maxQueueDepth) {
+        lockSamples += samples;
+        maxLockQueueDepth = Math.max(maxLockQueueDepth, maxQueueDepth);
+    }
+
+    /**
+     * Copies the timings into a report entry
+     * @param result the report entry of the migration
+     * @return the same entry
+     */
+    public MigrationResultRecords fill(MigrationResultRecords result) {
+        Map<MigrationPhase, Long> durations = new EnumMap<>(MigrationPhase.class);
+        for (MigrationPhase phase : MigrationPhase.values()) {
+            if (phaseNanos[phase.ordinal()] > 0) {
+                durations.put(phase, TimeUnit.NANOSECONDS.toMicros(phaseNanos[phase.ordinal()]));
+            }
+        }
+        result.setExecutionTimeMs(getElapsedMillis());
+        result.setRowsAffected(rowsAffected);
+        result.setPhaseDurationsMicros(durations);
+        result.setLockSamples(lockSamples);
+        result.setMaxLockQueueDepth(maxLockQueueDepth);
+        return result;
+    }
+
+    /**
+     * A running phase timer
+     */
+    public final class Timer implements AutoCloseable {
+
+        private final MigrationPhase phase;
+        private final MigrationPhaseEvent event = new MigrationPhaseEvent();
+        private final long phaseStartNanos;
+        private final long rowsAtStart;
+
+        private Timer(MigrationPhase phase) {
+            this.phase = phase;
+            this.rowsAtStart = rowsAffected;
+            event.begin();
+            phaseStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long duration = System.nanoTime() - phaseStartNanos;
+            phaseNanos[phase.ordinal()] += duration;
+            event.end();
+            if (event.shouldCommit()) {
+                event.version = version;
+                event.phase = phase.name();
+                event.rowsAffected = rowsAffected - rowsAtStart;
+                event.commit();
+            }
+            listeners.forEach(listener -> listener.phaseCompleted(version, phase, duration));
+        }
+    }
+}
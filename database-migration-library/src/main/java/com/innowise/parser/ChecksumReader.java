@@ -0,0 +1,148 @@
+package com.innowise.parser;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.zip.CRC32;
+
+/**
+ * The ChecksumReader class computes the migration checksum over the characters that pass through it
+ * The checksum is the CRC32 of the script lines joined with {@code '\n'} and encoded with the platform charset,
+ * which is the value historically stored in the schema version table: line terminators are normalized
+ * and a single trailing terminator is ignored
+ */
+
+public class ChecksumReader extends FilterReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CRC32 crc = new CRC32();
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 4);
+
+    private boolean pendingLineBreak;
+    private boolean afterCarriageReturn;
+    private boolean finished;
+
+    public ChecksumReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c < 0) {
+            finish();
+        } else {
+            update((char) c);
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count < 0) {
+            finish();
+        }
+        for (int i = 0; i < count; i++) {
+            update(buffer[offset + i]);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("Skipping is not supported while computing a checksum");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Reads the remaining characters so that the checksum covers the whole script
+     * @throws IOException if the underlying reader fails
+     */
+    public void drain() throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        while (read(buffer, 0, buffer.length) >= 0) {
+            // consumed for the checksum only
+        }
+    }
+
+    /**
+     * Returns the checksum of everything read so far
+     * @return the checksum as stored in the schema version table
+     * @throws IllegalStateException if the end of the script has not been reached yet
+     */
+    public int getChecksum() {
+        if (!finished) {
+            throw new IllegalStateException("Checksum is only available after the whole script has been read");
+        }
+        return (int) crc.getValue();
+    }
+
+    private void update(char c) {
+        if (c == '\n' && afterCarriageReturn) {
+            afterCarriageReturn = false;
+            return;
+        }
+        afterCarriageReturn = c == '\r';
+        if (c == '\n' || c == '\r') {
+            if (pendingLineBreak) {
+                put('\n');
+            }
+            pendingLineBreak = true;
+            return;
+        }
+        if (pendingLineBreak) {
+            put('\n');
+            pendingLineBreak = false;
+        }
+        put(c);
+    }
+
+    private void put(char c) {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        encode(true);
+        encoder.flush(bytes);
+        updateCrc();
+        finished = true;
+    }
+
+    private void encode(boolean endOfInput) {
+        chars.flip();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, endOfInput);
+            updateCrc();
+        } while (result.isOverflow());
+        chars.compact();
+    }
+
+    private void updateCrc() {
+        bytes.flip();
+        crc.update(bytes);
+        bytes.clear();
+    }
+}
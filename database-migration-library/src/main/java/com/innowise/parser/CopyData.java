@@ -0,0 +1,104 @@
+package com.innowise.parser;
+
+import com.innowise.exception.SqLFileReadException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * The CopyData class represents the contents of a COPY migration file
+ * The first line of the file names the target, e.g. {@code -- COPY books (title, author_id) WITH (FORMAT csv, HEADER)},
+ * and the rest of the file is streamed to the server as is. When the WITH clause is omitted the data is read as CSV
+ * The checksum is the CRC32 of the raw file bytes, header included, and is computed while the data is streamed
+ */
+
+public class CopyData implements Closeable {
+
+    private static final int MAX_HEADER_LENGTH = 4096;
+    private static final String DEFAULT_OPTIONS = "WITH (FORMAT csv)";
+    private static final Pattern HEADER = Pattern.compile(
+            "--\\s*COPY\\s+([\\w.\"]+\\s*(?:\\([^)]*\\))?)\\s*(WITH\\s*\\(.*\\))?\\s*", Pattern.CASE_INSENSITIVE);
+
+    private final CheckedInputStream data;
+    private final String copySql;
+
+    /**
+     * Reads the header line and prepares the remaining data for streaming
+     * @param inputStream the raw file contents
+     * @param source the file name used in error messages
+     * @throws SqLFileReadException if the file cannot be read or has no valid COPY header
+     */
+    public CopyData(InputStream inputStream, String source) {
+        this.data = new CheckedInputStream(inputStream, new CRC32());
+        String header = readHeader(source);
+        Matcher matcher = HEADER.matcher(header);
+        if (!matcher.matches()) {
+            throw new SqLFileReadException("Invalid COPY header in file " + source + ": " + header, null);
+        }
+        String options = matcher.group(2) != null ? matcher.group(2) : DEFAULT_OPTIONS;
+        this.copySql = "COPY " + matcher.group(1).trim() + " FROM STDIN " + options;
+    }
+
+    /**
+     * Returns the COPY statement built from the header
+     * @return the statement to pass to the COPY API
+     */
+    public String getCopySql() {
+        return copySql;
+    }
+
+    /**
+     * Returns the data following the header line
+     * @return the stream of rows to copy
+     */
+    public InputStream getData() {
+        return data;
+    }
+
+    /**
+     * Returns the checksum of the bytes read so far
+     * @return the CRC32 of the raw file once the data stream has been fully consumed
+     */
+    public int getChecksum() {
+        return (int) data.getChecksum().getValue();
+    }
+
+    /**
+     * Reads the remaining data so that the checksum covers the whole file
+     * @throws IOException if the file cannot be read
+     */
+    public void drain() throws IOException {
+        byte[] buffer = new byte[8192];
+        while (data.read(buffer) >= 0) {
+            // consumed for the checksum only
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+    private String readHeader(String source) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try {
+            int b;
+            while ((b = data.read()) >= 0 && b != '\n') {
+                if (header.size() == MAX_HEADER_LENGTH) {
+                    throw new SqLFileReadException("COPY header is too long in file " + source, null);
+                }
+                header.write(b);
+            }
+        } catch (IOException e) {
+            throw new SqLFileReadException("Error reading file: " + source, e);
+        }
+        return header.toString(StandardCharsets.UTF_8).trim();
+    }
+}
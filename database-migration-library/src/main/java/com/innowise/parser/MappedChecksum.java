@@ -0,0 +1,74 @@
+package com.innowise.parser;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The MappedChecksum class computes checksums straight from memory-mapped files, without copying them to the heap
+ * Script checksums must match {@link ChecksumReader}. For a UTF-8 platform charset and a file without carriage returns
+ * that is the CRC32 of the raw bytes minus one trailing line feed; other scripts are not handled here
+ */
+
+public final class MappedChecksum {
+
+    private static final long CHUNK_SIZE = 1L << 28;
+    private static final long NOT_APPLICABLE = -1L;
+
+    private MappedChecksum() {
+    }
+
+    /**
+     * Computes the CRC32 of the raw file bytes
+     * @param path the file to checksum
+     * @return the checksum of the whole file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static int rawChecksum(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            update(crc, channel, channel.size());
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Computes the script checksum as defined by {@link ChecksumReader} if the file can be hashed as is
+     * @param path the SQL script to checksum
+     * @return the checksum, or -1 if the script needs line terminator normalization or re-encoding
+     * @throws IOException if the file cannot be mapped
+     */
+    public static long scriptChecksum(Path path) throws IOException {
+        if (!StandardCharsets.UTF_8.equals(Charset.defaultCharset())) {
+            return NOT_APPLICABLE;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean trailingLineFeed = false;
+            for (long position = 0; position < size; position += CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+                int limit = buffer.limit();
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\r') {
+                        return NOT_APPLICABLE;
+                    }
+                }
+                trailingLineFeed = limit > 0 && buffer.get(limit - 1) == '\n';
+            }
+            CRC32 crc = new CRC32();
+            update(crc, channel, trailingLineFeed ? size - 1 : size);
+            return crc.getValue();
+        }
+    }
+
+    private static void update(CRC32 crc, FileChannel channel, long length) throws IOException {
+        for (long position = 0; position < length; position += CHUNK_SIZE) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, length - position)));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.innowise.parser;
+
+import com.innowise.exception.SqLFileReadException;
+import com.innowise.model.MigrationHeader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The MigrationHeaderParser class reads execution options from the header comments of a migration script
+ * Options are written as {@code -- migration: key=value, key=value}, for example
+ * {@code -- migration: transactional=false, lock_timeout=2s, statement_timeout=15min, retries=5}
+ * Dependencies for parallel runs are listed separated by spaces, {@code depends=12 15}, or {@code depends=none}
+ * DDL analysis rules are suppressed for the script in the same way, {@code allow=index-not-concurrent column-type-change}
+ */
+
+public final class MigrationHeaderParser {
+
+    public static final String DIRECTIVE_PREFIX = "migration:";
+
+    private static final Pattern DURATION = Pattern.compile("\\d+\\s*(ms|s|min|h)?");
+
+    private MigrationHeaderParser() {
+    }
+
+    /**
+     * Parses the options found in the given header comments
+     * @param headerComments the header comments of the script
+     * @param source the script name used in error messages
+     * @return the parsed options, defaults for everything not declared
+     * @throws SqLFileReadException if an option is unknown or has an invalid value
+     */
+    public static MigrationHeader parse(List<String> headerComments, String source) {
+        MigrationHeader header = new MigrationHeader();
+        for (String comment : headerComments) {
+            if (!comment.toLowerCase(Locale.ROOT).startsWith(DIRECTIVE_PREFIX)) {
+                continue;
+            }
+            for (String option : comment.substring(DIRECTIVE_PREFIX.length()).split(",")) {
+                if (!option.isBlank()) {
+                    apply(header, option.trim(), source);
+                }
+            }
+        }
+        return header;
+    }
+
+    private static void apply(MigrationHeader header, String option, String source) {
+        int separator = option.indexOf('=');
+        if (separator < 0) {
+            throw new SqLFileReadException("Invalid header option in " + source + ": " + option, null);
+        }
+        String key = option.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        String value = option.substring(separator + 1).trim();
+        switch (key) {
+            case "transactional":
+                header.setTransactional(Boolean.parseBoolean(value));
+                break;
+            case "lock_timeout":
+                header.setLockTimeout(duration(value, option, source));
+                break;
+            case "statement_timeout":
+                header.setStatementTimeout(duration(value, option, source));
+                break;
+            case "retries":
+                header.setRetries(integer(value, option, source));
+                break;
+            case "depends":
+                header.setDepends(versions(value, option, source));
+                break;
+            case "allow":
+                header.setAllowedRules(Arrays.asList(value.toLowerCase(Locale.ROOT).split("\\s+")));
+                break;
+            default:
+                throw new SqLFileReadException("Unknown header option in " + source + ": " + option, null);
+        }
+    }
+
+    private static String duration(String value, String option, String source) {
+        if (!DURATION.matcher(value).matches()) {
+            throw new SqLFileReadException("Invalid duration in " + source + ": " + option, null);
+        }
+        return value.replace(" ", "");
+    }
+
+    private static List<Integer> versions(String value, String option, String source) {
+        List<Integer> versions = new ArrayList<>();
+        if (value.equalsIgnoreCase("none")) {
+            return versions;
+        }
+        for (String version : value.split("\\s+")) {
+            versions.add(integer(version, option, source));
+        }
+        return versions;
+    }
+
+    private static int integer(String value, String option, String source) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new SqLFileReadException("Invalid number in " + source + ": " + option, e);
+        }
+    }
+}
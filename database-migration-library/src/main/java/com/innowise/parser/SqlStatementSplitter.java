@@ -0,0 +1,298 @@
+package com.innowise.parser;
+
+import com.innowise.exception.SqLFileReadException;
+import com.innowise.model.MigrationHeader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SqlStatementSplitter class splits a SQL script into statements while streaming it from a {@link Reader}
+ * Only one statement is held in memory at a time. Semicolons inside single-quoted and double-quoted literals,
+ * escape strings, line and block comments and PostgreSQL dollar-quoted bodies do not end a statement
+ * The script checksum is computed by a {@link ChecksumReader} in the same pass
+ * Line comments preceding the first statement form the script header, see {@link #getHeaderComments()}
+ */
+
+public class SqlStatementSplitter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private enum State {
+        NORMAL, SINGLE_QUOTE, ESCAPE_STRING, DOUBLE_QUOTE, LINE_COMMENT, BLOCK_COMMENT, DOLLAR_TAG, DOLLAR_QUOTE
+    }
+
+    private final ChecksumReader reader;
+    private final String source;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final StringBuilder statement = new StringBuilder();
+    private State state = State.NORMAL;
+    private boolean hasContent;
+    private boolean hadContent;
+    private int blockCommentDepth;
+    private int tagStart;
+    private String dollarTag;
+    private int dollarBodyStart;
+    private char previous;
+    private boolean escaped;
+    private boolean endOfScript;
+
+    private final List<String> headerComments = new ArrayList<>();
+    private boolean inHeader = true;
+    private int commentStart;
+    private String pendingStatement;
+
+    /**
+     * Creates a splitter over the given reader
+     * @param reader the script source
+     * @param source the script name used in error messages
+     */
+    public SqlStatementSplitter(Reader reader, String source) {
+        this.reader = new ChecksumReader(reader);
+        this.source = source;
+    }
+
+    /**
+     * Reads the next statement from the script
+     * @return the statement without its terminating semicolon, or {@code null} when the script is exhausted
+     * @throws SqLFileReadException if the script cannot be read
+     */
+    public String nextStatement() {
+        if (pendingStatement != null) {
+            String sql = pendingStatement;
+            pendingStatement = null;
+            return sql;
+        }
+        String sql = readStatement();
+        inHeader = false;
+        return sql;
+    }
+
+    /**
+     * Returns the text of the line comments that precede the first statement
+     * Reads ahead up to the first statement if no statement has been read yet
+     * @return the header comments without the leading dashes
+     */
+    public List<String> getHeaderComments() {
+        if (inHeader) {
+            pendingStatement = readStatement();
+            inHeader = false;
+        }
+        return headerComments;
+    }
+
+    /**
+     * Returns the execution options declared in the script header
+     * @return the parsed header, defaults if the script has none
+     */
+    public MigrationHeader getHeader() {
+        return MigrationHeaderParser.parse(getHeaderComments(), source);
+    }
+
+    private String readStatement() {
+        while (!endOfScript) {
+            if (position == limit && !fill()) {
+                endOfScript = true;
+                return hasContent ? takeStatement() : null;
+            }
+            char c = buffer[position++];
+            if (accept(c)) {
+                String sql = takeStatement();
+                if (sql != null) {
+                    return sql;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the checksum of the script
+     * @return the checksum as stored in the schema version table
+     * @throws IllegalStateException if not all statements have been read yet
+     */
+    public int getChecksum() {
+        return reader.getChecksum();
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new SqLFileReadException("Error closing file: " + source, e);
+        }
+    }
+
+    private boolean fill() {
+        try {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            return limit > 0;
+        } catch (IOException e) {
+            throw new SqLFileReadException("Error reading file: " + source, e);
+        }
+    }
+
+    /**
+     * Consumes one character
+     * @return true if the character terminates the current statement
+     */
+    private boolean accept(char c) {
+        switch (state) {
+            case NORMAL:
+                return acceptNormal(c);
+            case SINGLE_QUOTE:
+                statement.append(c);
+                if (c == '\'') {
+                    state = State.NORMAL;
+                }
+                break;
+            case ESCAPE_STRING:
+                statement.append(c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '\'') {
+                    state = State.NORMAL;
+                }
+                break;
+            case DOUBLE_QUOTE:
+                statement.append(c);
+                if (c == '"') {
+                    state = State.NORMAL;
+                }
+                break;
+            case LINE_COMMENT:
+                if (c == '\n' || c == '\r') {
+                    if (inHeader && !hasContent) {
+                        headerComments.add(statement.substring(commentStart).trim());
+                    }
+                    state = State.NORMAL;
+                }
+                statement.append(c);
+                break;
+            case BLOCK_COMMENT:
+                statement.append(c);
+                if (previous == '*' && c == '/') {
+                    c = 0;
+                    if (--blockCommentDepth == 0) {
+                        state = State.NORMAL;
+                    }
+                } else if (previous == '/' && c == '*') {
+                    c = 0;
+                    blockCommentDepth++;
+                }
+                break;
+            case DOLLAR_TAG:
+                if (c == '$') {
+                    statement.append(c);
+                    dollarTag = statement.substring(tagStart);
+                    dollarBodyStart = statement.length();
+                    state = State.DOLLAR_QUOTE;
+                } else if (Character.isLetter(c) || c == '_'
+                        || Character.isDigit(c) && statement.length() - tagStart > 1) {
+                    statement.append(c);
+                } else {
+                    state = State.NORMAL;
+                    return acceptNormal(c);
+                }
+                break;
+            case DOLLAR_QUOTE:
+                statement.append(c);
+                if (c == '$' && statement.length() - dollarBodyStart >= dollarTag.length() && endsWithDollarTag()) {
+                    state = State.NORMAL;
+                    c = 0;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown state: " + state);
+        }
+        previous = c;
+        return false;
+    }
+
+    private boolean acceptNormal(char c) {
+        char before = previous;
+        boolean contentBeforePrevious = hadContent;
+        hadContent = hasContent;
+        previous = c;
+        if (c == ';') {
+            return true;
+        }
+        statement.append(c);
+        switch (c) {
+            case '\'':
+                state = (before == 'E' || before == 'e') && isStandalonePrefix() ? State.ESCAPE_STRING : State.SINGLE_QUOTE;
+                break;
+            case '"':
+                state = State.DOUBLE_QUOTE;
+                break;
+            case '-':
+                if (before == '-') {
+                    state = State.LINE_COMMENT;
+                    hasContent = contentBeforePrevious;
+                    commentStart = statement.length();
+                    return false;
+                }
+                break;
+            case '*':
+                if (before == '/') {
+                    state = State.BLOCK_COMMENT;
+                    blockCommentDepth = 1;
+                    hasContent = contentBeforePrevious;
+                    previous = 0;
+                    return false;
+                }
+                break;
+            case '$':
+                if (!isIdentifierChar(before)) {
+                    state = State.DOLLAR_TAG;
+                    tagStart = statement.length() - 1;
+                }
+                break;
+            default:
+                break;
+        }
+        if (!Character.isWhitespace(c)) {
+            hasContent = true;
+        }
+        return false;
+    }
+
+    private boolean isStandalonePrefix() {
+        int prefix = statement.length() - 3;
+        return prefix < 0 || !isIdentifierChar(statement.charAt(prefix));
+    }
+
+    private boolean endsWithDollarTag() {
+        int offset = statement.length() - dollarTag.length();
+        for (int i = 0; i < dollarTag.length(); i++) {
+            if (statement.charAt(offset + i) != dollarTag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private String takeStatement() {
+        String sql = hasContent ? statement.toString().trim() : null;
+        statement.setLength(0);
+        hasContent = false;
+        hadContent = false;
+        state = State.NORMAL;
+        previous = 0;
+        return sql;
+    }
+}
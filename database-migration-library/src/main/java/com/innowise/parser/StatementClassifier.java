@@ -0,0 +1,197 @@
+package com.innowise.parser;
+
+import com.innowise.model.LockMode;
+import com.innowise.model.PlannedStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The StatementClassifier class derives the table lock, rewrite and full scan of a SQL statement from its text
+ * The rules follow the PostgreSQL 11+ documentation of ALTER TABLE and the explicit locking chapter;
+ * adding a column with a constant default does not rewrite the table, a volatile default, a stored generated
+ * column or an identity does. A type change is reported as a rewrite even where the types are binary coercible
+ * Statements that are not recognized are reported with {@link LockMode#UNKNOWN}
+ */
+
+public class StatementClassifier {
+
+    private static final String NAME = "((?:\"[^\"]+\"|[\\w$]+)(?:\\.(?:\"[^\"]+\"|[\\w$]+))?)";
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(?:\\s+|--[^\\n]*(?:\\n|$)|/\\*.*?\\*/)*", Pattern.DOTALL);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(CONCURRENTLY\\s+)?.*?\\bON\\s+(?:ONLY\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE\\s+(?:(?:GLOBAL|LOCAL)\\s+)?(?:(?:TEMP|TEMPORARY|UNLOGGED)\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern CREATE_OTHER = Pattern.compile("CREATE\\s+.*", FLAGS);
+    private static final Pattern ALTER_TABLE = Pattern.compile(
+            "ALTER\\s+TABLE\\s+(?:IF\\s+EXISTS\\s+)?(?:ONLY\\s+)?" + NAME + "\\s+(.*)", FLAGS);
+    private static final Pattern DROP_TABLE = Pattern.compile("DROP\\s+TABLE\\s+(?:IF\\s+EXISTS\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern DROP_INDEX = Pattern.compile("DROP\\s+INDEX\\s+(CONCURRENTLY\\s+)?.*", FLAGS);
+    private static final Pattern TRUNCATE = Pattern.compile("TRUNCATE\\s+(?:TABLE\\s+)?(?:ONLY\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern INSERT = Pattern.compile("INSERT\\s+INTO\\s+" + NAME + ".*", FLAGS);
+    private static final Pattern UPDATE = Pattern.compile("UPDATE\\s+(?:ONLY\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern DELETE = Pattern.compile("DELETE\\s+FROM\\s+(?:ONLY\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern SELECT = Pattern.compile("(?:SELECT|WITH)\\s+.*", FLAGS);
+    private static final Pattern CLUSTER = Pattern.compile("CLUSTER\\s+(?:VERBOSE\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern VACUUM_FULL = Pattern.compile("VACUUM\\s+(?:\\([^)]*\\bFULL\\b[^)]*\\)|FULL)\\s+(?:VERBOSE\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern REFRESH = Pattern.compile(
+            "REFRESH\\s+MATERIALIZED\\s+VIEW\\s+(CONCURRENTLY\\s+)?" + NAME + ".*", FLAGS);
+    private static final Pattern LOCK = Pattern.compile(
+            "LOCK\\s+(?:TABLE\\s+)?(?:ONLY\\s+)?" + NAME + "(?:\\s+IN\\s+(.+?)\\s+MODE)?.*", FLAGS);
+
+    private static final Pattern ADD_CONSTRAINT = Pattern.compile(
+            "ADD\\s+(?:CONSTRAINT\\s+\\S+\\s+)?(CHECK|FOREIGN\\s+KEY|PRIMARY\\s+KEY|UNIQUE|EXCLUDE)\\b.*", FLAGS);
+    private static final Pattern ADD_COLUMN = Pattern.compile("ADD\\s+.*", FLAGS);
+    private static final Pattern REWRITING_COLUMN = Pattern.compile(
+            ".*(?:\\bGENERATED\\s+ALWAYS\\s+AS\\s*\\(|\\bGENERATED\\s+(?:ALWAYS|BY\\s+DEFAULT)\\s+AS\\s+IDENTITY"
+                    + "|\\b(?:SMALL|BIG)?SERIAL\\d?\\b"
+                    + "|\\bDEFAULT\\s+.*\\b(?:RANDOM|GEN_RANDOM_UUID|UUID_GENERATE_V\\w+|CLOCK_TIMESTAMP|TIMEOFDAY|NEXTVAL)\\s*\\().*", FLAGS);
+    private static final Pattern TYPE_CHANGE = Pattern.compile("ALTER\\s+(?:COLUMN\\s+)?\\S+\\s+(?:SET\\s+DATA\\s+)?TYPE\\b.*", FLAGS);
+    private static final Pattern SET_NOT_NULL = Pattern.compile("ALTER\\s+(?:COLUMN\\s+)?\\S+\\s+SET\\s+NOT\\s+NULL.*", FLAGS);
+    private static final Pattern COLUMN_OPTIONS = Pattern.compile(
+            "ALTER\\s+(?:COLUMN\\s+)?\\S+\\s+SET\\s+(?:STATISTICS|\\().*|SET\\s*\\(.*|RESET\\s*\\(.*|CLUSTER\\s+ON\\b.*|SET\\s+WITHOUT\\s+CLUSTER.*", FLAGS);
+    private static final Pattern TABLE_REWRITE = Pattern.compile(
+            "SET\\s+(?:TABLESPACE|LOGGED|UNLOGGED|ACCESS\\s+METHOD)\\b.*", FLAGS);
+    private static final Pattern TRIGGER_TOGGLE = Pattern.compile("(?:ENABLE|DISABLE)\\s+(?:ALWAYS\\s+|REPLICA\\s+)?TRIGGER\\b.*", FLAGS);
+    private static final Pattern ATTACH_PARTITION = Pattern.compile("ATTACH\\s+PARTITION\\b.*", FLAGS);
+    private static final Pattern DETACH_CONCURRENTLY = Pattern.compile("DETACH\\s+PARTITION\\s+\\S+\\s+CONCURRENTLY.*", FLAGS);
+
+    private StatementClassifier() {
+    }
+
+    /**
+     * Classifies a statement
+     * @param sql the statement as read from the migration script
+     * @return the classification with unknown estimates
+     */
+    public static PlannedStatement classify(String sql) {
+        String text = LEADING_COMMENTS.matcher(sql).replaceFirst("").trim();
+        Matcher matcher;
+        if ((matcher = CREATE_INDEX.matcher(text)).matches()) {
+            boolean concurrently = matcher.group(1) != null;
+            return new PlannedStatement(sql, "CREATE INDEX", matcher.group(2),
+                    concurrently ? LockMode.SHARE_UPDATE_EXCLUSIVE : LockMode.SHARE, false, true);
+        }
+        if ((matcher = CREATE_TABLE.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "CREATE TABLE", matcher.group(1), LockMode.NONE, false, false);
+        }
+        if ((matcher = ALTER_TABLE.matcher(text)).matches()) {
+            return classifyAlterTable(sql, matcher.group(1), matcher.group(2));
+        }
+        if ((matcher = DROP_TABLE.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "DROP TABLE", matcher.group(1), LockMode.ACCESS_EXCLUSIVE, false, false);
+        }
+        if ((matcher = DROP_INDEX.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "DROP INDEX", null,
+                    matcher.group(1) != null ? LockMode.SHARE_UPDATE_EXCLUSIVE : LockMode.ACCESS_EXCLUSIVE, false, false);
+        }
+        if ((matcher = TRUNCATE.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "TRUNCATE", matcher.group(1), LockMode.ACCESS_EXCLUSIVE, false, false);
+        }
+        if ((matcher = INSERT.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "INSERT", matcher.group(1), LockMode.ROW_EXCLUSIVE, false, false);
+        }
+        if ((matcher = UPDATE.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "UPDATE", matcher.group(1), LockMode.ROW_EXCLUSIVE, false, false);
+        }
+        if ((matcher = DELETE.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "DELETE", matcher.group(1), LockMode.ROW_EXCLUSIVE, false, false);
+        }
+        if (SELECT.matcher(text).matches()) {
+            return new PlannedStatement(sql, "SELECT", null, LockMode.ACCESS_SHARE, false, false);
+        }
+        if ((matcher = CLUSTER.matcher(text)).matches() || (matcher = VACUUM_FULL.matcher(text)).matches()) {
+            return new PlannedStatement(sql, text.substring(0, text.indexOf(' ')).toUpperCase(Locale.ROOT),
+                    matcher.group(1), LockMode.ACCESS_EXCLUSIVE, true, true);
+        }
+        if ((matcher = REFRESH.matcher(text)).matches()) {
+            return new PlannedStatement(sql, "REFRESH MATERIALIZED VIEW", matcher.group(2),
+                    matcher.group(1) != null ? LockMode.EXCLUSIVE : LockMode.ACCESS_EXCLUSIVE, false, true);
+        }
+        if ((matcher = LOCK.matcher(text)).matches()) {
+            LockMode lockMode = matcher.group(2) != null
+                    ? toLockMode(matcher.group(2)) : LockMode.ACCESS_EXCLUSIVE;
+            return new PlannedStatement(sql, "LOCK", matcher.group(1), lockMode, false, false);
+        }
+        if (CREATE_OTHER.matcher(text).matches()) {
+            return new PlannedStatement(sql, "CREATE", null, LockMode.NONE, false, false);
+        }
+        int end = text.indexOf(' ');
+        return new PlannedStatement(sql, (end > 0 ? text.substring(0, end) : text).toUpperCase(Locale.ROOT),
+                null, LockMode.UNKNOWN, false, false);
+    }
+
+    private static PlannedStatement classifyAlterTable(String sql, String table, String actions) {
+        LockMode lockMode = LockMode.NONE;
+        boolean rewrite = false;
+        boolean tableScan = false;
+        for (String action : splitActions(actions)) {
+            boolean notValid = action.toUpperCase(Locale.ROOT).contains("NOT VALID");
+            Matcher constraint = ADD_CONSTRAINT.matcher(action);
+            if (constraint.matches()) {
+                String constraintType = constraint.group(1).toUpperCase(Locale.ROOT);
+                boolean usingIndex = action.toUpperCase(Locale.ROOT).contains("USING INDEX");
+                lockMode = lockMode.max(constraintType.startsWith("FOREIGN")
+                        ? LockMode.SHARE_ROW_EXCLUSIVE : LockMode.ACCESS_EXCLUSIVE);
+                tableScan |= !notValid && !usingIndex;
+            } else if (ADD_COLUMN.matcher(action).matches()) {
+                lockMode = LockMode.ACCESS_EXCLUSIVE;
+                rewrite |= REWRITING_COLUMN.matcher(action).matches();
+            } else if (action.toUpperCase(Locale.ROOT).startsWith("VALIDATE CONSTRAINT")) {
+                lockMode = lockMode.max(LockMode.SHARE_UPDATE_EXCLUSIVE);
+                tableScan = true;
+            } else if (TYPE_CHANGE.matcher(action).matches() || TABLE_REWRITE.matcher(action).matches()) {
+                lockMode = LockMode.ACCESS_EXCLUSIVE;
+                rewrite = true;
+            } else if (SET_NOT_NULL.matcher(action).matches()) {
+                lockMode = LockMode.ACCESS_EXCLUSIVE;
+                tableScan = true;
+            } else if (COLUMN_OPTIONS.matcher(action).matches() || DETACH_CONCURRENTLY.matcher(action).matches()) {
+                lockMode = lockMode.max(LockMode.SHARE_UPDATE_EXCLUSIVE);
+            } else if (ATTACH_PARTITION.matcher(action).matches()) {
+                lockMode = lockMode.max(LockMode.SHARE_UPDATE_EXCLUSIVE);
+                tableScan = true;
+            } else if (TRIGGER_TOGGLE.matcher(action).matches()) {
+                lockMode = lockMode.max(LockMode.SHARE_ROW_EXCLUSIVE);
+            } else {
+                lockMode = LockMode.ACCESS_EXCLUSIVE;
+            }
+        }
+        return new PlannedStatement(sql, "ALTER TABLE", table, lockMode, rewrite, tableScan || rewrite);
+    }
+
+    private static List<String> splitActions(String actions) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < actions.length(); i++) {
+            char c = actions.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+            } else if (!quoted && depth == 0 && c == ',') {
+                result.add(actions.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        result.add(actions.substring(start).trim());
+        return result;
+    }
+
+    private static LockMode toLockMode(String mode) {
+        try {
+            return LockMode.valueOf(mode.trim().replaceAll("\\s+", "_").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return LockMode.UNKNOWN;
+        }
+    }
+}
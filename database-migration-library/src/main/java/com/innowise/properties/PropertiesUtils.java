@@ -62,4 +62,37 @@ public class PropertiesUtils {
     public String getProperty(String key) {
         return properties.getProperty(key);
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the integer value of a property by the specified key
+     * @param key the property key
+     * @param defaultValue the value returned if the key is not found
+     * @return the property value or {@code defaultValue} if the key is not found
+     * @throws PropertiesUtilsException if the value is not a valid integer
+     */
+    public int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new PropertiesUtilsException("Property " + key + " is not a valid integer: " + value, e);
+        }
+    }
+
+    /**
+     * Retrieves the boolean value of a property by the specified key
+     * @param key the property key
+     * @param defaultValue the value returned if the key is not found
+     * @return the property value or {@code defaultValue} if the key is not found
+     */
+    public boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
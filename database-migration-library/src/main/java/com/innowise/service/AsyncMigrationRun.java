@@ -0,0 +1,206 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.monitoring.MigrationListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The AsyncMigrationRun class applies migrations in the background so the application can start up meanwhile
+ * The outcome is available from {@link #getResult()}, progress is reported to the {@link MigrationListener}s
+ * of the settings, and {@link #awaitVersion(int)} lets callers wait for the part of the schema they need
+ * The reached version is the highest one up to which every migration of the run has been applied, so a version
+ * that completed early in a parallel run does not release waiters while a lower version is still running
+ * {@link #stop()} is safe at any time: the migration in progress is committed and no further one is started
+ */
+
+@Slf4j
+public class AsyncMigrationRun {
+
+    private final MigrationManager migrationManager;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+    private final Set<Integer> succeededVersions = new HashSet<>();
+    private int[] runVersions = new int[0];
+    private int nextVersionIndex;
+    private final CompletableFuture<MigrationRunResult> result = new CompletableFuture<>();
+    private final TreeMap<Integer, List<CompletableFuture<Integer>>> versionWaiters = new TreeMap<>();
+    private volatile boolean stopRequested;
+    private int reachedVersion;
+    private boolean finished;
+
+    private AsyncMigrationRun(ConnectionManager connectionManager, SchemaManager schemaManager,
+                              MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        MigrationSettings runSettings = new MigrationSettings(settings);
+        List<MigrationListener> listeners = new ArrayList<>(settings.getListeners());
+        listeners.add(new VersionTracker());
+        runSettings.setListeners(listeners);
+        this.migrationManager = new MigrationManager(connectionManager, schemaManager, migrationFileReader, runSettings);
+        this.migrationFileReader = migrationFileReader;
+        this.settings = runSettings;
+    }
+
+    /**
+     * Starts applying migrations on a new thread
+     * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param schemaManager the SchemaManager of the database
+     * @param migrationFileReader the reader used to load the migrations
+     * @param settings the run settings
+     * @return the running migration
+     */
+    public static AsyncMigrationRun start(ConnectionManager connectionManager, SchemaManager schemaManager,
+                                          MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        return start(connectionManager, schemaManager, migrationFileReader, settings,
+                task -> new Thread(task, "migration-run").start());
+    }
+
+    /**
+     * Starts applying migrations on the given executor
+     * The executor should not be a pool that is needed for other work, as the run blocks on database calls
+     * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param schemaManager the SchemaManager of the database
+     * @param migrationFileReader the reader used to load the migrations
+     * @param settings the run settings
+     * @param executor the executor to run on
+     * @return the running migration
+     */
+    public static AsyncMigrationRun start(ConnectionManager connectionManager, SchemaManager schemaManager,
+                                          MigrationFileReader migrationFileReader, MigrationSettings settings,
+                                          Executor executor) {
+        AsyncMigrationRun run = new AsyncMigrationRun(connectionManager, schemaManager, migrationFileReader, settings);
+        executor.execute(run::execute);
+        return run;
+    }
+
+    /**
+     * Returns the outcome of the run
+     * The future completes exceptionally if the run could not be performed, e.g. the lock was not acquired
+     * @return the future result of the run
+     */
+    public CompletableFuture<MigrationRunResult> getResult() {
+        return result;
+    }
+
+    /**
+     * Waits for the schema to reach a version
+     * The future completes once every migration up to the version has been applied, now or by an earlier run,
+     * and fails if one of them fails or the run ends before reaching the version
+     * Completion happens on the migration thread, dependent work should use the async variants of the future methods
+     * @param version the version the caller needs
+     * @return the future completed with the version reached at that moment
+     */
+    public synchronized CompletableFuture<Integer> awaitVersion(int version) {
+        CompletableFuture<Integer> waiter = new CompletableFuture<>();
+        if (reachedVersion >= version) {
+            waiter.complete(reachedVersion);
+        } else if (finished) {
+            waiter.completeExceptionally(new MigrationExecutionException("Migration run ended at version "
+                    + reachedVersion + " before reaching version " + version, null));
+        } else {
+            versionWaiters.computeIfAbsent(version, key -> new ArrayList<>()).add(waiter);
+        }
+        return waiter;
+    }
+
+    /**
+     * Stops the run after the migration in progress has been committed
+     * The result future then completes normally with {@link MigrationRunResult#isStopped()} set
+     * @return the future result of the run
+     */
+    public CompletableFuture<MigrationRunResult> stop() {
+        stopRequested = true;
+        migrationManager.requestStop();
+        return result;
+    }
+
+    private void execute() {
+        try {
+            List<Migration> migrations = migrationFileReader.loadMigrations(settings);
+            setRunVersions(migrations);
+            MigrationRunResult runResult = migrationManager.applyMigrations(migrations);
+            // versions above a skipped gap are only known to be reached once the run reports its current version
+            reach(runResult.getCurrentVersion());
+            finish(null);
+            result.complete(runResult);
+        } catch (RuntimeException | Error e) {
+            log.error("Asynchronous migration run failed: {}", e.getMessage());
+            finish(e);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private synchronized void setRunVersions(List<Migration> migrations) {
+        runVersions = migrations.stream().mapToInt(Migration::getVersion).toArray();
+    }
+
+    private synchronized void onResult(MigrationResultRecords migrationResult) {
+        if (migrationResult.getRepeatable() != null) {
+            return;
+        }
+        if (!migrationResult.isSuccess()) {
+            failWaiters(versionWaiters.tailMap(migrationResult.getVersion(), true),
+                    new MigrationExecutionException("Migration with version " + migrationResult.getVersion()
+                            + " failed: " + migrationResult.getMessage(), null));
+            return;
+        }
+        succeededVersions.add(migrationResult.getVersion());
+        int completedVersion = reachedVersion;
+        while (nextVersionIndex < runVersions.length && succeededVersions.contains(runVersions[nextVersionIndex])) {
+            completedVersion = runVersions[nextVersionIndex++];
+        }
+        reach(completedVersion);
+    }
+
+    private synchronized void reach(int version) {
+        if (version <= reachedVersion) {
+            return;
+        }
+        reachedVersion = version;
+        Map<Integer, List<CompletableFuture<Integer>>> reached = versionWaiters.headMap(reachedVersion, true);
+        for (Iterator<List<CompletableFuture<Integer>>> waiters = reached.values().iterator(); waiters.hasNext(); ) {
+            waiters.next().forEach(waiter -> waiter.complete(reachedVersion));
+            waiters.remove();
+        }
+    }
+
+    private synchronized void finish(Throwable cause) {
+        finished = true;
+        failWaiters(versionWaiters, new MigrationExecutionException("Migration run ended at version "
+                + reachedVersion + " before reaching the awaited version", cause));
+    }
+
+    private static void failWaiters(Map<Integer, List<CompletableFuture<Integer>>> waiters, Throwable cause) {
+        waiters.values().forEach(list -> list.forEach(waiter -> waiter.completeExceptionally(cause)));
+        waiters.clear();
+    }
+
+    private final class VersionTracker implements MigrationListener {
+
+        @Override
+        public void runStarted() {
+            // the manager clears stop requests made before its run started
+            if (stopRequested) {
+                migrationManager.requestStop();
+            }
+        }
+
+        @Override
+        public void migrationCompleted(MigrationResultRecords migrationResult) {
+            onResult(migrationResult);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionPool;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.exception.SqLFileReadException;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.innowise.constants.BaselineQueries.INSERT_TABLE_ROWS;
+import static com.innowise.constants.BaselineQueries.SELECT_COLUMNS;
+import static com.innowise.constants.BaselineQueries.SELECT_COMPOSITE_TYPES;
+import static com.innowise.constants.BaselineQueries.SELECT_CONSTRAINTS;
+import static com.innowise.constants.BaselineQueries.SELECT_DEFERRED_FUNCTIONS;
+import static com.innowise.constants.BaselineQueries.SELECT_DOMAINS;
+import static com.innowise.constants.BaselineQueries.SELECT_ENUM_TYPES;
+import static com.innowise.constants.BaselineQueries.SELECT_EXTENSIONS;
+import static com.innowise.constants.BaselineQueries.SELECT_FUNCTIONS;
+import static com.innowise.constants.BaselineQueries.SELECT_INDEXES;
+import static com.innowise.constants.BaselineQueries.SELECT_SCHEMAS;
+import static com.innowise.constants.BaselineQueries.SELECT_SEQUENCES;
+import static com.innowise.constants.BaselineQueries.SELECT_SEQUENCE_OWNERS;
+import static com.innowise.constants.BaselineQueries.SELECT_SEQUENCE_VALUES;
+import static com.innowise.constants.BaselineQueries.SELECT_TABLES;
+import static com.innowise.constants.BaselineQueries.SELECT_TABLE_ROWS;
+import static com.innowise.constants.BaselineQueries.SELECT_TRIGGERS;
+import static com.innowise.constants.BaselineQueries.SELECT_UNSUPPORTED;
+import static com.innowise.constants.BaselineQueries.SELECT_VIEWS;
+import static com.innowise.constants.TemplateDatabaseQueries.CREATE_DATABASE;
+import static com.innowise.constants.TemplateDatabaseQueries.DROP_DATABASE;
+
+/**
+ * The BaselineGenerator class squashes the migrations up to a version into one baseline script
+ * The migrations are applied to a scratch database, and the script is generated from its live catalog:
+ * schemas, extensions, enum, domain and composite types, sequences, functions, tables with their rows, constraints,
+ * indexes, views and triggers, so objects that were created and later dropped are not replayed
+ * Partitioned tables keep their partition key and partitions are attached to their parents; rows are copied
+ * per partition. SQL functions and functions using table row types are created after the tables, since their
+ * bodies are checked on creation. A database holding objects the snapshot cannot recreate, such as foreign tables,
+ * table inheritance, range types, row security policies or rules, is rejected instead of squashed
+ * The script is written as {@code B<version>__baseline.sql} next to the migrations; from then on
+ * {@link MigrationFileReader} skips the files it replaces and {@link MigrationManager} applies it only to empty databases
+ * The schema version tables are not part of the snapshot
+ */
+
+@Slf4j
+public class BaselineGenerator {
+
+    private static final String BASELINE_FILE_NAME = "B%d__baseline.sql";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+
+    /**
+     * Creates a generator
+     * @param url the URL of the maintenance database, used to create and drop the scratch database
+     * @param user a database user with the CREATEDB privilege
+     * @param password the database password
+     * @param migrationFileReader the reader used to load the migrations
+     * @param settings the settings naming the migrations directory
+     */
+    public BaselineGenerator(String url, String user, String password,
+                             MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+    }
+
+    /**
+     * Writes the baseline script for the migrations up to the given version
+     * The replaced migration files are left in place; they are no longer read and can be deleted
+     * @param version the last version the baseline covers
+     * @return the baseline script
+     * @throws IllegalArgumentException if the settings name no migrations directory
+     * @throws MigrationExecutionException if a migration fails on the scratch database or the catalog cannot be read
+     */
+    public Path squash(int version) {
+        if (settings.getMigrationsDir() == null) {
+            throw new IllegalArgumentException("A baseline can only be written to a migrations directory");
+        }
+        List<Migration> migrations = migrationFileReader.loadMigrations(settings).stream()
+                .filter(migration -> migration.getVersion() <= version)
+                .collect(Collectors.toList());
+        Path baselineFile = Path.of(settings.getMigrationsDir()).resolve(String.format(BASELINE_FILE_NAME, version));
+        String scratchName = "migration_baseline_" + version + "_" + ProcessHandle.current().pid();
+
+        try (ConnectionManager admin = new ConnectionManager(new ConnectionPool(url, user, password, 1,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS));
+             Connection connection = admin.getConnection()) {
+            execute(connection, String.format(DROP_DATABASE, quote(scratchName)));
+            execute(connection, String.format(CREATE_DATABASE, quote(scratchName)));
+            try {
+                writeScratchBaseline(TemplateDatabaseProvisioner.withDatabase(url, scratchName), scratchName,
+                        migrations, baselineFile);
+            } finally {
+                execute(connection, String.format(DROP_DATABASE, quote(scratchName)));
+            }
+        } catch (SQLException e) {
+            throw new MigrationExecutionException("Failed to create the scratch database for baseline " + version, e);
+        }
+        log.info("Baseline of {} migrations up to version {} written to {}", migrations.size(), version, baselineFile);
+        return baselineFile;
+    }
+
+    private void writeScratchBaseline(String scratchUrl, String scratchName, List<Migration> migrations, Path baselineFile) {
+        MigrationSettings scratchSettings = new MigrationSettings(settings);
+        Path reportFile = Path.of(settings.getReportFile());
+        scratchSettings.setReportFile(reportFile.resolveSibling(scratchName + "-" + reportFile.getFileName()).toString());
+        try (ConnectionManager connectionManager = new ConnectionManager(new ConnectionPool(scratchUrl, user, password, 1,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS))) {
+            MigrationRunResult run = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    migrationFileReader, scratchSettings).applyMigrations(migrations);
+            if (!run.isSuccess()) {
+                throw new MigrationExecutionException("Failed to migrate the scratch database, "
+                        + run.getFailedCount() + " migrations failed", null);
+            }
+            try (Connection connection = connectionManager.getConnection()) {
+                writeSnapshot(connection, baselineFile);
+            } catch (SQLException e) {
+                throw new MigrationExecutionException("Failed to read the catalog of the scratch database", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a script that recreates the schema objects and rows of a database
+     * @param connection a connection to the database to snapshot
+     * @param baselineFile the script to write
+     * @throws SQLException if the catalog cannot be read
+     * @throws MigrationExecutionException if the database holds objects the snapshot cannot recreate
+     * @throws SqLFileReadException if the script cannot be written
+     */
+    public static void writeSnapshot(Connection connection, Path baselineFile) throws SQLException {
+        List<String> unsupported = queryStatements(connection, SELECT_UNSUPPORTED);
+        if (!unsupported.isEmpty()) {
+            throw new MigrationExecutionException("The database cannot be squashed into a baseline, unsupported objects: "
+                    + String.join(", ", unsupported), null);
+        }
+        List<String> statements = new ArrayList<>();
+        statements.addAll(queryStatements(connection, SELECT_SCHEMAS));
+        statements.addAll(queryStatements(connection, SELECT_EXTENSIONS));
+        statements.addAll(queryStatements(connection, SELECT_ENUM_TYPES));
+        statements.addAll(queryStatements(connection, SELECT_DOMAINS));
+        statements.addAll(queryStatements(connection, SELECT_COMPOSITE_TYPES));
+        statements.addAll(queryStatements(connection, SELECT_SEQUENCES));
+        statements.addAll(queryStatements(connection, SELECT_FUNCTIONS));
+        List<String> inserts = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet tables = statement.executeQuery(SELECT_TABLES)) {
+            while (tables.next()) {
+                addTable(connection, tables, statements, inserts);
+            }
+        }
+        statements.addAll(queryStatements(connection, SELECT_DEFERRED_FUNCTIONS));
+        statements.addAll(queryStatements(connection, SELECT_SEQUENCE_OWNERS));
+        statements.addAll(inserts);
+        statements.addAll(queryStatements(connection, SELECT_CONSTRAINTS));
+        statements.addAll(queryStatements(connection, SELECT_INDEXES));
+        statements.addAll(queryStatements(connection, SELECT_VIEWS));
+        statements.addAll(queryStatements(connection, SELECT_TRIGGERS));
+        statements.addAll(queryStatements(connection, SELECT_SEQUENCE_VALUES));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+            writer.write("-- Baseline generated from the catalog of a migrated database");
+            writer.newLine();
+            for (String sql : statements) {
+                writer.newLine();
+                writer.write(sql.strip());
+                writer.write(';');
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            log.error("Error writing baseline " + baselineFile, e);
+            throw new SqLFileReadException("Error writing baseline " + baselineFile, e);
+        }
+    }
+
+    private static void addTable(Connection connection, ResultSet table, List<String> statements,
+                                 List<String> inserts) throws SQLException {
+        long oid = table.getLong(1);
+        String tableName = table.getString(2);
+        boolean partitioned = table.getBoolean(3);
+        String parent = table.getString(5);
+        List<String> definitions = new ArrayList<>();
+        List<String> insertedColumns = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COLUMNS)) {
+            preparedStatement.setLong(1, oid);
+            try (ResultSet columns = preparedStatement.executeQuery()) {
+                while (columns.next()) {
+                    definitions.add(columns.getString(1));
+                    if (!columns.getBoolean(3)) {
+                        insertedColumns.add(columns.getString(2));
+                    }
+                }
+            }
+        }
+        String create = parent != null
+                ? "CREATE TABLE " + tableName + " PARTITION OF " + parent + " " + table.getString(6)
+                : "CREATE TABLE " + tableName + " (\n    " + String.join(",\n    ", definitions) + "\n)";
+        statements.add(partitioned ? create + " PARTITION BY " + table.getString(4) : create);
+        if (partitioned) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(String.format(SELECT_TABLE_ROWS, tableName))) {
+            String json = rows.next() ? rows.getString(1) : null;
+            if (json != null && !insertedColumns.isEmpty()) {
+                String columns = String.join(", ", insertedColumns);
+                inserts.add(String.format(INSERT_TABLE_ROWS, tableName, columns, columns, tableName, json.replace("'", "''")));
+            }
+        }
+    }
+
+    private static List<String> queryStatements(Connection connection, String query) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            while (resultSet.next()) {
+                statements.add(resultSet.getString(1));
+            }
+        }
+        return statements;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
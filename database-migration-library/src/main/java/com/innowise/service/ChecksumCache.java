@@ -0,0 +1,150 @@
+package com.innowise.service;
+
+import com.innowise.model.Migration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ChecksumCache class keeps migration checksums in a small binary file between runs
+ * Entries are keyed by the normalized location of the file and checked against its size and modification time,
+ * so a file is hashed again only when it changes and same-named files in different directories or jars do not collide
+ * A missing, unreadable or outdated cache file is treated as empty
+ */
+
+@Slf4j
+public class ChecksumCache {
+
+    public static final String CACHE_FILE_NAME = ".migration-checksums";
+
+    private static final int MAGIC = 0x4D494743;
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+
+    private ChecksumCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Loads the cache stored in the given directory
+     * @param directory the directory holding the cache file
+     * @return the loaded cache, empty if the file does not exist or cannot be read
+     */
+    public static ChecksumCache load(Path directory) {
+        ChecksumCache cache = new ChecksumCache(directory.resolve(CACHE_FILE_NAME));
+        if (Files.isRegularFile(cache.cacheFile)) {
+            try {
+                cache.read();
+                log.info("Loaded {} cached checksums from {}", cache.entries.size(), cache.cacheFile);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable checksum cache {}: {}", cache.cacheFile, e.getMessage());
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Sets the checksum of the migration from the cache if the file has not changed
+     * @param migration the migration to look up
+     * @return true if the checksum was found
+     */
+    public synchronized boolean fill(Migration migration) {
+        if (migration.getPath() == null) {
+            return false;
+        }
+        Entry entry = entries.get(key(migration));
+        if (entry == null || entry.size != migration.getSize() || entry.lastModified != migration.getLastModified()) {
+            return false;
+        }
+        migration.setChecksum(entry.checksum);
+        return true;
+    }
+
+    /**
+     * Stores the checksum of the migration
+     * @param migration the migration with a computed checksum
+     */
+    public synchronized void put(Migration migration) {
+        if (migration.getChecksum() == null || migration.getPath() == null) {
+            return;
+        }
+        Entry entry = new Entry(migration.getSize(), migration.getLastModified(), migration.getChecksum());
+        Entry previous = entries.put(key(migration), entry);
+        dirty |= previous == null || previous.size != entry.size
+                || previous.lastModified != entry.lastModified || previous.checksum != entry.checksum;
+    }
+
+    /**
+     * Writes the cache file if anything changed since it was loaded
+     * Failures are logged and otherwise ignored, the cache is only an optimization
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Path tempFile = cacheFile.resolveSibling(CACHE_FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().lastModified);
+                out.writeInt(entry.getValue().checksum);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write checksum cache {}: {}", tempFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            log.info("Saved {} checksums to {}", entries.size(), cacheFile);
+        } catch (IOException e) {
+            log.warn("Failed to replace checksum cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readInt()));
+            }
+        }
+    }
+
+    private static String key(Migration migration) {
+        return migration.getPath().toAbsolutePath().normalize().toUri().toString();
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        private final long lastModified;
+        private final int checksum;
+
+        private Entry(long size, long lastModified, int checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+}
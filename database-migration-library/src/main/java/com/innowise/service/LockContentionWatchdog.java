@@ -0,0 +1,200 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.exception.LockContentionException;
+import com.innowise.model.MigrationSettings;
+import com.innowise.monitoring.PhaseRecorder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LockContentionWatchdog class watches the sessions queued behind the locks of a running migration
+ * A daemon thread samples {@code pg_blocking_pids} on its own monitoring connection every
+ * {@link MigrationSettings#getLockWatchdogSampleMillis()}. When more than {@link MigrationSettings#getLockWatchdogMaxWaiting()}
+ * sessions have been waiting behind the migration backend for longer than {@link MigrationSettings#getLockWatchdogMaxWaitMillis()},
+ * the running statement is cancelled with {@code pg_cancel_backend}; the executor then rolls the migration back
+ * and reports it with a {@link LockContentionException}
+ * The wait of a session is measured from {@code pg_locks.waitstart} on PostgreSQL 14 and later, and from the first
+ * sample that saw the session blocked on older servers, so a session that ran for a while before queuing is not
+ * counted as waiting since its statement started
+ * The number of samples and the longest queue seen are added to the migration result
+ */
+
+@Slf4j
+public class LockContentionWatchdog {
+
+    private static final String SELECT_BACKEND_PID = "SELECT pg_backend_pid()";
+    private static final String SELECT_BLOCKED_SESSIONS = "SELECT a.pid, (SELECT extract(epoch FROM clock_timestamp() - min(l.waitstart)) * 1000 "
+            + "FROM pg_locks l WHERE l.pid = a.pid AND NOT l.granted) FROM pg_stat_activity a WHERE ? = ANY(pg_blocking_pids(a.pid))";
+    private static final String SELECT_BLOCKED_SESSIONS_WITHOUT_WAITSTART = "SELECT a.pid, NULL FROM pg_stat_activity a "
+            + "WHERE ? = ANY(pg_blocking_pids(a.pid))";
+    private static final int WAITSTART_MIN_VERSION = 14;
+    private static final String CANCEL_BACKEND = "SELECT pg_cancel_backend(?)";
+
+    private static final LockContentionWatchdog DISABLED = new LockContentionWatchdog(0, 0, null, null);
+
+    private final int version;
+    private final int backendPid;
+    private final Connection monitorConnection;
+    private final MigrationSettings settings;
+    private final Map<Integer, Long> firstSeenNanos = new HashMap<>();
+    private Thread thread;
+    private volatile boolean closed;
+    private boolean stopped;
+    private volatile int samples;
+    private volatile int maxQueueDepth;
+    private volatile String cancelReason;
+
+    private LockContentionWatchdog(int version, int backendPid, Connection monitorConnection, MigrationSettings settings) {
+        this.version = version;
+        this.backendPid = backendPid;
+        this.monitorConnection = monitorConnection;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts watching the session of a migration if the watchdog is enabled in the settings
+     * The monitoring connection is taken from the provider, bypassing the run connection
+     * @param version the version of the watched migration, used in log messages
+     * @param connection the connection executing the migration
+     * @param connectionManager the connection manager that provides the monitoring connection
+     * @param settings the watchdog settings
+     * @return the running watchdog, or one that does nothing if the watchdog is disabled or cannot be started
+     */
+    public static LockContentionWatchdog start(int version, Connection connection, ConnectionManager connectionManager,
+                                               MigrationSettings settings) {
+        if (!settings.isLockWatchdogEnabled()) {
+            return DISABLED;
+        }
+        Connection monitorConnection = null;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_BACKEND_PID)) {
+            resultSet.next();
+            int backendPid = resultSet.getInt(1);
+            monitorConnection = connectionManager.openConnection();
+            LockContentionWatchdog watchdog = new LockContentionWatchdog(version, backendPid, monitorConnection, settings);
+            watchdog.thread = new Thread(watchdog::watch, "lock-watchdog-" + version);
+            watchdog.thread.setDaemon(true);
+            watchdog.thread.start();
+            return watchdog;
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Lock watchdog for migration {} could not be started: {}", version, e.getMessage());
+            closeQuietly(monitorConnection);
+            return DISABLED;
+        }
+    }
+
+    private void watch() {
+        try (PreparedStatement sample = monitorConnection.prepareStatement(
+                monitorConnection.getMetaData().getDatabaseMajorVersion() >= WAITSTART_MIN_VERSION
+                        ? SELECT_BLOCKED_SESSIONS : SELECT_BLOCKED_SESSIONS_WITHOUT_WAITSTART)) {
+            sample.setInt(1, backendPid);
+            while (!closed) {
+                int waiting = 0;
+                int waitingTooLong = 0;
+                long now = System.nanoTime();
+                Map<Integer, Long> blocked = new HashMap<>();
+                try (ResultSet resultSet = sample.executeQuery()) {
+                    while (resultSet.next()) {
+                        int pid = resultSet.getInt(1);
+                        blocked.put(pid, firstSeenNanos.getOrDefault(pid, now));
+                        double waitedMillis = resultSet.getDouble(2);
+                        if (resultSet.wasNull()) {
+                            waitedMillis = TimeUnit.NANOSECONDS.toMillis(now - blocked.get(pid));
+                        }
+                        waiting++;
+                        if (waitedMillis > settings.getLockWatchdogMaxWaitMillis()) {
+                            waitingTooLong++;
+                        }
+                    }
+                }
+                firstSeenNanos.clear();
+                firstSeenNanos.putAll(blocked);
+                samples++;
+                maxQueueDepth = Math.max(maxQueueDepth, waiting);
+                if (waitingTooLong > settings.getLockWatchdogMaxWaiting()) {
+                    cancel(waitingTooLong);
+                    return;
+                }
+                Thread.sleep(settings.getLockWatchdogSampleMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            if (!closed) {
+                log.warn("Lock watchdog for migration {} stopped: {}", version, e.getMessage());
+            }
+        } finally {
+            closeQuietly(monitorConnection);
+        }
+    }
+
+    private void cancel(int waitingTooLong) throws SQLException {
+        cancelReason = waitingTooLong + " sessions waited longer than " + settings.getLockWatchdogMaxWaitMillis() + " ms behind it";
+        log.warn("Cancelling migration {}: {}", version, cancelReason);
+        try (PreparedStatement cancel = monitorConnection.prepareStatement(CANCEL_BACKEND)) {
+            cancel.setInt(1, backendPid);
+            cancel.executeQuery().close();
+        }
+    }
+
+    /**
+     * Tells whether the watchdog has cancelled the migration
+     * @return true if the migration was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * Creates the exception reporting the cancellation
+     * @param detail text appended to the message, may be empty
+     * @param cause the error the cancelled statement failed with, or {@code null}
+     * @return the exception carrying the reason and the queue statistics
+     */
+    public LockContentionException toException(String detail, Throwable cause) {
+        return new LockContentionException("Migration with version " + version + " cancelled by the lock watchdog: "
+                + cancelReason + detail, samples, maxQueueDepth, cause);
+    }
+
+    /**
+     * Stops sampling and adds the statistics to the recorder of the migration
+     * Calling it again has no effect
+     * @param recorder the recorder of the watched migration, or {@code null} to drop the statistics
+     */
+    public void stop(PhaseRecorder recorder) {
+        if (thread == null || stopped) {
+            return;
+        }
+        stopped = true;
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (recorder != null) {
+            recorder.recordLockQueue(samples, maxQueueDepth);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close the lock watchdog connection", e);
+        }
+    }
+}
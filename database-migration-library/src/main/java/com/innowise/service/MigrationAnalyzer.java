@@ -0,0 +1,144 @@
+package com.innowise.service;
+
+import com.innowise.analysis.ColumnTypeChangeRule;
+import com.innowise.analysis.DdlRule;
+import com.innowise.analysis.ForeignKeyValidationRule;
+import com.innowise.analysis.NonConcurrentIndexRule;
+import com.innowise.analysis.VolatileDefaultRule;
+import com.innowise.model.DdlFinding;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.model.PlannedStatement;
+import com.innowise.model.RuleSeverity;
+import com.innowise.parser.SqlStatementSplitter;
+import com.innowise.parser.StatementClassifier;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The MigrationAnalyzer class checks the statements of migrations against {@link DdlRule}s without a database
+ * Every statement is classified by {@link StatementClassifier} and passed to the built-in rules and to the rules
+ * registered with {@link ServiceLoader}; statements on tables created by an earlier statement of the analyzed
+ * migrations are skipped. The severity of a rule comes from {@link MigrationSettings#getRuleSeverities()} or
+ * the rule default, and a script suppresses rules with its {@code allow} header option
+ * Only SQL and repeatable migrations are analyzed
+ */
+
+@Slf4j
+public class MigrationAnalyzer {
+
+    private static final String ALLOW_ALL = "all";
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+    private final List<DdlRule> rules;
+
+    public MigrationAnalyzer(MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this(migrationFileReader, settings, loadRules());
+    }
+
+    /**
+     * Creates an analyzer with the given rules only
+     * @param migrationFileReader the reader used to open the migrations
+     * @param settings the settings holding the rule severities
+     * @param rules the rules to check
+     */
+    public MigrationAnalyzer(MigrationFileReader migrationFileReader, MigrationSettings settings, List<DdlRule> rules) {
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+        this.rules = rules;
+    }
+
+    /**
+     * Analyzes the given migrations in order
+     * @param migrations the migrations sorted by version
+     * @return the findings, in migration and statement order
+     */
+    public List<DdlFinding> analyze(List<Migration> migrations) {
+        List<DdlFinding> findings = new ArrayList<>();
+        Set<String> createdTables = new HashSet<>();
+        for (Migration migration : migrations) {
+            if (migration.getType() != MigrationType.SQL && migration.getType() != MigrationType.REPEATABLE) {
+                continue;
+            }
+            try (SqlStatementSplitter statements = migrationFileReader.openStatements(migration)) {
+                List<String> allowedRules = statements.getHeader().getAllowedRules();
+                String sql;
+                while ((sql = statements.nextStatement()) != null) {
+                    PlannedStatement statement = StatementClassifier.classify(sql);
+                    String table = statement.getTable() != null ? statement.getTable().toLowerCase(Locale.ROOT) : null;
+                    if ("CREATE TABLE".equals(statement.getKind())) {
+                        createdTables.add(table);
+                    } else if (table == null || !createdTables.contains(table)) {
+                        check(migration, statement, allowedRules, findings);
+                    }
+                }
+            }
+        }
+        long errors = findings.stream().filter(finding -> finding.getSeverity() == RuleSeverity.ERROR).count();
+        log.info("Analyzed {} migrations: {} findings, {} errors", migrations.size(), findings.size(), errors);
+        return findings;
+    }
+
+    /**
+     * Tells whether any finding has the {@link RuleSeverity#ERROR} severity
+     * @param findings the findings of an analysis
+     * @return true if the migrations must not be applied
+     */
+    public static boolean hasErrors(List<DdlFinding> findings) {
+        return findings.stream().anyMatch(finding -> finding.getSeverity() == RuleSeverity.ERROR);
+    }
+
+    private void check(Migration migration, PlannedStatement statement, List<String> allowedRules, List<DdlFinding> findings) {
+        if (allowedRules.contains(ALLOW_ALL)) {
+            return;
+        }
+        for (DdlRule rule : rules) {
+            RuleSeverity severity = settings.getRuleSeverities().getOrDefault(rule.getId(), rule.getDefaultSeverity());
+            if (severity == RuleSeverity.OFF || allowedRules.contains(rule.getId())) {
+                continue;
+            }
+            String message = rule.check(statement);
+            if (message == null) {
+                continue;
+            }
+            DdlFinding finding = new DdlFinding(migration.getVersion(), migration.getPath().getFileName().toString(),
+                    rule.getId(), severity, message, truncate(statement.getSql()));
+            findings.add(finding);
+            if (severity != RuleSeverity.INFO) {
+                log.warn("{} in migration {} ({}): {}", severity, migration.getVersion(), rule.getId(), message);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the built-in rules and of the rules registered with {@link ServiceLoader}
+     * @return the rule ids that severities can be configured for
+     */
+    public static Set<String> getRuleIds() {
+        Set<String> ids = new TreeSet<>();
+        loadRules().forEach(rule -> ids.add(rule.getId()));
+        return ids;
+    }
+
+    private static List<DdlRule> loadRules() {
+        List<DdlRule> rules = new ArrayList<>(List.of(new VolatileDefaultRule(), new ColumnTypeChangeRule(),
+                new ForeignKeyValidationRule(), new NonConcurrentIndexRule()));
+        ServiceLoader.load(DdlRule.class).forEach(rules::add);
+        return rules;
+    }
+
+    private static String truncate(String sql) {
+        String trimmed = sql.trim();
+        return trimmed.length() <= MAX_SQL_LENGTH ? trimmed : trimmed.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,221 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.constants.SchemaVersionQueries;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.exception.MigrationLockException;
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.monitoring.MigrationListener;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MigrationCoordinator class lets many nodes start against the same database while only one of them migrates
+ * Every node first subscribes with {@code LISTEN} and then tries a non-blocking advisory lock next to the
+ * {@link AdvisoryMigrationLock} key. The node that gets it becomes the leader and applies the migrations with
+ * {@link MigrationManager}, publishing every applied version and the final version with {@code NOTIFY}
+ * The other nodes are followers: they do not read the migration files or take the migration lock,
+ * and return as soon as the leader announces completion; if the leader run throws, the leader announces the failure
+ * and the followers throw as well instead of taking over and repeating it
+ * While no notification arrives a follower polls with a backoff starting at
+ * {@link MigrationSettings#getCoordinationPollMillis()}: it logs the current version and tries the leader lock again,
+ * so a follower takes over when the leader died or failed without announcing completion
+ * A node that starts after the leader has finished finds the lock free and runs as a leader with nothing to apply
+ * The coordination session is a separate connection, so the pool needs one connection more than a plain run
+ */
+
+@Slf4j
+public class MigrationCoordinator {
+
+    private static final String TRY_LEADER_LOCK = "SELECT pg_try_advisory_lock(?)";
+    private static final String RELEASE_LEADER_LOCK = "SELECT pg_advisory_unlock(?)";
+    private static final String NOTIFY = "SELECT pg_notify(?, ?)";
+    private static final String CHANNEL_PREFIX = "migration_leader_";
+    private static final String APPLIED = "applied:";
+    private static final String COMPLETED = "completed:";
+    private static final String FAILED = "failed:";
+    private static final int MAX_FAILURE_LENGTH = 1000;
+    private static final long MAX_POLL_MILLIS = 30_000;
+
+    private final ConnectionManager connectionManager;
+    private final SchemaManager schemaManager;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+    private final long leaderKey;
+    private final String channel;
+
+    public MigrationCoordinator(ConnectionManager connectionManager, SchemaManager schemaManager,
+                                MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.connectionManager = connectionManager;
+        this.schemaManager = schemaManager;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+        long lockKey = settings.getMigrationLock() instanceof AdvisoryMigrationLock
+                ? ((AdvisoryMigrationLock) settings.getMigrationLock()).getLockKey() : AdvisoryMigrationLock.DEFAULT_LOCK_KEY;
+        this.leaderKey = lockKey + 1;
+        this.channel = CHANNEL_PREFIX + Long.toHexString(leaderKey);
+    }
+
+    /**
+     * Applies the migrations on the leader node, or waits for the leader to apply them
+     * @return the outcome of the run; on a follower the applied count is 0 and the version and failure count
+     * are those announced by the leader
+     * @throws MigrationLockException if the coordination session fails or the leader does not complete within
+     * {@link MigrationSettings#getCoordinationTimeoutMillis()}
+     * @throws MigrationExecutionException on a follower if the leader announced that its run failed
+     */
+    public MigrationRunResult run() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getCoordinationTimeoutMillis());
+        long pollMillis = Math.max(1, settings.getCoordinationPollMillis());
+        try (Connection connection = connectionManager.openConnection()) {
+            execute(connection, "LISTEN " + channel);
+            try {
+                while (true) {
+                    if (tryLeaderLock(connection)) {
+                        return lead(connection);
+                    }
+                    String completion = awaitCompletion(connection, pollMillis);
+                    if (completion != null) {
+                        return follow(completion, start);
+                    }
+                    if (settings.getCoordinationTimeoutMillis() > 0 && System.nanoTime() - deadline > 0) {
+                        throw new MigrationLockException("Timed out after " + settings.getCoordinationTimeoutMillis()
+                                + " ms waiting for the migration leader", null);
+                    }
+                    log.info("Waiting for the migration leader, schema version is {}", pollVersion(connection));
+                    pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+                }
+            } finally {
+                execute(connection, "UNLISTEN " + channel);
+            }
+        } catch (SQLException e) {
+            throw new MigrationLockException("Migration coordination failed on channel " + channel, e);
+        }
+    }
+
+    private MigrationRunResult lead(Connection connection) throws SQLException {
+        log.info("Elected migration leader on channel {}", channel);
+        try {
+            MigrationSettings leaderSettings = new MigrationSettings(settings);
+            List<MigrationListener> listeners = new ArrayList<>(settings.getListeners());
+            listeners.add(new ProgressPublisher(connection));
+            leaderSettings.setListeners(listeners);
+            MigrationRunResult result;
+            try {
+                result = new MigrationManager(connectionManager, schemaManager, migrationFileReader,
+                        leaderSettings).applyMigrations();
+            } catch (RuntimeException | Error e) {
+                String message = String.valueOf(e.getMessage());
+                publish(connection, FAILED + message.substring(0, Math.min(message.length(), MAX_FAILURE_LENGTH)));
+                throw e;
+            }
+            publish(connection, COMPLETED + result.getCurrentVersion() + ":" + result.getFailedCount());
+            return result;
+        } finally {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(RELEASE_LEADER_LOCK)) {
+                preparedStatement.setLong(1, leaderKey);
+                preparedStatement.executeQuery().close();
+            }
+        }
+    }
+
+    private MigrationRunResult follow(String completion, long start) {
+        if (completion.startsWith(FAILED)) {
+            throw new MigrationExecutionException("Migration leader failed: " + completion.substring(FAILED.length()), null);
+        }
+        String[] fields = completion.substring(COMPLETED.length()).split(":");
+        int version = Integer.parseInt(fields[0]);
+        int failedCount = Integer.parseInt(fields[1]);
+        log.info("Migration leader completed at version {} with {} failures", version, failedCount);
+        return new MigrationRunResult(version, 0, failedCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+    }
+
+    private boolean tryLeaderLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(TRY_LEADER_LOCK)) {
+            preparedStatement.setLong(1, leaderKey);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private String awaitCompletion(Connection connection, long waitMillis) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        long remainingMillis;
+        while ((remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+            PGNotification[] notifications = pgConnection.getNotifications((int) remainingMillis);
+            if (notifications == null) {
+                continue;
+            }
+            for (PGNotification notification : notifications) {
+                String payload = notification.getParameter();
+                if (payload.startsWith(COMPLETED) || payload.startsWith(FAILED)) {
+                    return payload;
+                }
+                log.info("Migration leader applied version {}", payload.substring(APPLIED.length()));
+            }
+        }
+        return null;
+    }
+
+    private int pollVersion(Connection connection) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SchemaVersionQueries.SELECT_VERSION_FROM_SCHEMA_VERSION)) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } catch (SQLException e) {
+            log.debug("Schema version not available yet: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private synchronized void publish(Connection connection, String payload) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(NOTIFY)) {
+            preparedStatement.setString(1, channel);
+            preparedStatement.setString(2, payload);
+            preparedStatement.executeQuery().close();
+        } catch (SQLException e) {
+            log.warn("Failed to notify followers on channel {}: {}", channel, e.getMessage());
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Publishes every successfully applied version to the followers
+     */
+    private final class ProgressPublisher implements MigrationListener {
+
+        private final Connection connection;
+
+        private ProgressPublisher(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void migrationCompleted(MigrationResultRecords result) {
+            // results of already applied migrations carry no phase timings
+            if (result.isSuccess() && result.getPhaseDurationsMicros() != null && result.getRepeatable() == null) {
+                publish(connection, APPLIED + result.getVersion());
+            }
+        }
+    }
+}
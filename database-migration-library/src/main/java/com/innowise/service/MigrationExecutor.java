@@ -1,51 +1,364 @@
 package com.innowise.service;
 
+import com.innowise.backfill.BackfillMigration;
 import com.innowise.connection.ConnectionManager;
 import com.innowise.constants.SchemaVersionQueries;
 import com.innowise.exception.ConnectionException;
+import com.innowise.exception.LockContentionException;
+import com.innowise.exception.LockTimeoutException;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.exception.MigrationGroupException;
 import com.innowise.exception.RollbackException;
 import com.innowise.exception.SchemaVersionException;
+import com.innowise.model.BackfillChunk;
 import com.innowise.model.Migration;
+import com.innowise.model.MigrationHeader;
+import com.innowise.model.MigrationPhase;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.monitoring.PhaseRecorder;
+import com.innowise.parser.CopyData;
+import com.innowise.parser.SqlStatementSplitter;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
 
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The MigrationExecutor class is responsible for executing database migrations
  * It handles the migration process, including connecting to the database,
  * executing SQL statements, and managing transaction commits and rollbacks
+ * Statements are streamed from the script and sent to the database in JDBC batches,
+ * COPY migrations are streamed through the PostgreSQL COPY API and backfill migrations
+ * are committed chunk by chunk with a checkpoint after every chunk
+ * SQL migrations can opt out of the transaction in their header, see {@link MigrationHeader}
+ * The execution and bookkeeping phases and the affected row counts are recorded in a {@link PhaseRecorder}
+ * Repeatable migrations are executed like SQL migrations and recorded by name in schema_repeatable instead of schema_version
  */
 
 @Slf4j
 public class MigrationExecutor {
 
     /**
-     * Executes a database migration
-     * @param migration the Migration object containing the migration details (version, SQL script, checksum)
+     * Executes a SQL migration
+     * The statements are sent in batches, so memory use does not depend on the script size
+     * The checksum computed while streaming the script is stored in the schema version table
+     * The script header selects the execution mode: by default the script runs in one transaction, with
+     * {@code transactional=false} every statement is committed on its own, which {@code CREATE INDEX CONCURRENTLY} needs
+     * @param migration the Migration object containing the migration details (version, script path)
+     * @param statements the statements of the migration script
      * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param settings the batch size, timeouts, retry and lock watchdog settings
+     * @param recorder the recorder of the migration phases
+     * @throws LockTimeoutException if a transactional migration timed out waiting for a lock and has been rolled back
+     * @throws LockContentionException if the {@link LockContentionWatchdog} cancelled the migration
+     * @throws MigrationExecutionException if the migration fails and has been rolled back
      * @throws RollbackException if the transaction cannot be rolled back after a failed migration
      * @throws ConnectionException if there is an error closing the connection
      */
-    public static void executeMigration(Migration migration, ConnectionManager connectionManager) {
+    public static void executeMigration(Migration migration, SqlStatementSplitter statements,
+                                        ConnectionManager connectionManager, MigrationSettings settings,
+                                        PhaseRecorder recorder) {
+        MigrationHeader header = statements.getHeader();
+        if (!header.isTransactional()) {
+            executeNonTransactional(migration, statements, header, connectionManager, settings, recorder);
+            return;
+        }
+        executeInTransaction(migration, connectionManager, settings, recorder,
+                connection -> runStatements(connection, statements, settings, recorder));
+    }
 
-        Connection connection = null;
+    /**
+     * Executes a COPY migration
+     * The data is streamed to the server in the same transaction as the schema version insert
+     * @param migration the Migration object containing the migration details (version, data file path)
+     * @param copyData the COPY statement and the data to stream
+     * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param settings the lock watchdog settings
+     * @param recorder the recorder of the migration phases
+     * @throws LockContentionException if the {@link LockContentionWatchdog} cancelled the migration
+     * @throws MigrationExecutionException if the migration fails and has been rolled back
+     * @throws RollbackException if the transaction cannot be rolled back after a failed migration
+     * @throws ConnectionException if there is an error closing the connection
+     */
+    public static void executeCopyMigration(Migration migration, CopyData copyData, ConnectionManager connectionManager,
+                                            MigrationSettings settings, PhaseRecorder recorder) {
+        executeInTransaction(migration, connectionManager, settings, recorder,
+                connection -> runCopy(connection, migration, copyData, recorder));
+    }
 
-        log.info("Starting migration with version: " + migration.getVersion());
+    /**
+     * Executes consecutive transactional migrations in one transaction
+     * The versions are recorded with one batched insert before the commit, so the group costs a single commit.
+     * If {@link MigrationSettings#getGroupMaxMillis()} is set, the group is committed early once that time has passed
+     * and the remaining migrations are left to the caller. Each migration applies its own {@code SET LOCAL} timeouts,
+     * which stay in effect for the following migrations of the group unless they set their own
+     * @param group the SQL and COPY migrations to execute, SQL migrations must be transactional
+     * @param migrationFileReader the reader used to open the migrations
+     * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param settings the batch size, timeouts, group and lock watchdog settings
+     * @return the phase recorders of the committed migrations, one for each migration from the start of the group
+     * @throws MigrationGroupException if a migration, the version insert or the commit fails and the whole group
+     * has been rolled back
+     * @throws RollbackException if the transaction cannot be rolled back after a failure
+     * @throws ConnectionException if there is an error closing the connection
+     */
+    public static List<PhaseRecorder> executeGroup(List<Migration> group, MigrationFileReader migrationFileReader,
+                                                   ConnectionManager connectionManager, MigrationSettings settings) {
+
+        log.info("Starting migration group of versions {} to {}", group.get(0).getVersion(), group.get(group.size() - 1).getVersion());
+
+        long groupStart = System.nanoTime();
+        List<PhaseRecorder> recorders = new ArrayList<>();
+        long[] executionTimes = new long[group.size()];
+        Migration current = null;
+        Connection connection = connectionManager.getConnection();
+        LockContentionWatchdog watchdog = null;
 
         try {
-            connection = connectionManager.getConnection();
-            Statement statement = connection.createStatement();
             connection.setAutoCommit(false);
+            watchdog = LockContentionWatchdog.start(group.get(0).getVersion(), connection, connectionManager, settings);
+
+            for (Migration migration : group) {
+                current = migration;
+                PhaseRecorder recorder = new PhaseRecorder(migration.getVersion(), settings.getListeners());
+                try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.EXECUTE)) {
+                    migration.setChecksum(runGroupMember(connection, migration, migrationFileReader, settings, recorder));
+                }
+                executionTimes[recorders.size()] = recorder.getElapsedMillis();
+                recorders.add(recorder);
+                if (settings.getGroupMaxMillis() > 0
+                        && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - groupStart) >= settings.getGroupMaxMillis()) {
+                    break;
+                }
+            }
+            current = null;
+            watchdog.stop(recorders.get(recorders.size() - 1));
+            if (watchdog.isCancelled()) {
+                throw watchdog.toException("", null);
+            }
+
+            try (PhaseRecorder.Timer ignored = recorders.get(recorders.size() - 1).start(MigrationPhase.BOOKKEEPING)) {
+                insertSchemaVersions(group.subList(0, recorders.size()), executionTimes, connection);
+                connection.commit();
+            }
+            log.info("Migration group of {} migrations committed", recorders.size());
+            return recorders;
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (watchdog != null) {
+                watchdog.stop(null);
+            }
+            try {
+                connection.rollback();
+                log.info("Rollback completed for migration group starting at version: " + group.get(0).getVersion(), e);
+            } catch (SQLException ex) {
+                log.error("Failed to rollback migration group starting at version " + group.get(0).getVersion(), ex);
+                throw new RollbackException("Failed to rollback migration group starting at version " + group.get(0).getVersion(), ex);
+            }
+            Exception failure = watchdog != null && watchdog.isCancelled() && !(e instanceof LockContentionException)
+                    ? watchdog.toException("", e) : e;
+            String cause = current != null ? "migration with version " + current.getVersion() + " failed" : "commit failed";
+            throw new MigrationGroupException("Migration group starting at version " + group.get(0).getVersion()
+                    + " rolled back, " + cause + ": " + rootMessage(failure), current != null ? current.getVersion() : 0, failure);
+        } finally {
+            if (watchdog != null) {
+                watchdog.stop(null);
+            }
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+            } catch (SQLException e) {
+                log.error("Failed to close connection for migration group starting at version " + group.get(0).getVersion(), e);
+                throw new ConnectionException("Failed to close connection for migration group starting at version " + group.get(0).getVersion(), e);
+            }
+        }
+    }
+
+    private static int runGroupMember(Connection connection, Migration migration, MigrationFileReader migrationFileReader,
+                                      MigrationSettings settings, PhaseRecorder recorder) throws SQLException, IOException {
+        if (migration.getType() == MigrationType.COPY) {
+            try (CopyData copyData = migrationFileReader.openCopyData(migration)) {
+                return runCopy(connection, migration, copyData, recorder);
+            }
+        }
+        try (SqlStatementSplitter statements = migrationFileReader.openStatements(migration)) {
+            return runStatements(connection, statements, settings, recorder);
+        }
+    }
+
+    private static int runStatements(Connection connection, SqlStatementSplitter statements, MigrationSettings settings,
+                                     PhaseRecorder recorder) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            applyTimeouts(statement, statements.getHeader(), settings, "SET LOCAL ");
+            executeStatements(statement, statements, settings.getBatchSize(), recorder);
+        }
+        return statements.getChecksum();
+    }
+
+    private static int runCopy(Connection connection, Migration migration, CopyData copyData,
+                               PhaseRecorder recorder) throws SQLException, IOException {
+        long rows = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn(copyData.getCopySql(), copyData.getData());
+        recorder.addRows(rows);
+        log.info("Copied {} rows for migration with version {}", rows, migration.getVersion());
+        return copyData.getChecksum();
+    }
+
+    /**
+     * Executes a backfill migration in separately committed chunks
+     * Every chunk is committed together with a checkpoint in the progress table, and the backfill resumes from the
+     * last checkpoint if an earlier run was interrupted. The version is recorded only in the transaction that finds
+     * no more rows to process. Chunks are throttled by the rows-per-second limit and the pause from the settings
+     * @param migration the backfill migration
+     * @param connectionManager the ConnectionManager used to obtain a database connection
+     * @param settings the chunk size and throttling settings
+     * @param recorder the recorder of the migration phases
+     * @throws MigrationExecutionException if a chunk fails; chunks committed before it are kept
+     * @throws RollbackException if the failed chunk cannot be rolled back
+     * @throws ConnectionException if there is an error closing the connection
+     */
+    public static void executeBackfillMigration(Migration migration, ConnectionManager connectionManager,
+                                                MigrationSettings settings, PhaseRecorder recorder) {
+        BackfillMigration backfill = migration.getBackfill();
+
+        log.info("Starting backfill migration with version: " + migration.getVersion());
+
+        Connection connection = connectionManager.getConnection();
+
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(SchemaVersionQueries.CREATE_TABLE_SCHEMA_VERSION_PROGRESS);
+            }
+            long lastKey = backfill.getInitialKey();
+            long rowsProcessed = 0;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.SELECT_PROGRESS_FROM_SCHEMA_VERSION_PROGRESS)) {
+                preparedStatement.setInt(1, migration.getVersion());
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    if (rs.next()) {
+                        lastKey = rs.getLong(1);
+                        rowsProcessed = rs.getLong(2);
+                        log.info("Resuming backfill {} after key {} ({} rows already processed)", migration.getVersion(), lastKey, rowsProcessed);
+                    }
+                }
+            }
+
+            connection.setAutoCommit(false);
+            long start = System.nanoTime();
+            long rowsThisRun = 0;
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.EXECUTE)) {
+                while (true) {
+                    BackfillChunk chunk = backfill.processChunk(connection, lastKey, settings.getBackfillChunkSize());
+                    if (chunk.getRowsProcessed() == 0) {
+                        break;
+                    }
+                    lastKey = chunk.getLastKey();
+                    rowsProcessed += chunk.getRowsProcessed();
+                    rowsThisRun += chunk.getRowsProcessed();
+                    recorder.addRows(chunk.getRowsProcessed());
+                    saveProgress(connection, migration.getVersion(), lastKey, rowsProcessed);
+                    connection.commit();
+                    log.info("Backfill {} committed chunk of {} rows up to key {}", migration.getVersion(), chunk.getRowsProcessed(), lastKey);
+                    throttle(settings, start, rowsThisRun);
+                }
+            }
+
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.BOOKKEEPING)) {
+                try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.DELETE_FROM_SCHEMA_VERSION_PROGRESS)) {
+                    preparedStatement.setInt(1, migration.getVersion());
+                    preparedStatement.executeUpdate();
+                }
+                insertSchemaVersion(migration.getVersion(), migration.getChecksum(), recorder.getElapsedMillis(), migration.isBaseline(), connection);
+                connection.commit();
+            }
+            log.info("Backfill migration with version " + migration.getVersion() + " completed successfully, rows processed: " + rowsProcessed);
+
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+                log.info("Rollback completed for backfill migration with version: " + migration.getVersion(), e);
+            } catch (SQLException ex) {
+                log.error("Failed to rollback backfill migration with version " + migration.getVersion(), ex);
+                throw new RollbackException("Failed to rollback backfill migration with version " + migration.getVersion(), ex);
+            }
+            throw new MigrationExecutionException("Backfill migration with version " + migration.getVersion() + " failed: "
+                    + rootMessage(e), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+                log.info("Connection released for migration with version: " + migration.getVersion());
+            } catch (SQLException e) {
+                log.error("Failed to close connection for migration with version " + migration.getVersion(), e);
+                throw new ConnectionException("Failed to close connection for migration with version" + migration.getVersion(), e);
+            }
+        }
+    }
+
+    private static void saveProgress(Connection connection, int version, long lastKey, long rowsProcessed) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.UPSERT_INTO_SCHEMA_VERSION_PROGRESS)) {
+            preparedStatement.setInt(1, version);
+            preparedStatement.setLong(2, lastKey);
+            preparedStatement.setLong(3, rowsProcessed);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private static void throttle(MigrationSettings settings, long startNanos, long rows) {
+        long pauseMillis = settings.getBackfillPauseMillis();
+        if (settings.getBackfillMaxRowsPerSecond() > 0) {
+            long expectedMillis = rows * 1000 / settings.getBackfillMaxRowsPerSecond();
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            pauseMillis = Math.max(pauseMillis, expectedMillis - elapsedMillis);
+        }
+        if (pauseMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MigrationExecutionException("Backfill interrupted, progress is saved at the last committed chunk", e);
+        }
+    }
+
+    private static void executeInTransaction(Migration migration, ConnectionManager connectionManager,
+                                             MigrationSettings settings, PhaseRecorder recorder, MigrationBody body) {
+
+        log.info("Starting migration with version: " + migration.getVersion());
+
+        Connection connection = connectionManager.getConnection();
+        LockContentionWatchdog watchdog = null;
 
-            statement.executeQuery(SchemaVersionQueries.SELECT_ALL_FROM_SCHEMA_VERSION_FOR_UPDATE);
-            statement.executeUpdate(migration.getSql());
+        try {
+            connection.setAutoCommit(false);
+            watchdog = LockContentionWatchdog.start(migration.getVersion(), connection, connectionManager, settings);
 
-            insertSchemaVersion(migration.getVersion(), migration.getChecksum(), connection);
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.EXECUTE)) {
+                migration.setChecksum(body.execute(connection));
+            }
+            watchdog.stop(recorder);
+            if (watchdog.isCancelled()) {
+                throw watchdog.toException("", null);
+            }
 
-            connection.commit();
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.BOOKKEEPING)) {
+                recordMigration(migration, recorder.getElapsedMillis(), connection);
+                connection.commit();
+            }
             log.info("Migration with version " + migration.getVersion() + " completed successfully");
 
-        } catch (SQLException e) {
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (watchdog != null) {
+                watchdog.stop(recorder);
+            }
             try {
                 connection.rollback();
                 log.info("Rollback completed for migration with version: " + migration.getVersion(), e);
@@ -53,10 +366,86 @@ public class MigrationExecutor {
                 log.error("Failed to rollback migration with version " + migration.getVersion(), ex);
                 throw new RollbackException("Failed to rollback migration with version " + migration.getVersion(), ex);
             }
+            if (e instanceof LockContentionException) {
+                throw (LockContentionException) e;
+            }
+            if (watchdog != null && watchdog.isCancelled()) {
+                throw watchdog.toException("", e);
+            }
+            if (RetryBackoff.isLockTimeout(e)) {
+                throw new LockTimeoutException("Migration with version " + migration.getVersion()
+                        + " timed out waiting for a lock: " + rootMessage(e), e);
+            }
+            throw new MigrationExecutionException("Migration with version " + migration.getVersion() + " failed: "
+                    + rootMessage(e), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+                log.info("Connection released for migration with version: " + migration.getVersion());
+            } catch (SQLException e) {
+                log.error("Failed to close connection for migration with version " + migration.getVersion(), e);
+                throw new ConnectionException("Failed to close connection for migration with version" + migration.getVersion(), e);
+            }
+        }
+    }
+
+    private static void executeNonTransactional(Migration migration, SqlStatementSplitter statements, MigrationHeader header,
+                                                ConnectionManager connectionManager, MigrationSettings settings,
+                                                PhaseRecorder recorder) {
+
+        log.info("Starting non-transactional migration with version: " + migration.getVersion());
+
+        Connection connection = connectionManager.getConnection();
+        Set<String> invalidIndexesBefore = Collections.emptySet();
+        LockContentionWatchdog watchdog = null;
+
+        try (Statement statement = connection.createStatement()) {
+            invalidIndexesBefore = findInvalidIndexes(connection);
+            applyTimeouts(statement, header, settings, "SET ");
+            int maxRetries = RetryBackoff.maxRetries(header, settings);
+            int total = 0;
+            watchdog = LockContentionWatchdog.start(migration.getVersion(), connection, connectionManager, settings);
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.EXECUTE)) {
+                String sql;
+                while ((sql = statements.nextStatement()) != null) {
+                    recorder.addRows(executeWithRetry(statement, sql, maxRetries, invalidIndexesBefore, settings));
+                    total++;
+                }
+            }
+            watchdog.stop(recorder);
+            if (watchdog.isCancelled()) {
+                throw watchdog.toException("", null);
+            }
+            log.info("Executed {} statements without a transaction", total);
+            migration.setChecksum(statements.getChecksum());
+
+            try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.BOOKKEEPING)) {
+                recordMigration(migration, recorder.getElapsedMillis(), connection);
+            }
+            log.info("Migration with version " + migration.getVersion() + " completed successfully");
+
+        } catch (SQLException | RuntimeException e) {
+            if (watchdog != null) {
+                watchdog.stop(recorder);
+            }
+            Set<String> leftovers = findNewInvalidIndexes(connection, invalidIndexesBefore);
+            log.error("Non-transactional migration with version {} failed, statements before the failure stay applied, "
+                    + "invalid indexes left: {}", migration.getVersion(), leftovers, e);
+            if (watchdog != null && watchdog.isCancelled()) {
+                throw watchdog.toException("; statements before the cancelled one stay applied"
+                        + (leftovers.isEmpty() ? "" : ", invalid indexes left: " + leftovers), e);
+            }
+            throw new MigrationExecutionException("Non-transactional migration with version " + migration.getVersion()
+                    + " failed: " + rootMessage(e) + (leftovers.isEmpty() ? "" : "; invalid indexes left: " + leftovers), e);
         } finally {
             try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET lock_timeout");
+                    statement.execute("RESET statement_timeout");
+                }
                 connection.close();
-                log.info("Connection closed for migration with version: " + migration.getVersion());
+                log.info("Connection released for migration with version: " + migration.getVersion());
             } catch (SQLException e) {
                 log.error("Failed to close connection for migration with version " + migration.getVersion(), e);
                 throw new ConnectionException("Failed to close connection for migration with version" + migration.getVersion(), e);
@@ -64,10 +453,144 @@ public class MigrationExecutor {
         }
     }
 
-    private static void insertSchemaVersion(int version, int checksum, Connection connection) {
+    private static int executeWithRetry(Statement statement, String sql, int maxRetries,
+                                        Set<String> invalidIndexesBefore, MigrationSettings settings) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (attempt > 1) {
+                    // dropping waits for the same lockers as the build, so a timed out drop is retried like the statement
+                    dropNewInvalidIndexes(statement, invalidIndexesBefore);
+                }
+                statement.execute(sql);
+                return statement.getUpdateCount();
+            } catch (SQLException e) {
+                if (!RetryBackoff.isLockTimeout(e) || attempt > maxRetries) {
+                    throw e;
+                }
+                RetryBackoff.pause(settings, attempt);
+            }
+        }
+    }
+
+    private static void applyTimeouts(Statement statement, MigrationHeader header, MigrationSettings settings,
+                                      String setCommand) throws SQLException {
+        String lockTimeout = header.getLockTimeout() != null ? header.getLockTimeout() : settings.getLockTimeout();
+        String statementTimeout = header.getStatementTimeout() != null ? header.getStatementTimeout() : settings.getStatementTimeout();
+        if (lockTimeout != null) {
+            statement.execute(setCommand + "lock_timeout = '" + lockTimeout.replace("'", "") + "'");
+        }
+        if (statementTimeout != null) {
+            statement.execute(setCommand + "statement_timeout = '" + statementTimeout.replace("'", "") + "'");
+        }
+    }
+
+    private static Set<String> findInvalidIndexes(Connection connection) throws SQLException {
+        Set<String> indexes = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SchemaVersionQueries.SELECT_INVALID_INDEXES)) {
+            while (rs.next()) {
+                indexes.add(rs.getString(1));
+            }
+        }
+        return indexes;
+    }
+
+    private static Set<String> findNewInvalidIndexes(Connection connection, Set<String> invalidIndexesBefore) {
+        try {
+            Set<String> indexes = findInvalidIndexes(connection);
+            indexes.removeAll(invalidIndexesBefore);
+            return indexes;
+        } catch (SQLException e) {
+            log.error("Failed to check for invalid indexes", e);
+            return Collections.emptySet();
+        }
+    }
+
+    private static void dropNewInvalidIndexes(Statement statement, Set<String> invalidIndexesBefore) throws SQLException {
+        for (String index : findNewInvalidIndexes(statement.getConnection(), invalidIndexesBefore)) {
+            log.info("Dropping invalid index {} left by a timed out statement", index);
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+        }
+    }
+
+    private static void executeStatements(Statement statement, SqlStatementSplitter statements, int batchSize,
+                                          PhaseRecorder recorder) throws SQLException {
+        int batched = 0;
+        int total = 0;
+        String sql;
+        while ((sql = statements.nextStatement()) != null) {
+            statement.addBatch(sql);
+            total++;
+            if (++batched >= batchSize) {
+                addUpdateCounts(recorder, statement.executeBatch());
+                batched = 0;
+            }
+        }
+        if (batched > 0) {
+            addUpdateCounts(recorder, statement.executeBatch());
+        }
+        log.info("Executed {} statements", total);
+    }
+
+    private static void addUpdateCounts(PhaseRecorder recorder, int[] updateCounts) {
+        for (int updateCount : updateCounts) {
+            recorder.addRows(updateCount);
+        }
+    }
+
+    private static String rootMessage(Exception e) {
+        if (e instanceof SQLException && ((SQLException) e).getNextException() != null) {
+            return ((SQLException) e).getNextException().getMessage();
+        }
+        return e.getMessage();
+    }
+
+    private static void insertSchemaVersions(List<Migration> migrations, long[] executionTimes, Connection connection) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.INSERT_INTO_SCHEMA_VERSION)) {
+            for (int i = 0; i < migrations.size(); i++) {
+                preparedStatement.setInt(1, migrations.get(i).getVersion());
+                preparedStatement.setInt(2, migrations.get(i).getChecksum());
+                preparedStatement.setLong(3, executionTimes[i]);
+                preparedStatement.setBoolean(4, migrations.get(i).isBaseline());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            log.info("Schema versions inserted successfully: {} versions", migrations.size());
+        } catch (SQLException e) {
+            log.error("Failed to insert schema versions starting at {}", migrations.get(0).getVersion(), e);
+            throw new SchemaVersionException("Error inserting schema versions starting at " + migrations.get(0).getVersion(), e);
+        }
+    }
+
+    private static void recordMigration(Migration migration, long executionTimeMillis, Connection connection) {
+        if (migration.getType() == MigrationType.REPEATABLE) {
+            upsertRepeatable(migration.getDescription(), migration.getChecksum(), executionTimeMillis, connection);
+        } else {
+            insertSchemaVersion(migration.getVersion(), migration.getChecksum(), executionTimeMillis, migration.isBaseline(), connection);
+        }
+    }
+
+    private static void upsertRepeatable(String name, int checksum, long executionTimeMillis, Connection connection) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.UPSERT_INTO_SCHEMA_REPEATABLE)) {
+            preparedStatement.setString(1, name);
+            preparedStatement.setInt(2, checksum);
+            preparedStatement.setLong(3, executionTimeMillis);
+
+            preparedStatement.executeUpdate();
+            log.info("Repeatable migration recorded successfully: name={}, checksum={}", name, checksum);
+        } catch (SQLException e) {
+            log.error("Failed to record repeatable migration: name={}, checksum={}", name, checksum, e);
+            throw new SchemaVersionException("Error recording repeatable migration: " + name, e);
+        }
+    }
+
+    private static void insertSchemaVersion(int version, int checksum, long executionTimeMillis, boolean baseline,
+                                            Connection connection) {
         try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.INSERT_INTO_SCHEMA_VERSION)) {
             preparedStatement.setInt(1, version);
             preparedStatement.setInt(2, checksum);
+            preparedStatement.setLong(3, executionTimeMillis);
+            preparedStatement.setBoolean(4, baseline);
 
             preparedStatement.executeUpdate();
             log.info("Schema version inserted successfully: version={}, checksum={}", version, checksum);
@@ -76,4 +599,18 @@ public class MigrationExecutor {
             throw new SchemaVersionException("Error inserting schema version: " + version, e);
         }
     }
+
+    /**
+     * The work a migration performs inside its transaction
+     */
+    @FunctionalInterface
+    private interface MigrationBody {
+
+        /**
+         * Runs the migration on the given connection
+         * @param connection the connection with an open transaction
+         * @return the checksum of the migration file computed while it was read
+         */
+        int execute(Connection connection) throws SQLException, IOException;
+    }
 }
@@ -1,70 +1,438 @@
 package com.innowise.service;
 
+import com.innowise.backfill.BackfillMigration;
+import com.innowise.constants.ResourcesConstants;
 import com.innowise.exception.SqLFileReadException;
 import com.innowise.model.Migration;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.parser.ChecksumReader;
+import com.innowise.parser.CopyData;
+import com.innowise.parser.MappedChecksum;
+import com.innowise.parser.SqlStatementSplitter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.zip.CRC32;
+import java.util.ServiceLoader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The MigrationFileReader class is responsible for reading migration files from a specified directory,
- * extracting their version numbers and SQL content, and returning a sorted list of Migration objects
+ * extracting their version numbers, and returning a sorted list of Migration objects
+ * File contents are streamed: statements are read one at a time through {@link SqlStatementSplitter}
+ * and the checksum is computed in the same pass
+ * Files with the {@code .csv} extension are COPY migrations and are streamed through {@link CopyData}
+ * Checksums are kept in a {@link ChecksumCache} between runs; on a cache miss files are hashed
+ * from memory-mapped buffers in parallel. The cache is loaded once, by the first load of migrations, and can then be
+ * used from several threads
+ * A directory with a precomputed {@link MigrationIndex} is not listed or hashed at all
+ * Directories inside a jar (see {@link MigrationResourceLocator}) are read through the zip file system
+ * A baseline script {@code B<version>__<description>.sql} replaces all migrations up to its version:
+ * files at or below the newest baseline are skipped by name and never read
+ * Repeatable scripts {@code R__<name>.sql} have no version and are loaded separately by {@link #loadRepeatableMigrations(Path)}
  */
 
 @Slf4j
 public class MigrationFileReader {
 
+    private static final String COPY_EXTENSION = "csv";
+    private static final String BASELINE_PREFIX = "B";
+    private static final Pattern MIGRATION_FILE_NAME = Pattern.compile("([VB])(\\d+)__(.+)\\.(sql|csv)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern REPEATABLE_FILE_NAME = Pattern.compile("R__(.+)\\.sql", Pattern.CASE_INSENSITIVE);
+
+    private final String checksumCacheDir;
+    private volatile ChecksumCache checksumCache;
+
+    /**
+     * Creates a reader that keeps its checksum cache next to the migrations
+     */
+    public MigrationFileReader() {
+        this(null);
+    }
+
+    /**
+     * Creates a reader that keeps its checksum cache in the given directory
+     * @param checksumCacheDir the cache directory, or {@code null} to use the migrations directory
+     */
+    public MigrationFileReader(String checksumCacheDir) {
+        this.checksumCacheDir = checksumCacheDir;
+    }
+
+    /**
+     * Loads the migration index from the directory in the settings, or from the migrations resource folder
+     * on the classpath if no directory is set
+     * @param settings the run settings
+     * @return a list of Migration objects sorted by their version numbers
+     */
+    public List<Migration> loadMigrations(MigrationSettings settings) {
+        return loadMigrations(migrationsDirectory(settings));
+    }
+
     /**
-     * Loads migration files from the specified directory
+     * Loads the repeatable migrations from the directory in the settings, or from the migrations resource folder
+     * on the classpath if no directory is set
+     * @param settings the run settings
+     * @return the repeatable migrations sorted by name
+     * @see #loadRepeatableMigrations(Path)
+     */
+    public List<Migration> loadRepeatableMigrations(MigrationSettings settings) {
+        return loadRepeatableMigrations(migrationsDirectory(settings));
+    }
+
+    private Path migrationsDirectory(MigrationSettings settings) {
+        if (settings.getMigrationsDir() != null) {
+            return Path.of(settings.getMigrationsDir());
+        }
+        return MigrationResourceLocator.locate(getClass().getClassLoader(), ResourcesConstants.RESOURCE_MIGRATION_FOLDER);
+    }
+
+    /**
+     * Loads the migration index from the specified directory
      * @param migrationsDir the directory containing migration files
      * @return a list of Migration objects sorted by their version numbers
+     * @see #loadMigrations(Path)
      */
     public List<Migration> loadMigrations(String migrationsDir) {
-        File migrationsDirectory = new File(migrationsDir);
-        File[] migrationFiles = migrationsDirectory.listFiles();
+        return loadMigrations(Path.of(migrationsDir));
+    }
+
+    /**
+     * Loads the migration index from the specified directory, which may be inside a jar
+     * If the directory holds a {@link MigrationIndex}, versions, sizes and checksums are taken from it.
+     * Otherwise only the directory listing is read here: version, description, size and modification time
+     * come from the file name and attributes, contents are streamed when the migration is checksummed or executed
+     * Files whose names do not follow the {@code V<version>__<description>.sql|csv} pattern are ignored,
+     * repeatable migrations are left to {@link #loadRepeatableMigrations(Path)}
+     * {@link BackfillMigration} implementations registered with {@link ServiceLoader} are added to the index
+     * Migrations covered by the newest baseline script are left out
+     * @param migrationsDirectory the directory containing migration files
+     * @return a list of Migration objects sorted by their version numbers
+     */
+    public List<Migration> loadMigrations(Path migrationsDirectory) {
+        if (!Files.isDirectory(migrationsDirectory)) {
+            return Collections.emptyList();
+        }
 
-        if (migrationFiles == null) {
+        List<Migration> migrations = listMigrations(migrationsDirectory);
+        migrations.removeIf(migration -> migration.getType() == MigrationType.REPEATABLE);
+        for (BackfillMigration backfill : ServiceLoader.load(BackfillMigration.class)) {
+            migrations.add(new Migration(backfill));
+        }
+        migrations = skipBaselined(migrations);
+
+        migrations.sort(Comparator.comparingInt(Migration::getVersion));
+        log.info("Indexed {} migrations in {}", migrations.size(), migrationsDirectory);
+        useChecksumCache(migrationsDirectory);
+        return migrations;
+    }
+
+    /**
+     * Loads the repeatable migrations {@code R__<name>.sql} from the specified directory, which may be inside a jar
+     * They are found through the {@link MigrationIndex} or the directory listing in the same way as versioned ones,
+     * and their checksums are resolved through the same checksum cache
+     * @param migrationsDirectory the directory containing migration files
+     * @return the repeatable migrations sorted by name
+     */
+    public List<Migration> loadRepeatableMigrations(Path migrationsDirectory) {
+        if (!Files.isDirectory(migrationsDirectory)) {
             return Collections.emptyList();
         }
+        List<Migration> repeatables = new ArrayList<>();
+        for (Migration migration : listMigrations(migrationsDirectory)) {
+            if (migration.getType() == MigrationType.REPEATABLE) {
+                repeatables.add(migration);
+            }
+        }
+        repeatables.sort(Comparator.comparing(Migration::getDescription));
+        log.info("Indexed {} repeatable migrations in {}", repeatables.size(), migrationsDirectory);
+        useChecksumCache(migrationsDirectory);
+        return repeatables;
+    }
+
+    private List<Migration> listMigrations(Path migrationsDirectory) {
+        List<Migration> migrations = MigrationIndex.read(migrationsDirectory);
+        return migrations != null ? migrations : scanMigrations(migrationsDirectory);
+    }
+
+    /**
+     * Lists the migration files of a directory without reading their contents
+     * @param migrationsDirectory the directory containing migration files
+     * @return the migrations found, in no particular order
+     */
+    List<Migration> scanMigrations(Path migrationsDirectory) {
+        List<Path> migrationFiles = new ArrayList<>();
+        int baselineVersion = 0;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(migrationsDirectory)) {
+            for (Path migrationFile : directoryStream) {
+                String fileName = migrationFile.getFileName().toString();
+                if (fileName.startsWith(".") || fileName.equals(MigrationIndex.INDEX_FILE_NAME)) {
+                    continue;
+                }
+                migrationFiles.add(migrationFile);
+                baselineVersion = Math.max(baselineVersion, baselineVersion(fileName));
+            }
+
+            List<Migration> migrations = new ArrayList<>();
+            int skipped = 0;
+            for (Path migrationFile : migrationFiles) {
+                if (isBaselined(migrationFile.getFileName().toString(), baselineVersion)) {
+                    skipped++;
+                    continue;
+                }
+                Migration migration = getMigration(migrationFile);
+                if (migration != null) {
+                    migrations.add(migration);
+                }
+            }
+            if (skipped > 0) {
+                log.info("Skipped {} migrations covered by baseline {}", skipped, baselineVersion);
+            }
+            return migrations;
+        } catch (IOException e) {
+            log.error("Error listing migrations directory: " + migrationsDirectory, e);
+            throw new SqLFileReadException("Error listing migrations directory: " + migrationsDirectory, e);
+        }
+    }
+
+    private static int baselineVersion(String fileName) {
+        Matcher matcher = MIGRATION_FILE_NAME.matcher(fileName);
+        if (!matcher.matches() || !BASELINE_PREFIX.equalsIgnoreCase(matcher.group(1))) {
+            return 0;
+        }
+        return Integer.parseInt(matcher.group(2));
+    }
+
+    private static boolean isBaselined(String fileName, int baselineVersion) {
+        Matcher matcher = MIGRATION_FILE_NAME.matcher(fileName);
+        if (baselineVersion == 0 || !matcher.matches()) {
+            return false;
+        }
+        int version = Integer.parseInt(matcher.group(2));
+        return version < baselineVersion
+                || version == baselineVersion && !BASELINE_PREFIX.equalsIgnoreCase(matcher.group(1));
+    }
+
+    private static List<Migration> skipBaselined(List<Migration> migrations) {
+        int baselineVersion = 0;
+        for (Migration migration : migrations) {
+            if (migration.isBaseline()) {
+                baselineVersion = Math.max(baselineVersion, migration.getVersion());
+            }
+        }
+        if (baselineVersion == 0) {
+            return migrations;
+        }
+        List<Migration> remaining = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.getVersion() > baselineVersion || migration.getVersion() == baselineVersion && migration.isBaseline()) {
+                remaining.add(migration);
+            }
+        }
+        return remaining;
+    }
+
+    private synchronized void useChecksumCache(Path migrationsDirectory) {
+        if (checksumCache == null) {
+            checksumCache = loadChecksumCache(migrationsDirectory);
+        }
+    }
+
+    private ChecksumCache loadChecksumCache(Path migrationsDirectory) {
+        if (checksumCacheDir != null) {
+            return ChecksumCache.load(Path.of(checksumCacheDir));
+        }
+        if (migrationsDirectory.getFileSystem() != FileSystems.getDefault()) {
+            return null;
+        }
+        return ChecksumCache.load(migrationsDirectory);
+    }
+
+    /**
+     * Fills in the checksums of the given migrations
+     * Unchanged files are taken from the checksum cache, the rest are hashed in parallel and added to the cache
+     * @param migrations the migrations to checksum
+     */
+    public void resolveChecksums(List<Migration> migrations) {
+        ChecksumCache cache = checksumCache;
+        List<Migration> misses = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.getChecksum() == null && (cache == null || !cache.fill(migration))) {
+                misses.add(migration);
+            }
+        }
+        log.info("Checksums resolved from cache: {}, to compute: {}", migrations.size() - misses.size(), misses.size());
+        misses.parallelStream().forEach(this::calculateCheckSum);
+        saveChecksumCache();
+    }
+
+    /**
+     * Adds the checksum computed while a migration was executed to the checksum cache
+     * @param migration the executed migration
+     */
+    public void recordChecksum(Migration migration) {
+        ChecksumCache cache = checksumCache;
+        if (cache != null) {
+            cache.put(migration);
+        }
+    }
+
+    /**
+     * Writes the checksum cache to disk if it has changed
+     */
+    public void saveChecksumCache() {
+        ChecksumCache cache = checksumCache;
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    /**
+     * Opens the migration script for streaming execution
+     * The checksum of the script is available from the splitter once all statements have been read
+     * @param migration the migration to open
+     * @return a splitter producing the statements of the script
+     */
+    public SqlStatementSplitter openStatements(Migration migration) {
+        return new SqlStatementSplitter(openReader(migration.getPath()), migration.getPath().getFileName().toString());
+    }
+
+    /**
+     * Opens a COPY migration for streaming execution
+     * @param migration the COPY migration to open
+     * @return the COPY statement and the data to stream
+     */
+    public CopyData openCopyData(Migration migration) {
+        InputStream inputStream = new BufferedInputStream(openStream(migration.getPath()));
+        try {
+            return new CopyData(inputStream, migration.getPath().getFileName().toString());
+        } catch (RuntimeException e) {
+            closeQuietly(inputStream);
+            throw e;
+        }
+    }
 
-        return Arrays.stream(migrationFiles)
-                .map(this::getMigration)
-                .sorted(Comparator.comparing(Migration::getVersion))
-                .collect(Collectors.toList());
+    /**
+     * Returns the checksum of the migration, computing it by streaming the file if it is not known yet
+     * @param migration the migration to checksum
+     * @return the checksum of the migration script
+     */
+    public int calculateCheckSum(Migration migration) {
+        if (migration.getChecksum() == null) {
+            migration.setChecksum(migration.getType() == MigrationType.COPY
+                    ? calculateCopyCheckSum(migration) : calculateSqlCheckSum(migration));
+            recordChecksum(migration);
+        }
+        return migration.getChecksum();
     }
 
-    private Migration getMigration(File migrationFile) {
-        int version = extractVersionFromFileName(migrationFile.getName());
-        String sql = readSqlFromFile(migrationFile);
-        int checksum = calculateCheckSum(sql);
-        return new Migration(version, sql, checksum);
+    private int calculateSqlCheckSum(Migration migration) {
+        try {
+            long checksum = MappedChecksum.scriptChecksum(migration.getPath());
+            if (checksum >= 0) {
+                return (int) checksum;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Falling back to streaming checksum for {}: {}", migration.getPath().getFileName(), e.getMessage());
+        }
+        try (ChecksumReader reader = new ChecksumReader(openReader(migration.getPath()))) {
+            reader.drain();
+            return reader.getChecksum();
+        } catch (IOException e) {
+            log.error("Error reading file: " + migration.getPath().getFileName(), e);
+            throw new SqLFileReadException("Error reading file: " + migration.getPath().getFileName(), e);
+        }
     }
 
-    private int extractVersionFromFileName(String fileName) {
-        String versionStr = fileName.split("__")[0].substring(1);
-        return Integer.parseInt(versionStr);
+    private int calculateCopyCheckSum(Migration migration) {
+        try {
+            return MappedChecksum.rawChecksum(migration.getPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Falling back to streaming checksum for {}: {}", migration.getPath().getFileName(), e.getMessage());
+        }
+        try (CopyData copyData = openCopyData(migration)) {
+            copyData.drain();
+            return copyData.getChecksum();
+        } catch (IOException e) {
+            log.error("Error reading file: " + migration.getPath().getFileName(), e);
+            throw new SqLFileReadException("Error reading file: " + migration.getPath().getFileName(), e);
+        }
     }
 
-    private String readSqlFromFile(File file) {
+    private Migration getMigration(Path migrationFile) throws IOException {
+        String fileName = migrationFile.getFileName().toString();
+        if (!MIGRATION_FILE_NAME.matcher(fileName).matches() && !REPEATABLE_FILE_NAME.matcher(fileName).matches()) {
+            log.warn("Skipping file that is not a migration: {}", migrationFile.getFileName());
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(migrationFile, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        return toMigration(migrationFile, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * Creates the migration for a file whose name follows the migration file name pattern
+     * Baseline and repeatable scripts must be SQL files; repeatable migrations get version 0
+     * @param migrationFile the migration file
+     * @param size the file size
+     * @param lastModified the modification time in milliseconds, 0 if unknown
+     * @return the migration, or {@code null} if the file name is not a migration file name
+     */
+    static Migration toMigration(Path migrationFile, long size, long lastModified) {
+        Matcher repeatable = REPEATABLE_FILE_NAME.matcher(migrationFile.getFileName().toString());
+        if (repeatable.matches()) {
+            return new Migration(0, repeatable.group(1).replace('_', ' '), migrationFile, MigrationType.REPEATABLE,
+                    size, lastModified);
+        }
+        Matcher matcher = MIGRATION_FILE_NAME.matcher(migrationFile.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        boolean baseline = BASELINE_PREFIX.equalsIgnoreCase(matcher.group(1));
+        int version = Integer.parseInt(matcher.group(2));
+        MigrationType type = COPY_EXTENSION.equalsIgnoreCase(matcher.group(4)) ? MigrationType.COPY : MigrationType.SQL;
+        if (baseline && type == MigrationType.COPY) {
+            return null;
+        }
+        Migration migration = new Migration(version, matcher.group(3).replace('_', ' '), migrationFile, type, size, lastModified);
+        migration.setBaseline(baseline);
+        return migration;
+    }
+
+    private Reader openReader(Path path) {
+        return new InputStreamReader(openStream(path), StandardCharsets.UTF_8.newDecoder());
+    }
+
+    private InputStream openStream(Path path) {
         try {
-            return Files.lines(file.toPath()).collect(Collectors.joining("\n"));
+            return Files.newInputStream(path);
         } catch (IOException e) {
-            log.error("Error reading file: " + file.getName(), e);
-            throw new SqLFileReadException("Error reading file: " + file.getName(), e);
+            log.error("Error reading file: " + path.getFileName(), e);
+            throw new SqLFileReadException("Error reading file: " + path.getFileName(), e);
         }
     }
 
-    private int calculateCheckSum(String sql) {
-        CRC32 crc = new CRC32();
-        crc.update(sql.getBytes());
-        return (int) crc.getValue();
+    private void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            log.warn("Failed to close input stream", e);
+        }
     }
 }
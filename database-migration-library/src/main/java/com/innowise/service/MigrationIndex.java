@@ -0,0 +1,124 @@
+package com.innowise.service;
+
+import com.innowise.exception.SqLFileReadException;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The MigrationIndex class reads and writes the precomputed index of a migrations directory
+ * The index is a small text file named {@code index} next to the migrations, generated at build time
+ * by the {@code generateMigrationIndex} Gradle task; every line holds the version, file name, size and checksum
+ * of one migration separated by tabs, so startup reads one file instead of listing and hashing the directory
+ * Repeatable migrations are indexed with version 0
+ */
+
+@Slf4j
+public class MigrationIndex {
+
+    public static final String INDEX_FILE_NAME = "index";
+
+    private static final String HEADER = "# migration-index 1";
+    private static final String SEPARATOR = "\t";
+
+    private MigrationIndex() {
+    }
+
+    /**
+     * Generates the index of a migrations directory
+     * Used by the build: the first argument is the migrations directory, the second the index file to write
+     * @param args the migrations directory and the index file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: MigrationIndex <migrations dir> <index file>");
+        }
+        MigrationFileReader migrationFileReader = new MigrationFileReader();
+        List<Migration> migrations = migrationFileReader.scanMigrations(Path.of(args[0]));
+        migrations.sort(Comparator.comparingInt(Migration::getVersion));
+        migrations.forEach(migrationFileReader::calculateCheckSum);
+        write(Path.of(args[1]), migrations);
+    }
+
+    /**
+     * Reads the index stored in the given directory
+     * @param migrationsDirectory the directory holding the migrations and the index
+     * @return the indexed migrations with their checksums, or {@code null} if the directory has no index
+     * @throws SqLFileReadException if the index exists but cannot be read
+     */
+    public static List<Migration> read(Path migrationsDirectory) {
+        Path indexFile = migrationsDirectory.resolve(INDEX_FILE_NAME);
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        List<Migration> migrations = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException("Unsupported index format: " + line);
+            }
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    migrations.add(parseEntry(migrationsDirectory, line));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Error reading migration index " + indexFile, e);
+            throw new SqLFileReadException("Error reading migration index " + indexFile, e);
+        }
+        log.info("Read {} migrations from index {}", migrations.size(), indexFile);
+        return migrations;
+    }
+
+    /**
+     * Writes the index of the given migrations; backfill migrations are not indexed
+     * @param indexFile the index file to write
+     * @param migrations the migrations with computed checksums
+     * @throws SqLFileReadException if the index cannot be written
+     */
+    public static void write(Path indexFile, List<Migration> migrations) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Migration migration : migrations) {
+                    if (migration.getType() == MigrationType.BACKFILL) {
+                        continue;
+                    }
+                    writer.write(migration.getVersion() + SEPARATOR + migration.getPath().getFileName()
+                            + SEPARATOR + migration.getSize() + SEPARATOR + migration.getChecksum());
+                    writer.newLine();
+                }
+            }
+            log.info("Wrote index of {} migrations to {}", migrations.size(), indexFile);
+        } catch (IOException e) {
+            log.error("Error writing migration index " + indexFile, e);
+            throw new SqLFileReadException("Error writing migration index " + indexFile, e);
+        }
+    }
+
+    private static Migration parseEntry(Path migrationsDirectory, String line) throws IOException {
+        String[] fields = line.split(SEPARATOR);
+        if (fields.length != 4) {
+            throw new IOException("Malformed index entry: " + line);
+        }
+        Migration migration = MigrationFileReader.toMigration(migrationsDirectory.resolve(fields[1]),
+                Long.parseLong(fields[2]), 0);
+        if (migration == null || migration.getVersion() != Integer.parseInt(fields[0])) {
+            throw new IOException("Index entry does not match its file name: " + line);
+        }
+        migration.setChecksum(Integer.parseInt(fields[3]));
+        return migration;
+    }
+}
@@ -1,12 +1,38 @@
 package com.innowise.service;
 
 import com.innowise.connection.ConnectionManager;
-import com.innowise.constants.ResourcesConstants;
+import com.innowise.connection.ConnectionProvider;
+import com.innowise.constants.MigrationConfig;
+import com.innowise.exception.LockContentionException;
+import com.innowise.exception.LockTimeoutException;
+import com.innowise.exception.MigrationAnalysisException;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.exception.MigrationGroupException;
+import com.innowise.lock.MigrationLock;
+import com.innowise.model.DdlFinding;
 import com.innowise.model.Migration;
-import lombok.AllArgsConstructor;
+import com.innowise.model.MigrationDrift;
+import com.innowise.model.MigrationHeader;
+import com.innowise.model.MigrationPhase;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.model.RuleSeverity;
+import com.innowise.model.SchemaHistory;
+import com.innowise.monitoring.MigrationListener;
+import com.innowise.monitoring.PhaseRecorder;
+import com.innowise.parser.CopyData;
+import com.innowise.parser.SqlStatementSplitter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * The MigrationManager class is responsible for applying database migrations
@@ -16,61 +42,525 @@ import java.util.List;
  */
 
 @Slf4j
-@AllArgsConstructor
 public class MigrationManager {
 
     private ConnectionManager connectionManager;
     private SchemaManager schemaManager;
     private MigrationFileReader migrationFileReader;
+    private MigrationSettings settings;
+    private volatile boolean stopRequested;
+    private boolean stopped;
+
+    public MigrationManager(ConnectionManager connectionManager, SchemaManager schemaManager,
+                            MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.connectionManager = connectionManager;
+        this.schemaManager = schemaManager;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+    }
+
+    public MigrationManager(ConnectionManager connectionManager, SchemaManager schemaManager,
+                            MigrationFileReader migrationFileReader) {
+        this(connectionManager, schemaManager, migrationFileReader, new MigrationSettings());
+    }
 
     /**
      * Applies all available migrations
      * This method creates the schema version table (if it has not been created yet)
      * and loads migrations from files located at the specified resource
-     * It also generates a migration application report in JSON format
+     * It also streams a migration application report in JSON format to the file from the settings
+     * All database work of the run shares one connection obtained from {@link ConnectionManager#beginRun()}
+     * and the applied history is read once into a {@link SchemaHistory} snapshot
+     * Only pending migrations are read from disk, applied ones are checksummed only when
+     * {@link MigrationSettings#isValidateApplied()} is on
+     * The run holds the {@link MigrationLock} from the settings; the history is read after the lock is
+     * acquired, so a node that waited for another one finds nothing left to do
+     * The phases of the run and of every migration are timed and reported to the {@link MigrationListener}s
+     * from the settings; the timings of applied migrations are also written to the report
+     * With a {@link MigrationSettings#getGroupSize()} other than 1, consecutive pending transactional migrations
+     * are applied in groups of that size (0 for no limit) that share one transaction and one commit; a group
+     * that fails is rolled back as a whole and the report names the migration that caused it
+     * With a {@link MigrationSettings#getParallelWidth()} above 1, pending migrations are run by a
+     * {@link MigrationScheduler} on separate connections, so the connection pool needs one connection per worker
+     * in addition to the run connection
+     * A parallel run treats every migration not yet applied as pending, including versions below the current one
+     * that a failed run left behind. A sequential run applies only versions above the current one and skips such gaps
+     * with a warning, unless {@link MigrationSettings#isOutOfOrder()} is on, in which case they are applied in version
+     * order. The reported current version is the highest one up to which all migrations that are not skipped have been applied
+     * A baseline migration is applied only to an empty database; a database already at or above its version
+     * skips it and reports it as applied, and one below it is rejected because the migrations it replaces are no longer loaded
+     * Repeatable migrations run after all versioned ones, in name order, and only those whose checksum differs
+     * from the one recorded in schema_repeatable; they are skipped if a versioned migration failed or the run was stopped
+     * Unless {@link MigrationSettings#isAnalysisEnabled()} is off, the pending and the repeatable migrations are checked
+     * by the {@link MigrationAnalyzer} before the migration lock is taken, against a history read on the run connection;
+     * findings are written to the report, and a finding with the ERROR severity rejects the run with a
+     * {@link MigrationAnalysisException} before the lock is taken, the schema version table is created or any migration
+     * is applied. Repeatable migrations are all analyzed, changed or not, so a rejected script is reported even if an
+     * earlier run applied it
+     * @return the outcome of the run
+     */
+    public MigrationRunResult applyMigrations() {
+        return applyMigrations(null);
+    }
+
+    /**
+     * Applies the given, already loaded migrations
+     * Used to apply one migration set to several databases: checksums resolved before the call are not computed
+     * again, but the checksums computed while executing are recorded into the given migrations, so concurrent
+     * runs must not share the same {@link Migration} instances
+     * @param migrations the migrations sorted by version, or {@code null} to load them from the settings
+     * @return the outcome of the run
+     * @see #applyMigrations()
      */
-    public void applyMigrations() {
-        schemaManager.createSchemaVersionTable();
-        List<Migration> migrations = migrationFileReader.loadMigrations(getClass().getClassLoader()
-                .getResource(ResourcesConstants.RESOURCE_MIGRATION_FOLDER).getPath());
+    public MigrationRunResult applyMigrations(List<Migration> migrations) {
+        return applyMigrations(migrations, null, null);
+    }
 
-        int currentVersion = schemaManager.getCurrentVersion();
-        MigrationReport report = new MigrationReport();
+    /**
+     * Applies the given migrations against a history snapshot kept by the caller
+     * The snapshot is not reloaded from the database and is updated in place as migrations are applied
+     * @param migrations the migrations sorted by version, or {@code null} to load them from the settings
+     * @param history the applied history, or {@code null} to load it from the database; when given, the migrations
+     * are analyzed before the run connection is opened
+     * @param repeatables the repeatable migrations to consider, sorted by name, or {@code null} to scan the
+     * migrations directory for all of them
+     * @return the outcome of the run
+     * @see MigrationWatcher
+     */
+    MigrationRunResult applyMigrations(List<Migration> migrations, SchemaHistory history, List<Migration> repeatables) {
+        List<MigrationListener> listeners = settings.getListeners();
+        PhaseRecorder runRecorder = new PhaseRecorder(0, listeners);
+        stopRequested = false;
+        stopped = false;
+        listeners.forEach(MigrationListener::runStarted);
+        try {
+            List<Migration> loadedMigrations = migrations;
+            if (loadedMigrations == null) {
+                try (PhaseRecorder.Timer ignored = runRecorder.start(MigrationPhase.LOAD)) {
+                    loadedMigrations = migrationFileReader.loadMigrations(settings);
+                }
+            }
+            boolean analysisEnabled = settings.isAnalysisEnabled();
+            List<Migration> loadedRepeatables = repeatables == null && analysisEnabled
+                    ? migrationFileReader.loadRepeatableMigrations(settings) : repeatables;
+            List<DdlFinding> findings = analysisEnabled && history != null
+                    ? analyzeMigrations(loadedMigrations, history, loadedRepeatables) : Collections.emptyList();
 
-        for (Migration migration : migrations) {
-            processMigration(currentVersion, report, migration);
+            connectionManager.beginRun();
+            MigrationLock migrationLock = settings.getMigrationLock();
+            try {
+                if (analysisEnabled && history == null) {
+                    findings = analyzeMigrations(loadedMigrations, loadHistory(runRecorder), loadedRepeatables);
+                }
+                try (PhaseRecorder.Timer ignored = runRecorder.start(MigrationPhase.LOCK_WAIT)) {
+                    migrationLock.acquire(connectionManager.getConnection());
+                }
+                try {
+                    return applyPendingMigrations(runRecorder, loadedMigrations, history, loadedRepeatables, findings);
+                } finally {
+                    migrationLock.release(connectionManager.getConnection());
+                }
+            } finally {
+                connectionManager.endRun();
+            }
+        } finally {
+            long runNanos = runRecorder.getElapsedNanos();
+            listeners.forEach(listener -> listener.runCompleted(runNanos));
         }
-        report.generateJsonReport("migration-report.json");
     }
 
-    private void processMigration(int currentVersion, MigrationReport report, Migration migration) {
-        try {
-            if (isMigrationAlreadyApplied(report, migration)) return;
+    /**
+     * Asks a running {@link #applyMigrations()} to stop
+     * The migration or group in progress is completed and committed, the remaining ones are not started;
+     * can be called from any thread. The request is cleared when the next run starts, before
+     * {@link MigrationListener#runStarted()} is called
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Compares the applied history with the migration files without applying anything
+     * @return the drift found for every version; empty if the database matches the files
+     */
+    public List<MigrationDrift> validateMigrations() {
+        List<Migration> migrations = migrationFileReader.loadMigrations(settings);
+        migrationFileReader.resolveChecksums(migrations);
+        List<MigrationDrift> drifts = schemaManager.loadHistory().validate(migrations);
+        drifts.forEach(drift -> log.warn("Migration drift for version {}: {}", drift.getVersion(), drift.getType()));
+        return drifts;
+    }
+
+    private MigrationRunResult applyPendingMigrations(PhaseRecorder runRecorder, List<Migration> loadedMigrations,
+                                                      SchemaHistory knownHistory, List<Migration> knownRepeatables,
+                                                      List<DdlFinding> findings) {
+        List<Migration> migrations = loadedMigrations;
+        SchemaHistory history = knownHistory != null ? knownHistory : loadHistory(runRecorder);
+        int appliedBefore = history.size();
+        Migration coveredBaseline = coveredBaseline(migrations, history);
+        if (coveredBaseline != null) {
+            migrations = migrations.stream().filter(migration -> migration != coveredBaseline).collect(Collectors.toList());
+        }
+        migrations = skipGaps(migrations, history);
+
+        if (settings.isValidateApplied()) {
+            try (PhaseRecorder.Timer ignored = runRecorder.start(MigrationPhase.CHECKSUM)) {
+                migrationFileReader.resolveChecksums(migrations.stream()
+                        .filter(migration -> history.contains(migration.getVersion()))
+                        .collect(Collectors.toList()));
+            }
+        }
 
-            if (migration.getVersion() > currentVersion) {
-                executeMigration(report, migration);
+        try (MigrationReport report = new MigrationReport(settings.getReportFile(), settings.getReportFormat(),
+                settings.getListeners())) {
+            // another node may have applied some of the analyzed migrations while this one waited for the lock
+            report.addFindings(findings.stream()
+                    .filter(finding -> !history.contains(finding.getVersion()))
+                    .collect(Collectors.toList()));
+            if (knownHistory == null) {
+                try (PhaseRecorder.Timer ignored = runRecorder.start(MigrationPhase.HISTORY)) {
+                    schemaManager.createSchemaVersionTable();
+                }
             }
+            if (coveredBaseline != null) {
+                report.addMigrationResult(coveredBaseline.getVersion(), true,
+                        "Baseline skipped, the database is already at version " + history.getCurrentVersion());
+            }
+            if (settings.getParallelWidth() > 1) {
+                applyInParallel(migrations, history, report);
+            } else {
+                List<Migration> group = new ArrayList<>();
+                for (Migration migration : migrations) {
+                    if (stopRequested) {
+                        log.info("Migration run stopped on request before version {}", migration.getVersion());
+                        stopped = true;
+                        break;
+                    }
+                    if (isGroupMember(history, migration)) {
+                        group.add(migration);
+                        if (group.size() == settings.getGroupSize()) {
+                            executeGroup(history, report, group);
+                        }
+                        continue;
+                    }
+                    executeGroup(history, report, group);
+                    processMigration(history, report, migration);
+                }
+                executeGroup(history, report, group);
+            }
+            int completedVersion = history.getCompletedVersion(migrations);
+            int repeatablesApplied = applyRepeatableMigrations(report, knownRepeatables);
+            return new MigrationRunResult(completedVersion, history.size() - appliedBefore + repeatablesApplied,
+                    report.getFailureCount(), runRecorder.getElapsedMillis(), stopped);
+        } finally {
+            migrationFileReader.saveChecksumCache();
+        }
+    }
+
+    private SchemaHistory loadHistory(PhaseRecorder runRecorder) {
+        try (PhaseRecorder.Timer ignored = runRecorder.start(MigrationPhase.HISTORY)) {
+            return schemaManager.hasSchemaVersionTable() ? schemaManager.loadHistory() : new SchemaHistory(0);
+        }
+    }
+
+    /**
+     * Analyzes the migrations a run against the given history would apply, followed by the repeatable ones
+     * @throws MigrationAnalysisException if a finding has the ERROR severity; the findings are written to the report
+     */
+    private List<DdlFinding> analyzeMigrations(List<Migration> migrations, SchemaHistory history, List<Migration> repeatables) {
+        Migration coveredBaseline = coveredBaseline(migrations, history);
+        int currentVersion = history.getCurrentVersion();
+        List<Migration> analyzed = migrations.stream()
+                .filter(migration -> migration != coveredBaseline && !history.contains(migration.getVersion()))
+                .filter(migration -> appliesGaps() || migration.getVersion() > currentVersion)
+                .collect(Collectors.toCollection(ArrayList::new));
+        analyzed.addAll(repeatables);
+        List<DdlFinding> findings = new MigrationAnalyzer(migrationFileReader, settings).analyze(analyzed);
+        if (MigrationAnalyzer.hasErrors(findings)) {
+            try (MigrationReport report = new MigrationReport(settings.getReportFile(), settings.getReportFormat(),
+                    settings.getListeners())) {
+                report.addFindings(findings);
+                rejectMigrations(report, findings);
+            }
+        }
+        return findings;
+    }
+
+    private boolean appliesGaps() {
+        return settings.isOutOfOrder() || settings.getParallelWidth() > 1;
+    }
+
+    private List<Migration> skipGaps(List<Migration> migrations, SchemaHistory history) {
+        int currentVersion = history.getCurrentVersion();
+        List<Integer> gaps = migrations.stream()
+                .map(Migration::getVersion)
+                .filter(version -> version < currentVersion && !history.contains(version))
+                .collect(Collectors.toList());
+        if (gaps.isEmpty()) {
+            return migrations;
+        }
+        if (appliesGaps()) {
+            log.warn("Versions {} are missing below the current version {} and are applied out of order", gaps, currentVersion);
+            return migrations;
+        }
+        log.warn("Versions {} are missing below the current version {} and are skipped, set {} to apply them",
+                gaps, currentVersion, MigrationConfig.MIGRATION_OUT_OF_ORDER);
+        return migrations.stream()
+                .filter(migration -> migration.getVersion() > currentVersion || history.contains(migration.getVersion()))
+                .collect(Collectors.toList());
+    }
+
+    private void rejectMigrations(MigrationReport report, List<DdlFinding> findings) {
+        Map<String, List<DdlFinding>> errors = new LinkedHashMap<>();
+        for (DdlFinding finding : findings) {
+            if (finding.getSeverity() == RuleSeverity.ERROR) {
+                errors.computeIfAbsent(finding.getFile(), file -> new ArrayList<>()).add(finding);
+            }
+        }
+        errors.values().forEach(fileErrors -> report.addMigrationResult(fileErrors.get(0).getVersion(), false,
+                "Rejected by DDL analysis: " + fileErrors.stream().map(DdlFinding::getRule).collect(Collectors.toList())));
+        throw new MigrationAnalysisException("DDL analysis rejected migrations " + errors.keySet()
+                + ", no migration was applied", null);
+    }
+
+    private int applyRepeatableMigrations(MigrationReport report, List<Migration> knownRepeatables) {
+        if (stopped) {
+            return 0;
+        }
+        if (report.getFailureCount() > 0) {
+            log.warn("Repeatable migrations skipped because {} versioned migrations failed", report.getFailureCount());
+            return 0;
+        }
+        List<Migration> repeatables = knownRepeatables != null ? knownRepeatables
+                : migrationFileReader.loadRepeatableMigrations(settings);
+        if (repeatables.isEmpty()) {
+            return 0;
+        }
+        migrationFileReader.resolveChecksums(repeatables);
+        schemaManager.createRepeatableTable();
+        Map<String, Integer> appliedChecksums = schemaManager.loadRepeatableHistory();
+
+        int applied = 0;
+        for (Migration repeatable : repeatables) {
+            if (stopRequested) {
+                log.info("Migration run stopped on request before repeatable migration {}", repeatable.getDescription());
+                stopped = true;
+                break;
+            }
+            if (repeatable.getChecksum().equals(appliedChecksums.get(repeatable.getDescription()))) {
+                continue;
+            }
+            try {
+                report.addMigrationResult(applyMigration(repeatable, connectionManager));
+                applied++;
+            } catch (Exception e) {
+                reportMigrationFailure(report, repeatable, e);
+            }
+        }
+        log.info("Applied {} of {} repeatable migrations, the rest are unchanged", applied, repeatables.size());
+        return applied;
+    }
+
+    private static Migration coveredBaseline(List<Migration> migrations, SchemaHistory history) {
+        Migration baseline = migrations.stream().filter(Migration::isBaseline).findFirst().orElse(null);
+        if (baseline == null || history.size() == 0 || history.contains(baseline.getVersion())) {
+            return null;
+        }
+        if (history.getCurrentVersion() < baseline.getVersion()) {
+            throw new MigrationExecutionException("Database is at version " + history.getCurrentVersion()
+                    + ", below baseline " + baseline.getVersion() + "; apply the migrations up to the baseline first", null);
+        }
+        log.info("Baseline {} skipped, the database is already at version {}", baseline.getVersion(), history.getCurrentVersion());
+        return baseline;
+    }
+
+    private void processMigration(SchemaHistory history, MigrationReport report, Migration migration) {
+        try {
+            if (history.contains(migration.getVersion())) {
+                checkAppliedMigration(history, report, migration);
+                return;
+            }
+            report.addMigrationResult(applyMigration(migration, connectionManager));
+            history.put(migration.getVersion(), migration.getChecksum());
         } catch (Exception e) {
             reportMigrationFailure(report, migration, e);
         }
     }
 
+    private void applyInParallel(List<Migration> migrations, SchemaHistory history, MigrationReport report) {
+        for (Migration migration : migrations) {
+            if (history.contains(migration.getVersion())) {
+                checkAppliedMigration(history, report, migration);
+            }
+        }
+        ConnectionManager workerConnections = new ConnectionManager((ConnectionProvider) connectionManager::openConnection);
+        MigrationScheduler scheduler = new MigrationScheduler(settings.getParallelWidth(), () -> stopRequested);
+        stopped = scheduler.run(migrations, history, new MigrationScheduler.Callbacks() {
+
+            @Override
+            public List<Integer> dependencies(Migration migration) {
+                if (migration.getType() != MigrationType.SQL) {
+                    return null;
+                }
+                try (SqlStatementSplitter statements = migrationFileReader.openStatements(migration)) {
+                    return statements.getHeader().getDepends();
+                }
+            }
+
+            @Override
+            public MigrationResultRecords execute(Migration migration) throws IOException {
+                return applyMigration(migration, workerConnections);
+            }
+
+            @Override
+            public void completed(Migration migration, MigrationResultRecords result) {
+                report.addMigrationResult(result);
+                history.put(migration.getVersion(), migration.getChecksum());
+            }
+
+            @Override
+            public void failed(Migration migration, Exception e) {
+                reportMigrationFailure(report, migration, e);
+            }
+        });
+    }
+
+    private boolean isGroupMember(SchemaHistory history, Migration migration) {
+        if (settings.getGroupSize() == 1 || history.contains(migration.getVersion())
+                || migration.getType() == MigrationType.BACKFILL) {
+            return false;
+        }
+        if (migration.getType() == MigrationType.COPY) {
+            return true;
+        }
+        try (SqlStatementSplitter statements = migrationFileReader.openStatements(migration)) {
+            return statements.getHeader().isTransactional();
+        } catch (RuntimeException e) {
+            log.debug("Migration {} is executed on its own: {}", migration.getVersion(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void executeGroup(SchemaHistory history, MigrationReport report, List<Migration> group) {
+        List<Migration> remaining = new ArrayList<>(group);
+        group.clear();
+        int attempt = 0;
+        while (!remaining.isEmpty()) {
+            if (stopRequested) {
+                log.info("Migration run stopped on request before version {}", remaining.get(0).getVersion());
+                stopped = true;
+                return;
+            }
+            try {
+                List<PhaseRecorder> recorders = MigrationExecutor.executeGroup(remaining, migrationFileReader, connectionManager, settings);
+                for (int i = 0; i < recorders.size(); i++) {
+                    Migration migration = remaining.get(i);
+                    try (PhaseRecorder.Timer ignored = recorders.get(i).start(MigrationPhase.CHECKSUM)) {
+                        migrationFileReader.recordChecksum(migration);
+                    }
+                    report.addMigrationResult(recorders.get(i).fill(new MigrationResultRecords(migration.getVersion(), true,
+                            "Migration executed successfully in a group of " + recorders.size())));
+                    history.put(migration.getVersion(), migration.getChecksum());
+                }
+                remaining = new ArrayList<>(remaining.subList(recorders.size(), remaining.size()));
+                attempt = 0;
+            } catch (MigrationGroupException e) {
+                if (RetryBackoff.isLockTimeout(e) && ++attempt <= settings.getLockRetries()) {
+                    RetryBackoff.pause(settings, attempt);
+                    continue;
+                }
+                attempt = 0;
+                remaining = reportGroupFailure(report, remaining, e);
+            } catch (RuntimeException e) {
+                remaining.forEach(migration -> reportMigrationFailure(report, migration, e));
+                remaining = new ArrayList<>();
+            }
+        }
+    }
+
+    private List<Migration> reportGroupFailure(MigrationReport report, List<Migration> group, MigrationGroupException e) {
+        for (int i = 0; i < group.size(); i++) {
+            Migration migration = group.get(i);
+            if (migration.getVersion() == e.getFailedVersion()) {
+                reportMigrationFailure(report, migration, e);
+                return new ArrayList<>(group.subList(i + 1, group.size()));
+            }
+            report.addMigrationResult(migration.getVersion(), false, "Rolled back with its group: " + e.getMessage());
+        }
+        log.error("Migration group failed: {}", e.getMessage());
+        return new ArrayList<>();
+    }
+
     private void reportMigrationFailure(MigrationReport report, Migration migration, Exception e) {
-        report.addMigrationResult(migration.getVersion(), false, e.getMessage());
-        log.error("Migration failed for version {}: {}", migration.getVersion(), e.getMessage());
+        MigrationResultRecords result = new MigrationResultRecords(migration.getVersion(), false, e.getMessage());
+        if (e instanceof LockContentionException) {
+            result.setLockSamples(((LockContentionException) e).getSamples());
+            result.setMaxLockQueueDepth(((LockContentionException) e).getMaxQueueDepth());
+        }
+        if (migration.getType() == MigrationType.REPEATABLE) {
+            result.setRepeatable(migration.getDescription());
+            log.error("Repeatable migration {} failed: {}", migration.getDescription(), e.getMessage());
+        } else {
+            log.error("Migration failed for version {}: {}", migration.getVersion(), e.getMessage());
+        }
+        report.addMigrationResult(result);
     }
 
-    private void executeMigration(MigrationReport report, Migration migration) {
-        MigrationExecutor.executeMigration(migration, connectionManager);
-        report.addMigrationResult(migration.getVersion(), true, "Migration executed successfully");
+    private MigrationResultRecords applyMigration(Migration migration, ConnectionManager connectionManager) throws IOException {
+        PhaseRecorder recorder = new PhaseRecorder(migration.getVersion(), settings.getListeners());
+        executeMigration(migration, recorder, connectionManager);
+        try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.CHECKSUM)) {
+            migrationFileReader.recordChecksum(migration);
+        }
+        MigrationResultRecords result = recorder.fill(new MigrationResultRecords(migration.getVersion(), true, "Migration executed successfully"));
+        if (migration.getType() == MigrationType.REPEATABLE) {
+            result.setRepeatable(migration.getDescription());
+        }
+        return result;
     }
 
-    private boolean isMigrationAlreadyApplied(MigrationReport report, Migration migration) {
-        if (schemaManager.verifyMigrationChecksum(migration)) {
+    private void executeMigration(Migration migration, PhaseRecorder recorder, ConnectionManager connectionManager) throws IOException {
+        if (migration.getType() == MigrationType.BACKFILL) {
+            MigrationExecutor.executeBackfillMigration(migration, connectionManager, settings, recorder);
+        } else if (migration.getType() == MigrationType.COPY) {
+            try (CopyData copyData = migrationFileReader.openCopyData(migration)) {
+                MigrationExecutor.executeCopyMigration(migration, copyData, connectionManager, settings, recorder);
+            }
+        } else {
+            executeSqlMigration(migration, recorder, connectionManager);
+        }
+    }
+
+    private void executeSqlMigration(Migration migration, PhaseRecorder recorder, ConnectionManager connectionManager) {
+        MigrationHeader header = null;
+        for (int attempt = 1; ; attempt++) {
+            try (SqlStatementSplitter statements = migrationFileReader.openStatements(migration)) {
+                header = statements.getHeader();
+                MigrationExecutor.executeMigration(migration, statements, connectionManager, settings, recorder);
+                return;
+            } catch (LockTimeoutException e) {
+                if (header == null || attempt > RetryBackoff.maxRetries(header, settings)) {
+                    throw e;
+                }
+                try (PhaseRecorder.Timer ignored = recorder.start(MigrationPhase.LOCK_WAIT)) {
+                    RetryBackoff.pause(settings, attempt);
+                }
+            }
+        }
+    }
+
+    private void checkAppliedMigration(SchemaHistory history, MigrationReport report, Migration migration) {
+        if (!settings.isValidateApplied() || migration.isBaseline()) {
+            report.addMigrationResult(migration.getVersion(), true, "Migration already applied");
+            return;
+        }
+        migrationFileReader.calculateCheckSum(migration);
+        if (history.isApplied(migration)) {
             log.info("Migration already applied: {}", migration.getVersion());
             report.addMigrationResult(migration.getVersion(), true, "Migration already applied");
-            return true;
+        } else {
+            log.error("Checksum mismatch for applied migration {}", migration.getVersion());
+            report.addMigrationResult(migration.getVersion(), false, "Checksum mismatch: applied migration was modified");
         }
-        return false;
     }
 }
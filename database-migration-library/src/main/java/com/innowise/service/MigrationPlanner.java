@@ -0,0 +1,231 @@
+package com.innowise.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.constants.SchemaVersionQueries;
+import com.innowise.exception.JsonReportGenerationException;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.model.LockMode;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationHeader;
+import com.innowise.model.MigrationPlan;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.model.PlannedMigration;
+import com.innowise.model.PlannedStatement;
+import com.innowise.model.SchemaHistory;
+import com.innowise.parser.CopyData;
+import com.innowise.parser.SqlStatementSplitter;
+import com.innowise.parser.StatementClassifier;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The MigrationPlanner class reports what the pending migrations would do without applying them
+ * Pending migrations are determined from the {@link SchemaManager} history in the same way as
+ * {@link MigrationManager} does. Every statement is classified by {@link StatementClassifier}; DML statements
+ * are estimated with {@code EXPLAIN}, DDL statements with the planner statistics of their table
+ * All database work happens in one transaction that is rolled back, with short lock and statement timeouts
+ * The plan is written as JSON to {@link MigrationSettings#getPlanFile()}
+ */
+
+@Slf4j
+public class MigrationPlanner {
+
+    private static final ObjectMapper PLAN_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final Set<String> EXPLAINED_KINDS = Set.of("INSERT", "UPDATE", "DELETE", "SELECT");
+    private static final Pattern COPY_TARGET = Pattern.compile("COPY\\s+((?:\"[^\"]+\"|[\\w$]+)(?:\\.(?:\"[^\"]+\"|[\\w$]+))?).*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final int MAX_SQL_LENGTH = 500;
+
+    private final ConnectionManager connectionManager;
+    private final SchemaManager schemaManager;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+
+    public MigrationPlanner(ConnectionManager connectionManager, SchemaManager schemaManager,
+                            MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.connectionManager = connectionManager;
+        this.schemaManager = schemaManager;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+    }
+
+    /**
+     * Plans the pending migrations and writes the plan file
+     * @return the plan
+     * @throws MigrationExecutionException if the database cannot be inspected
+     * @throws JsonReportGenerationException if the plan file cannot be written
+     */
+    public MigrationPlan plan() {
+        List<Migration> migrations = migrationFileReader.loadMigrations(settings);
+        SchemaHistory history = schemaManager.hasSchemaVersionTable() ? schemaManager.loadHistory() : new SchemaHistory(0);
+        int currentVersion = history.getCurrentVersion();
+
+        List<PlannedMigration> planned = new ArrayList<>();
+        Set<String> createdTables = new HashSet<>();
+        try (Connection connection = connectionManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL lock_timeout = '1s'");
+                    statement.execute("SET LOCAL statement_timeout = '10s'");
+                }
+                for (Migration migration : migrations) {
+                    if (isPending(migration, history, currentVersion)) {
+                        planned.add(planMigration(migration, connection, createdTables));
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | IOException e) {
+            throw new MigrationExecutionException("Failed to plan pending migrations", e);
+        }
+
+        LockMode lockMode = LockMode.NONE;
+        boolean rewrite = false;
+        for (PlannedMigration migration : planned) {
+            lockMode = lockMode.max(migration.getLockMode());
+            rewrite |= migration.isRewrite();
+        }
+        MigrationPlan plan = new MigrationPlan(currentVersion, lockMode, rewrite, planned);
+        writePlan(plan);
+        log.info("Planned {} pending migrations, strongest lock: {}, table rewrite: {}", planned.size(), lockMode, rewrite);
+        return plan;
+    }
+
+    private boolean isPending(Migration migration, SchemaHistory history, int currentVersion) {
+        if (history.contains(migration.getVersion()) || migration.isBaseline() && history.size() > 0) {
+            return false;
+        }
+        return settings.isOutOfOrder() || settings.getParallelWidth() > 1 || migration.getVersion() > currentVersion;
+    }
+
+    private PlannedMigration planMigration(Migration migration, Connection connection, Set<String> createdTables)
+            throws SQLException, IOException {
+        List<PlannedStatement> statements = new ArrayList<>();
+        boolean transactional = true;
+        if (migration.getType() == MigrationType.BACKFILL) {
+            statements.add(new PlannedStatement(migration.getDescription(), "BACKFILL", null, LockMode.ROW_EXCLUSIVE, false, true));
+        } else if (migration.getType() == MigrationType.COPY) {
+            try (CopyData copyData = migrationFileReader.openCopyData(migration)) {
+                Matcher matcher = COPY_TARGET.matcher(copyData.getCopySql().trim());
+                statements.add(new PlannedStatement(copyData.getCopySql(), "COPY", matcher.matches() ? matcher.group(1) : null,
+                        LockMode.ROW_EXCLUSIVE, false, false));
+            }
+        } else {
+            try (SqlStatementSplitter splitter = migrationFileReader.openStatements(migration)) {
+                MigrationHeader header = splitter.getHeader();
+                transactional = header.isTransactional();
+                String sql;
+                while ((sql = splitter.nextStatement()) != null) {
+                    PlannedStatement statement = StatementClassifier.classify(sql);
+                    statement.setSql(truncate(sql));
+                    estimate(statement, sql, connection, createdTables);
+                    statements.add(statement);
+                }
+            }
+        }
+
+        LockMode lockMode = LockMode.NONE;
+        boolean rewrite = false;
+        long estimatedRows = 0;
+        for (PlannedStatement statement : statements) {
+            lockMode = lockMode.max(statement.getLockMode());
+            rewrite |= statement.isRewrite();
+            estimatedRows = Math.max(estimatedRows, statement.getEstimatedRows());
+        }
+        return new PlannedMigration(migration.getVersion(), migration.getDescription(), migration.getType(),
+                transactional, lockMode, rewrite, estimatedRows, statements);
+    }
+
+    private void estimate(PlannedStatement statement, String sql, Connection connection, Set<String> createdTables)
+            throws SQLException {
+        String table = statement.getTable() != null ? statement.getTable().toLowerCase(Locale.ROOT) : null;
+        if ("CREATE TABLE".equals(statement.getKind())) {
+            createdTables.add(table);
+            return;
+        }
+        if (table != null && createdTables.contains(table)) {
+            statement.setEstimatedRows(0);
+            statement.setTableBytes(0);
+            statement.setNote("Table is created by a pending migration");
+            return;
+        }
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            if (table != null && statement.getLockMode() != LockMode.NONE) {
+                readTableStatistics(statement, connection);
+            }
+            if (EXPLAINED_KINDS.contains(statement.getKind())) {
+                statement.setEstimatedRows(explainRows(sql, connection));
+            }
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            connection.rollback(savepoint);
+            statement.setNote("Not estimated: " + e.getMessage());
+        }
+    }
+
+    private void readTableStatistics(PlannedStatement statement, Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.SELECT_TABLE_STATISTICS)) {
+            preparedStatement.setString(1, statement.getTable());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    statement.setEstimatedRows(resultSet.getLong(1));
+                    statement.setTableBytes(resultSet.getLong(2));
+                } else {
+                    statement.setNote("Table does not exist");
+                }
+            }
+        }
+    }
+
+    private long explainRows(String sql, Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN (FORMAT JSON) " + sql)) {
+            resultSet.next();
+            JsonNode plan = PLAN_MAPPER.readTree(resultSet.getString(1)).path(0).path("Plan");
+            if ("ModifyTable".equals(plan.path("Node Type").asText()) && plan.path("Plans").size() > 0) {
+                plan = plan.path("Plans").path(0);
+            }
+            return plan.path("Plan Rows").asLong(-1);
+        } catch (IOException e) {
+            throw new SQLException("Unreadable EXPLAIN output", e);
+        }
+    }
+
+    private void writePlan(MigrationPlan plan) {
+        try {
+            PLAN_MAPPER.writeValue(new File(settings.getPlanFile()), plan);
+            log.info("Migration plan generated at: {}", settings.getPlanFile());
+        } catch (IOException e) {
+            log.error("Failed to generate migration plan: {}", e.getMessage());
+            throw new JsonReportGenerationException("Error generating migration plan", e);
+        }
+    }
+
+    private static String truncate(String sql) {
+        String trimmed = sql.trim();
+        return trimmed.length() <= MAX_SQL_LENGTH ? trimmed : trimmed.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
@@ -1,46 +1,149 @@
 package com.innowise.service;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.innowise.exception.JsonReportGenerationException;
+import com.innowise.model.DdlFinding;
 import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.ReportFormat;
+import com.innowise.monitoring.MigrationListener;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * The Migration class is responsible for collecting migration results
- * and generating a JSON report of these results
+ * The MigrationReport class is responsible for writing migration results to a JSON report
+ * Every result is written and flushed as soon as it is added, so the report survives a run
+ * that dies halfway and memory use does not depend on the number of migrations
+ * In {@link ReportFormat#JSON} the results form one array that is closed by {@link #close()},
+ * in {@link ReportFormat#NDJSON} every result is written on its own line
+ * DDL analysis findings added with {@link #addFindings(List)} are written with the result of their migration
  */
 
 @Slf4j
-public class MigrationReport {
+public class MigrationReport implements AutoCloseable {
 
-    private final List<MigrationResultRecords> results = new ArrayList<>();
+    private static final ObjectWriter RESULT_WRITER = new ObjectMapper().writerFor(MigrationResultRecords.class);
+
+    private final String filePath;
+    private final ReportFormat format;
+    private final JsonGenerator generator;
+    private final List<MigrationListener> listeners;
+    private final Map<Integer, List<DdlFinding>> findings = new HashMap<>();
+    private int failureCount;
+
+    /**
+     * Creates the report file and starts writing the report
+     * @param filePath the path of the file where the JSON report will be written
+     * @param format the output format
+     * @throws JsonReportGenerationException if the report file cannot be created
+     */
+    public MigrationReport(String filePath, ReportFormat format) {
+        this(filePath, format, Collections.emptyList());
+    }
+
+    /**
+     * Creates the report file and starts writing the report
+     * Every result added to the report is also passed to {@link MigrationListener#migrationCompleted}
+     * @param filePath the path of the file where the JSON report will be written
+     * @param format the output format
+     * @param listeners the listeners notified of every result
+     * @throws JsonReportGenerationException if the report file cannot be created
+     */
+    public MigrationReport(String filePath, ReportFormat format, List<MigrationListener> listeners) {
+        this.filePath = filePath;
+        this.format = format;
+        this.listeners = listeners;
+        try {
+            generator = RESULT_WRITER.getFactory().createGenerator(new File(filePath), JsonEncoding.UTF8);
+            if (format == ReportFormat.NDJSON) {
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            } else {
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartArray();
+                generator.flush();
+            }
+        } catch (IOException e) {
+            log.error("Failed to create JSON report at {}: {}", filePath, e.getMessage());
+            throw new JsonReportGenerationException("Error creating JSON report " + filePath, e);
+        }
+    }
 
     /**
      * Adds a migration result to the report
      * @param version the version number of the migration
      * @param isSuccess indicates whether the migration was successful
      * @param message a message providing additional details about the migration result
+     * @throws JsonReportGenerationException if the result cannot be written
      */
     public void addMigrationResult(int version, boolean isSuccess, String message) {
-        results.add(new MigrationResultRecords(version, isSuccess, message));
+        addMigrationResult(new MigrationResultRecords(version, isSuccess, message));
     }
 
     /**
-     * Generates a JSON report of the migration results and writes it to a specified file
-     * @param filePath the path of the file where the JSON report will be written
-     * @throws JsonReportGenerationException if there is an error generating the JSON report
+     * Adds a migration result with timings to the report
+     * @param result the migration result
+     * @throws JsonReportGenerationException if the result cannot be written
+     */
+    public void addMigrationResult(MigrationResultRecords result) {
+        if (result.getFindings() == null && result.getRepeatable() == null) {
+            result.setFindings(findings.get(result.getVersion()));
+        }
+        if (!result.isSuccess()) {
+            failureCount++;
+        }
+        try {
+            RESULT_WRITER.writeValue(generator, result);
+            if (format == ReportFormat.NDJSON) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        } catch (IOException e) {
+            log.error("Failed to write result of migration {} to the JSON report: {}", result.getVersion(), e.getMessage());
+            throw new JsonReportGenerationException("Error writing JSON report " + filePath, e);
+        }
+        listeners.forEach(listener -> listener.migrationCompleted(result));
+    }
+
+    /**
+     * Adds DDL analysis findings to be written with the results of their migrations
+     * Must be called before the results are added
+     * @param analysisFindings the findings of the pending migrations
+     */
+    public void addFindings(List<DdlFinding> analysisFindings) {
+        for (DdlFinding finding : analysisFindings) {
+            findings.computeIfAbsent(finding.getVersion(), version -> new ArrayList<>()).add(finding);
+        }
+    }
+
+    /**
+     * Returns the number of failed results added so far
+     * @return the number of failures
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Finishes the report; the JSON array is closed even if the run failed
+     * @throws JsonReportGenerationException if the report cannot be completed
      */
-    public void generateJsonReport(String filePath) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    @Override
+    public void close() {
         try {
-            objectMapper.writeValue(new File(filePath), results);
+            if (generator.getOutputContext().inArray()) {
+                generator.writeEndArray();
+            }
+            generator.close();
             log.info("JSON report successfully generated at: {}", filePath);
         } catch (IOException e) {
             log.error("Failed to generate JSON report: {}", e.getMessage());
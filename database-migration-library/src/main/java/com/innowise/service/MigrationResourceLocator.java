@@ -0,0 +1,84 @@
+package com.innowise.service;
+
+import com.innowise.exception.SqLFileReadException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MigrationResourceLocator class resolves a classpath resource folder to a {@link Path}
+ * Folders inside a jar are opened through the zip file system, so migrations packaged in the
+ * application jar are listed and streamed the same way as migrations on disk
+ * Jar file systems stay open for the life of the JVM, as the migration paths are read after the lookup
+ */
+
+@Slf4j
+public class MigrationResourceLocator {
+
+    private static final String JAR_ENTRY_SEPARATOR = "!/";
+    private static final Map<URI, FileSystem> JAR_FILE_SYSTEMS = new ConcurrentHashMap<>();
+
+    private MigrationResourceLocator() {
+    }
+
+    /**
+     * Resolves a resource folder visible to the class loader
+     * @param classLoader the class loader to look the resource up with
+     * @param resource the resource folder, e.g. {@code migrations}
+     * @return the path of the folder on disk or inside a jar
+     * @throws SqLFileReadException if the resource does not exist or cannot be opened
+     */
+    public static Path locate(ClassLoader classLoader, String resource) {
+        URL url = classLoader.getResource(resource);
+        if (url == null) {
+            throw new SqLFileReadException("Migrations resource not found on the classpath: " + resource, null);
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                return locateInJar(uri);
+            }
+            return Path.of(uri);
+        } catch (URISyntaxException | IOException | RuntimeException e) {
+            log.error("Error opening migrations resource " + url, e);
+            throw new SqLFileReadException("Error opening migrations resource " + url, e);
+        }
+    }
+
+    private static Path locateInJar(URI uri) throws IOException {
+        String location = uri.toString();
+        URI jarUri = URI.create(location.substring(0, location.indexOf(JAR_ENTRY_SEPARATOR)));
+        String decodedLocation = uri.getSchemeSpecificPart();
+        String entry = decodedLocation.substring(decodedLocation.indexOf(JAR_ENTRY_SEPARATOR) + 1);
+        FileSystem fileSystem = JAR_FILE_SYSTEMS.get(jarUri);
+        if (fileSystem == null) {
+            synchronized (JAR_FILE_SYSTEMS) {
+                fileSystem = JAR_FILE_SYSTEMS.get(jarUri);
+                if (fileSystem == null) {
+                    fileSystem = openJar(jarUri);
+                    JAR_FILE_SYSTEMS.put(jarUri, fileSystem);
+                }
+            }
+        }
+        log.info("Reading migrations from {} inside {}", entry, jarUri);
+        return fileSystem.getPath(entry);
+    }
+
+    private static FileSystem openJar(URI jarUri) throws IOException {
+        try {
+            return FileSystems.newFileSystem(jarUri, Collections.emptyMap());
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(jarUri);
+        }
+    }
+}
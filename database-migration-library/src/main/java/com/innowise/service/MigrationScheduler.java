@@ -0,0 +1,237 @@
+package com.innowise.service;
+
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.SchemaHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The MigrationScheduler class runs pending migrations in parallel in the order given by their dependencies
+ * A migration depends on the previous version unless its header declares {@code depends}; dependencies that are
+ * already applied are satisfied. Ready migrations are started lowest version first, at most {@code width} at a time
+ * Migrations are executed on worker threads, while results are handed to the {@link Callbacks} on the calling
+ * thread, so the report and the history are never touched concurrently. Migrations that depend on a failed one,
+ * on an unknown version or on each other in a cycle are skipped
+ */
+
+@Slf4j
+public class MigrationScheduler {
+
+    private final int width;
+    private final BooleanSupplier stopRequested;
+
+    /**
+     * Creates a scheduler
+     * @param width the maximum number of migrations running at the same time
+     * @param stopRequested checked before every migration is started; running ones are always completed
+     */
+    public MigrationScheduler(int width, BooleanSupplier stopRequested) {
+        this.width = width;
+        this.stopRequested = stopRequested;
+    }
+
+    /**
+     * Runs every migration that is not in the history yet
+     * @param migrations all migrations sorted by version
+     * @param history the applied versions
+     * @param callbacks the execution and result handlers
+     * @return true if the run was stopped on request before all migrations were started
+     */
+    public boolean run(List<Migration> migrations, SchemaHistory history, Callbacks callbacks) {
+        Map<Integer, Node> nodes = new LinkedHashMap<>();
+        Migration previous = null;
+        for (Migration migration : migrations) {
+            if (!history.contains(migration.getVersion())) {
+                nodes.put(migration.getVersion(), new Node(migration, previous));
+            }
+            previous = migration;
+        }
+
+        for (Node node : nodes.values()) {
+            linkDependencies(node, nodes, history, callbacks);
+        }
+        PriorityQueue<Node> ready = new PriorityQueue<>((a, b) -> Integer.compare(a.migration.getVersion(), b.migration.getVersion()));
+        for (Node node : nodes.values()) {
+            if (node.state != State.WAITING) {
+                continue;
+            }
+            if (node.error != null) {
+                fail(node, node.error, callbacks);
+            } else if (node.unknownDependency != null) {
+                skip(node, "depends on unknown version " + node.unknownDependency, callbacks);
+            } else if (node.pendingDependencies == 0) {
+                ready.add(node);
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(width,
+                task -> new Thread(task, "migration-worker-" + threadNumber.incrementAndGet()));
+        CompletionService<MigrationResultRecords> completions = new ExecutorCompletionService<>(executor);
+        Map<Future<MigrationResultRecords>, Node> running = new HashMap<>();
+        boolean stopped = false;
+        try {
+            while (true) {
+                while (running.size() < width && !ready.isEmpty() && !(stopped = stopRequested.getAsBoolean())) {
+                    Node node = ready.poll();
+                    node.state = State.RUNNING;
+                    running.put(completions.submit(() -> callbacks.execute(node.migration)), node);
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<MigrationResultRecords> completed = completions.take();
+                complete(running.remove(completed), completed, ready, callbacks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MigrationExecutionException("Interrupted while waiting for parallel migrations", e);
+        } finally {
+            executor.shutdown();
+        }
+
+        if (stopped) {
+            log.info("Parallel migration run stopped on request");
+            return true;
+        }
+        for (Node node : nodes.values()) {
+            if (node.state == State.WAITING) {
+                skip(node, "dependency cycle", callbacks);
+            }
+        }
+        return false;
+    }
+
+    private void linkDependencies(Node node, Map<Integer, Node> nodes, SchemaHistory history, Callbacks callbacks) {
+        List<Integer> dependencies;
+        try {
+            dependencies = callbacks.dependencies(node.migration);
+        } catch (RuntimeException e) {
+            node.error = e;
+            return;
+        }
+        if (dependencies == null) {
+            dependencies = node.previousVersion != null ? List.of(node.previousVersion) : List.of();
+        }
+        for (int version : dependencies) {
+            Node dependency = nodes.get(version);
+            if (dependency != null) {
+                dependency.dependents.add(node);
+                node.pendingDependencies++;
+            } else if (!history.contains(version)) {
+                node.unknownDependency = version;
+            }
+        }
+    }
+
+    private void complete(Node node, Future<MigrationResultRecords> completed, PriorityQueue<Node> ready,
+                          Callbacks callbacks) throws InterruptedException {
+        MigrationResultRecords result;
+        try {
+            result = completed.get();
+        } catch (ExecutionException e) {
+            Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            fail(node, cause, callbacks);
+            return;
+        }
+        node.state = State.DONE;
+        callbacks.completed(node.migration, result);
+        for (Node dependent : node.dependents) {
+            if (--dependent.pendingDependencies == 0 && dependent.state == State.WAITING) {
+                ready.add(dependent);
+            }
+        }
+    }
+
+    private void fail(Node node, Exception e, Callbacks callbacks) {
+        node.state = State.FAILED;
+        callbacks.failed(node.migration, e);
+        skipDependents(node, "dependency " + node.migration.getVersion() + " failed", callbacks);
+    }
+
+    private void skip(Node node, String reason, Callbacks callbacks) {
+        node.state = State.FAILED;
+        callbacks.failed(node.migration, new MigrationExecutionException("Migration with version "
+                + node.migration.getVersion() + " skipped: " + reason, null));
+        skipDependents(node, reason, callbacks);
+    }
+
+    private void skipDependents(Node node, String reason, Callbacks callbacks) {
+        for (Node dependent : node.dependents) {
+            if (dependent.state == State.WAITING) {
+                skip(dependent, reason, callbacks);
+            }
+        }
+    }
+
+    /**
+     * The work the scheduler delegates to the caller
+     */
+    public interface Callbacks {
+
+        /**
+         * Returns the dependencies declared by a migration
+         * @param migration the pending migration
+         * @return the versions it depends on, or {@code null} to depend on the previous version
+         */
+        List<Integer> dependencies(Migration migration);
+
+        /**
+         * Executes a migration on a worker thread, on its own connection
+         * @param migration the migration to execute
+         * @return the report entry of the applied migration
+         * @throws Exception if the migration fails
+         */
+        MigrationResultRecords execute(Migration migration) throws Exception;
+
+        /**
+         * Called on the scheduling thread after a migration has been applied
+         * @param migration the applied migration
+         * @param result the report entry returned by {@link #execute(Migration)}
+         */
+        void completed(Migration migration, MigrationResultRecords result);
+
+        /**
+         * Called on the scheduling thread for a migration that failed or was skipped
+         * @param migration the migration
+         * @param e the failure
+         */
+        void failed(Migration migration, Exception e);
+    }
+
+    private enum State {
+        WAITING, RUNNING, DONE, FAILED
+    }
+
+    private static final class Node {
+
+        private final Migration migration;
+        private final Integer previousVersion;
+        private final List<Node> dependents = new ArrayList<>();
+        private int pendingDependencies;
+        private Integer unknownDependency;
+        private Exception error;
+        private State state = State.WAITING;
+
+        private Node(Migration migration, Migration previous) {
+            this.migration = migration;
+            this.previousVersion = previous != null ? previous.getVersion() : null;
+        }
+    }
+}
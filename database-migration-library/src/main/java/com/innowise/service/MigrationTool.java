@@ -1,21 +1,279 @@
 package com.innowise.service;
 
 import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionPool;
 import com.innowise.constants.DatabaseConfig;
+import com.innowise.constants.MigrationConfig;
+import com.innowise.exception.MigrationAnalysisException;
+import com.innowise.exception.PropertiesUtilsException;
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.lock.MigrationLock;
+import com.innowise.lock.NoOpMigrationLock;
+import com.innowise.model.DdlFinding;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationPlan;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationTarget;
+import com.innowise.model.ReportFormat;
+import com.innowise.model.RuleSeverity;
+import com.innowise.model.TargetRunResult;
+import com.innowise.monitoring.MigrationListener;
 import com.innowise.properties.PropertiesUtils;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public class MigrationTool {
 
     public static void runMigrations() {
         PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        String schemas = propertiesUtils.getProperty(MigrationConfig.MIGRATION_TARGET_SCHEMAS);
+        if (schemas != null && !schemas.isBlank()) {
+            runMigrations(Arrays.stream(schemas.split(","))
+                    .map(String::trim)
+                    .filter(schema -> !schema.isEmpty())
+                    .map(MigrationTarget::ofSchema)
+                    .collect(Collectors.toList()));
+            return;
+        }
+        try (ConnectionManager connectionManager = createConnectionManager(propertiesUtils)) {
+            MigrationFileReader migrationFileReader = new MigrationFileReader(
+                    propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR));
+            SchemaManager schemaManager = new SchemaManager(connectionManager);
+            MigrationSettings settings = loadSettings(propertiesUtils);
+            if (settings.isCoordinationEnabled()) {
+                new MigrationCoordinator(connectionManager, schemaManager, migrationFileReader, settings).run();
+                return;
+            }
+            MigrationManager migrationManager = new MigrationManager(connectionManager, schemaManager,
+                    migrationFileReader, settings);
+            migrationManager.applyMigrations();
+        }
+    }
+
+    /**
+     * Starts applying the migrations in the background, see {@link AsyncMigrationRun}
+     * The connections are closed when the run has finished
+     * @return the running migration
+     */
+    public static AsyncMigrationRun startMigrations() {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        ConnectionManager connectionManager = createConnectionManager(propertiesUtils);
+        MigrationFileReader migrationFileReader = new MigrationFileReader(
+                propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR));
+        AsyncMigrationRun run = AsyncMigrationRun.start(connectionManager, new SchemaManager(connectionManager),
+                migrationFileReader, loadSettings(propertiesUtils));
+        run.getResult().whenComplete((result, error) -> connectionManager.close());
+        return run;
+    }
+
+    private static ConnectionManager createConnectionManager(PropertiesUtils propertiesUtils) {
         String url = propertiesUtils.getProperty(DatabaseConfig.DB_URL);
         String user = propertiesUtils.getProperty(DatabaseConfig.DB_USERNAME);
         String password = propertiesUtils.getProperty(DatabaseConfig.DB_PASSWORD);
 
-        ConnectionManager connectionManager = new ConnectionManager(url, user, password);
-        MigrationFileReader migrationFileReader = new MigrationFileReader();
-        SchemaManager schemaManager = new SchemaManager(connectionManager);
-        MigrationManager migrationManager = new MigrationManager(connectionManager, schemaManager, migrationFileReader);
-        migrationManager.applyMigrations();
+        ConnectionPool connectionPool = new ConnectionPool(url, user, password,
+                propertiesUtils.getIntProperty(DatabaseConfig.DB_POOL_SIZE, ConnectionManager.DEFAULT_POOL_SIZE),
+                propertiesUtils.getIntProperty(DatabaseConfig.DB_POOL_VALIDATION_TIMEOUT, ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS),
+                propertiesUtils.getIntProperty(DatabaseConfig.DB_POOL_BORROW_TIMEOUT, (int) ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS));
+        return new ConnectionManager(connectionPool);
+    }
+
+    /**
+     * Applies the migrations and then keeps applying files added to the migrations directory, see {@link MigrationWatcher}
+     * Blocks until the thread is interrupted; meant for the development loop against a local database
+     */
+    public static void watchMigrations() {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        try (ConnectionManager connectionManager = createConnectionManager(propertiesUtils)) {
+            new MigrationWatcher(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR)),
+                    loadSettings(propertiesUtils)).run();
+        }
+    }
+
+    /**
+     * Applies the migrations to several databases or tenant schemas, see {@link MultiTargetMigrationRunner}
+     * @param targets the targets to migrate
+     * @return the report section of every target
+     */
+    public static List<TargetRunResult> runMigrations(List<MigrationTarget> targets) {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        MultiTargetMigrationRunner runner = new MultiTargetMigrationRunner(
+                propertiesUtils.getProperty(DatabaseConfig.DB_URL),
+                propertiesUtils.getProperty(DatabaseConfig.DB_USERNAME),
+                propertiesUtils.getProperty(DatabaseConfig.DB_PASSWORD),
+                new MigrationFileReader(propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR)),
+                loadSettings(propertiesUtils));
+        return runner.run(targets);
+    }
+
+    /**
+     * Reports what the pending migrations would do without applying them, see {@link MigrationPlanner}
+     * @return the plan, also written to the plan file
+     */
+    public static MigrationPlan planMigrations() {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        try (ConnectionManager connectionManager = createConnectionManager(propertiesUtils)) {
+            MigrationPlanner planner = new MigrationPlanner(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR)),
+                    loadSettings(propertiesUtils));
+            return planner.plan();
+        }
+    }
+
+    /**
+     * Checks all migration files against the DDL rules without connecting to the database, see {@link MigrationAnalyzer}
+     * Meant for CI, before the migrations reach a database
+     * @return the findings
+     * @throws MigrationAnalysisException if a finding has the ERROR severity
+     */
+    public static List<DdlFinding> analyzeMigrations() {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        MigrationSettings settings = loadSettings(propertiesUtils);
+        MigrationFileReader migrationFileReader = new MigrationFileReader(
+                propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR));
+        List<Migration> migrations = new ArrayList<>(migrationFileReader.loadMigrations(settings));
+        migrations.addAll(migrationFileReader.loadRepeatableMigrations(settings));
+        List<DdlFinding> findings = new MigrationAnalyzer(migrationFileReader, settings).analyze(migrations);
+        if (MigrationAnalyzer.hasErrors(findings)) {
+            throw new MigrationAnalysisException("DDL analysis found errors in "
+                    + findings.stream().filter(finding -> finding.getSeverity() == RuleSeverity.ERROR)
+                    .map(DdlFinding::getFile).distinct().collect(Collectors.toList()), null);
+        }
+        return findings;
+    }
+
+    /**
+     * Creates a migrated database from a cached template, see {@link TemplateDatabaseProvisioner}
+     * @param databaseName the name of the new database
+     * @return the URL of the new database
+     */
+    public static String provisionDatabase(String databaseName) {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        TemplateDatabaseProvisioner provisioner = new TemplateDatabaseProvisioner(
+                propertiesUtils.getProperty(DatabaseConfig.DB_URL),
+                propertiesUtils.getProperty(DatabaseConfig.DB_USERNAME),
+                propertiesUtils.getProperty(DatabaseConfig.DB_PASSWORD),
+                new MigrationFileReader(propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR)),
+                loadSettings(propertiesUtils));
+        return provisioner.provision(databaseName);
+    }
+
+    /**
+     * Squashes the migrations up to a version into a baseline script, see {@link BaselineGenerator}
+     * @param version the last version the baseline covers
+     * @return the baseline script
+     */
+    public static Path createBaseline(int version) {
+        PropertiesUtils propertiesUtils = PropertiesUtils.getInstance();
+        BaselineGenerator generator = new BaselineGenerator(
+                propertiesUtils.getProperty(DatabaseConfig.DB_URL),
+                propertiesUtils.getProperty(DatabaseConfig.DB_USERNAME),
+                propertiesUtils.getProperty(DatabaseConfig.DB_PASSWORD),
+                new MigrationFileReader(propertiesUtils.getProperty(MigrationConfig.MIGRATION_CHECKSUM_CACHE_DIR)),
+                loadSettings(propertiesUtils));
+        return generator.squash(version);
+    }
+
+    private static MigrationSettings loadSettings(PropertiesUtils propertiesUtils) {
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(propertiesUtils.getProperty(MigrationConfig.MIGRATION_DIR));
+        settings.setBatchSize(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_BATCH_SIZE, MigrationSettings.DEFAULT_BATCH_SIZE));
+        settings.setValidateApplied(propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_VALIDATE_APPLIED, false));
+        settings.setMigrationLock(loadMigrationLock(propertiesUtils));
+        settings.setBackfillChunkSize(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_BACKFILL_CHUNK_SIZE, MigrationSettings.DEFAULT_BACKFILL_CHUNK_SIZE));
+        settings.setBackfillMaxRowsPerSecond(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_BACKFILL_MAX_ROWS_PER_SECOND, 0));
+        settings.setBackfillPauseMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_BACKFILL_PAUSE, 0));
+        settings.setLockTimeout(propertiesUtils.getProperty(MigrationConfig.MIGRATION_LOCK_TIMEOUT_PER_MIGRATION));
+        settings.setStatementTimeout(propertiesUtils.getProperty(MigrationConfig.MIGRATION_STATEMENT_TIMEOUT));
+        settings.setLockRetries(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_LOCK_RETRIES, MigrationSettings.DEFAULT_LOCK_RETRIES));
+        settings.setRetryInitialBackoffMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_RETRY_INITIAL_BACKOFF, MigrationSettings.DEFAULT_RETRY_INITIAL_BACKOFF_MILLIS));
+        settings.setRetryMaxBackoffMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_RETRY_MAX_BACKOFF, MigrationSettings.DEFAULT_RETRY_MAX_BACKOFF_MILLIS));
+        String reportFile = propertiesUtils.getProperty(MigrationConfig.MIGRATION_REPORT_FILE);
+        if (reportFile != null && !reportFile.isBlank()) {
+            settings.setReportFile(reportFile.trim());
+        }
+        String reportFormat = propertiesUtils.getProperty(MigrationConfig.MIGRATION_REPORT_FORMAT);
+        if (reportFormat != null && !reportFormat.isBlank()) {
+            settings.setReportFormat(ReportFormat.valueOf(reportFormat.trim().toUpperCase(Locale.ROOT)));
+        }
+        settings.setGroupSize(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_GROUP_SIZE, MigrationSettings.DEFAULT_GROUP_SIZE));
+        settings.setGroupMaxMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_GROUP_MAX_TIME, 0));
+        settings.setTargetConcurrency(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_TARGET_CONCURRENCY, MigrationSettings.DEFAULT_TARGET_CONCURRENCY));
+        settings.setParallelWidth(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_PARALLEL_WIDTH, MigrationSettings.DEFAULT_PARALLEL_WIDTH));
+        settings.setOutOfOrder(propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_OUT_OF_ORDER, false));
+        settings.setTemplateMaxCount(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_TEMPLATE_MAX_COUNT, MigrationSettings.DEFAULT_TEMPLATE_MAX_COUNT));
+        settings.setLockWatchdogEnabled(propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_LOCK_WATCHDOG_ENABLED, false));
+        settings.setLockWatchdogMaxWaiting(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_LOCK_WATCHDOG_MAX_WAITING, MigrationSettings.DEFAULT_LOCK_WATCHDOG_MAX_WAITING));
+        settings.setLockWatchdogMaxWaitMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_LOCK_WATCHDOG_MAX_WAIT, MigrationSettings.DEFAULT_LOCK_WATCHDOG_MAX_WAIT_MILLIS));
+        settings.setLockWatchdogSampleMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_LOCK_WATCHDOG_SAMPLE, MigrationSettings.DEFAULT_LOCK_WATCHDOG_SAMPLE_MILLIS));
+        settings.setCoordinationEnabled(propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_COORDINATION_ENABLED, false));
+        settings.setCoordinationPollMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_COORDINATION_POLL, MigrationSettings.DEFAULT_COORDINATION_POLL_MILLIS));
+        settings.setCoordinationTimeoutMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_COORDINATION_TIMEOUT, MigrationSettings.DEFAULT_COORDINATION_TIMEOUT_MILLIS));
+        settings.setWatchDebounceMillis(propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_WATCH_DEBOUNCE, MigrationSettings.DEFAULT_WATCH_DEBOUNCE_MILLIS));
+        settings.setAnalysisEnabled(propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_ANALYSIS_ENABLED, true));
+        String severities = propertiesUtils.getProperty(MigrationConfig.MIGRATION_ANALYSIS_SEVERITIES);
+        if (severities != null && !severities.isBlank()) {
+            settings.setRuleSeverities(parseRuleSeverities(severities));
+        }
+        String planFile = propertiesUtils.getProperty(MigrationConfig.MIGRATION_PLAN_FILE);
+        if (planFile != null && !planFile.isBlank()) {
+            settings.setPlanFile(planFile.trim());
+        }
+        ServiceLoader.load(MigrationListener.class).forEach(settings.getListeners()::add);
+        return settings;
+    }
+
+    /**
+     * Parses the {@code rule-id:severity} entries of {@link MigrationConfig#MIGRATION_ANALYSIS_SEVERITIES}
+     * @param severities the comma-separated entries
+     * @return the severity of every listed rule
+     * @throws PropertiesUtilsException if an entry is malformed or names an unknown rule or severity
+     */
+    static Map<String, RuleSeverity> parseRuleSeverities(String severities) {
+        Set<String> ruleIds = MigrationAnalyzer.getRuleIds();
+        Map<String, RuleSeverity> ruleSeverities = new HashMap<>();
+        for (String entry : severities.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] ruleSeverity = entry.split(":", -1);
+            if (ruleSeverity.length != 2) {
+                throw new PropertiesUtilsException("Property " + MigrationConfig.MIGRATION_ANALYSIS_SEVERITIES
+                        + " has an entry that is not rule-id:severity: '" + entry.trim() + "'");
+            }
+            String ruleId = ruleSeverity[0].trim().toLowerCase(Locale.ROOT);
+            if (!ruleIds.contains(ruleId)) {
+                throw new PropertiesUtilsException("Property " + MigrationConfig.MIGRATION_ANALYSIS_SEVERITIES
+                        + " names an unknown rule in '" + entry.trim() + "', known rules: " + ruleIds);
+            }
+            try {
+                ruleSeverities.put(ruleId, RuleSeverity.valueOf(ruleSeverity[1].trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new PropertiesUtilsException("Property " + MigrationConfig.MIGRATION_ANALYSIS_SEVERITIES
+                        + " has an unknown severity in '" + entry.trim() + "', expected one of "
+                        + Arrays.toString(RuleSeverity.values()), e);
+            }
+        }
+        return ruleSeverities;
+    }
+
+    private static MigrationLock loadMigrationLock(PropertiesUtils propertiesUtils) {
+        if (!propertiesUtils.getBooleanProperty(MigrationConfig.MIGRATION_LOCK_ENABLED, true)) {
+            return new NoOpMigrationLock();
+        }
+        String lockKey = propertiesUtils.getProperty(MigrationConfig.MIGRATION_LOCK_KEY);
+        return new AdvisoryMigrationLock(
+                lockKey != null ? Long.parseLong(lockKey.trim()) : AdvisoryMigrationLock.DEFAULT_LOCK_KEY,
+                propertiesUtils.getIntProperty(MigrationConfig.MIGRATION_LOCK_TIMEOUT, (int) AdvisoryMigrationLock.DEFAULT_TIMEOUT_MILLIS));
     }
 }
@@ -0,0 +1,215 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.exception.SqLFileReadException;
+import com.innowise.model.DriftType;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationDrift;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationType;
+import com.innowise.model.SchemaHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MigrationWatcher class applies migration files as they are added to the migrations directory during development
+ * After one full run it watches the directory with a {@link WatchService}; events are collected until the
+ * directory has been quiet for {@link MigrationSettings#getWatchDebounceMillis()}. Only the files named in the events
+ * are looked at: new versions are applied through {@link MigrationManager} against a {@link SchemaHistory} kept in memory,
+ * the changed repeatable migrations are passed on and re-applied if their checksum differs from the recorded one,
+ * and an edit of an applied version is flagged as a checksum drift without rescanning the directory. The checksum cache of the {@link MigrationFileReader} is reused between iterations
+ * If the watch service loses events, the next iteration is a full run
+ * An iteration that fails, for example because a migration has an error or is rejected by the
+ * {@link MigrationAnalyzer}, is logged and watching goes on; the next change then triggers a full run
+ */
+
+@Slf4j
+public class MigrationWatcher {
+
+    private final SchemaManager schemaManager;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+    private final MigrationManager migrationManager;
+    private final List<MigrationDrift> drifts = new CopyOnWriteArrayList<>();
+    private volatile WatchService watchService;
+    private volatile boolean stopRequested;
+    private boolean overflow;
+
+    public MigrationWatcher(ConnectionManager connectionManager, SchemaManager schemaManager,
+                            MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.schemaManager = schemaManager;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+        this.migrationManager = new MigrationManager(connectionManager, schemaManager, migrationFileReader, settings);
+    }
+
+    /**
+     * Applies all migrations and then applies changes until {@link #stop()} is called or the thread is interrupted
+     * @throws IllegalArgumentException if the settings name no migrations directory
+     * @throws SqLFileReadException if the directory cannot be watched
+     */
+    public void run() {
+        if (settings.getMigrationsDir() == null) {
+            throw new IllegalArgumentException("Watch mode needs a migrations directory");
+        }
+        Path migrationsDirectory = Path.of(settings.getMigrationsDir());
+        try (WatchService service = migrationsDirectory.getFileSystem().newWatchService()) {
+            watchService = service;
+            migrationsDirectory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            SchemaHistory history = fullRun();
+            log.info("Watching {} for migration changes", migrationsDirectory);
+            while (!stopRequested) {
+                Set<Path> changed = awaitChanges(service, migrationsDirectory);
+                if (overflow) {
+                    log.warn("Migration directory events were lost, rescanning {}", migrationsDirectory);
+                    overflow = false;
+                    history = fullRun();
+                } else if (history == null && !changed.isEmpty()) {
+                    history = fullRun();
+                } else if (!changed.isEmpty() && !applyChanges(changed, history)) {
+                    history = null;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Migration watch service closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Error watching migrations directory: " + migrationsDirectory, e);
+            throw new SqLFileReadException("Error watching migrations directory: " + migrationsDirectory, e);
+        }
+        log.info("Stopped watching {}", migrationsDirectory);
+    }
+
+    /**
+     * Stops watching; the iteration in progress is completed first. Can be called from any thread
+     */
+    public void stop() {
+        stopRequested = true;
+        migrationManager.requestStop();
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the migration watch service", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the applied versions whose files were edited while watching
+     * @return the checksum drifts found so far
+     */
+    public List<MigrationDrift> getDrifts() {
+        return new ArrayList<>(drifts);
+    }
+
+    private SchemaHistory fullRun() {
+        try {
+            MigrationRunResult result = migrationManager.applyMigrations();
+            log.info("Applied {} migrations, current version: {}", result.getAppliedCount(), result.getCurrentVersion());
+            return schemaManager.loadHistory();
+        } catch (RuntimeException e) {
+            log.error("Migration run failed, waiting for the next change: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private Set<Path> awaitChanges(WatchService service, Path migrationsDirectory) throws InterruptedException {
+        Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = service.take();
+        while (key != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else {
+                    changed.add(migrationsDirectory.resolve((Path) event.context()));
+                }
+            }
+            key.reset();
+            key = service.poll(settings.getWatchDebounceMillis(), TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+
+    private boolean applyChanges(Set<Path> changed, SchemaHistory history) throws IOException {
+        try {
+            applyChangedMigrations(changed, history);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Applying changed migrations failed, waiting for the next change: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void applyChangedMigrations(Set<Path> changed, SchemaHistory history) throws IOException {
+        List<Migration> added = new ArrayList<>();
+        List<Migration> repeatables = new ArrayList<>();
+        for (Path file : changed) {
+            Migration migration = readMigration(file);
+            if (migration == null) {
+                continue;
+            }
+            if (migration.getType() == MigrationType.REPEATABLE) {
+                repeatables.add(migration);
+            } else if (migration.isBaseline()) {
+                log.warn("Baseline {} is not applied in watch mode", file.getFileName());
+            } else if (history.contains(migration.getVersion())) {
+                checkApplied(migration, history);
+            } else {
+                added.add(migration);
+            }
+        }
+        if (added.isEmpty() && repeatables.isEmpty()) {
+            return;
+        }
+        added.sort(Comparator.comparingInt(Migration::getVersion));
+        repeatables.sort(Comparator.comparing(Migration::getDescription));
+        MigrationRunResult result = migrationManager.applyMigrations(added, history, repeatables);
+        log.info("Applied {} changed migrations, {} failed, current version: {}",
+                result.getAppliedCount(), result.getFailedCount(), result.getCurrentVersion());
+    }
+
+    private void checkApplied(Migration migration, SchemaHistory history) {
+        migrationFileReader.calculateCheckSum(migration);
+        if (history.isApplied(migration)) {
+            return;
+        }
+        MigrationDrift drift = new MigrationDrift(migration.getVersion(), DriftType.CHECKSUM_MISMATCH,
+                history.getChecksum(migration.getVersion()), migration.getChecksum());
+        drifts.add(drift);
+        log.error("Applied migration {} was edited: {}; add a new version instead", migration.getVersion(),
+                migration.getPath().getFileName());
+    }
+
+    private Migration readMigration(Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return MigrationFileReader.toMigration(file, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.innowise.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionPool;
+import com.innowise.connection.ConnectionProvider;
+import com.innowise.connection.SchemaConnectionProvider;
+import com.innowise.exception.JsonReportGenerationException;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationTarget;
+import com.innowise.model.TargetRunResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MultiTargetMigrationRunner class applies one migration set to many databases or tenant schemas
+ * The migration files are loaded and checksummed once, before any target is started; every target then works on
+ * its own copy of the list, because a run records the checksums computed while executing into its migrations
+ * Targets are migrated on virtual threads when the JVM supports them, and on a fixed thread pool otherwise;
+ * at most {@link MigrationSettings#getTargetConcurrency()} targets are migrated at the same time
+ * Every target has its own schema version table and its own report file, named after the target;
+ * the report file from the settings receives a summary with one section per target
+ * A target needs a connection for the run, one per parallel worker and one per lock watchdog; database targets get
+ * a pool of that size, schema targets share one pool sized for all concurrent targets and get their own advisory lock key
+ */
+
+@Slf4j
+public class MultiTargetMigrationRunner {
+
+    private static final ObjectMapper SUMMARY_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+
+    /**
+     * Creates a runner
+     * @param url the URL of the default database, used by schema targets
+     * @param user the database user
+     * @param password the database password
+     * @param migrationFileReader the reader used to load the migrations once
+     * @param settings the settings applied to every target
+     */
+    public MultiTargetMigrationRunner(String url, String user, String password,
+                                      MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+    }
+
+    /**
+     * Applies the migrations to every target
+     * A failing target does not stop the others; its error is recorded in its report section
+     * @param targets the targets to migrate
+     * @return the report sections in the order of the targets
+     * @throws MigrationExecutionException if the runner is interrupted; targets not started yet are cancelled
+     * @throws JsonReportGenerationException if the summary report cannot be written
+     */
+    public List<TargetRunResult> run(List<MigrationTarget> targets) {
+        List<Migration> migrations = Collections.unmodifiableList(migrationFileReader.loadMigrations(settings));
+        migrationFileReader.resolveChecksums(migrations);
+        log.info("Applying {} migrations to {} targets, {} at a time", migrations.size(), targets.size(), settings.getTargetConcurrency());
+
+        Semaphore permits = new Semaphore(settings.getTargetConcurrency());
+        List<Future<TargetRunResult>> futures = new ArrayList<>();
+        try (ConnectionPool schemaPool = new ConnectionPool(url, user, password, settings.getTargetConcurrency() * connectionsPerTarget(),
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS)) {
+            ExecutorService executor = newExecutor(settings.getTargetConcurrency());
+            try {
+                for (MigrationTarget target : targets) {
+                    futures.add(executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            return migrateTarget(target, migrations, schemaPool);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+                List<TargetRunResult> results = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    results.add(awaitResult(targets.get(i), futures.get(i)));
+                }
+                writeSummary(results);
+                return results;
+            } finally {
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+        }
+    }
+
+    private TargetRunResult migrateTarget(MigrationTarget target, List<Migration> migrations, ConnectionProvider schemaPool) {
+        long start = System.nanoTime();
+        MigrationSettings targetSettings = new MigrationSettings(settings);
+        targetSettings.setReportFile(targetReportFile(target));
+        ConnectionProvider connectionProvider;
+        if (target.getUrl() != null) {
+            connectionProvider = new ConnectionPool(target.getUrl(), user, password, connectionsPerTarget(),
+                    ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS);
+        } else {
+            connectionProvider = new SchemaConnectionProvider(schemaPool, target.getSchema());
+            if (settings.getMigrationLock() instanceof AdvisoryMigrationLock) {
+                AdvisoryMigrationLock lock = (AdvisoryMigrationLock) settings.getMigrationLock();
+                targetSettings.setMigrationLock(new AdvisoryMigrationLock(
+                        31 * lock.getLockKey() + target.getSchema().hashCode(), lock.getTimeoutMillis()));
+            }
+        }
+
+        log.info("Migrating target {}", target.getName());
+        try (ConnectionManager connectionManager = new ConnectionManager(connectionProvider)) {
+            MigrationManager migrationManager = new MigrationManager(connectionManager,
+                    new SchemaManager(connectionManager), migrationFileReader, targetSettings);
+            List<Migration> targetMigrations = new ArrayList<>(migrations.size());
+            migrations.forEach(migration -> targetMigrations.add(new Migration(migration)));
+            MigrationRunResult run = migrationManager.applyMigrations(targetMigrations);
+            log.info("Target {} is at version {}, applied {}, failed {}", target.getName(), run.getCurrentVersion(),
+                    run.getAppliedCount(), run.getFailedCount());
+            return new TargetRunResult(target.getName(), targetSettings.getReportFile(), run.isSuccess(), run,
+                    elapsedMillis(start), null);
+        } catch (RuntimeException e) {
+            log.error("Migration of target {} failed: {}", target.getName(), e.getMessage());
+            return new TargetRunResult(target.getName(), targetSettings.getReportFile(), false, null,
+                    elapsedMillis(start), e.getMessage());
+        }
+    }
+
+    private int connectionsPerTarget() {
+        int workers = Math.max(1, settings.getParallelWidth());
+        return 1 + workers * (settings.isLockWatchdogEnabled() ? 2 : 1);
+    }
+
+    private TargetRunResult awaitResult(MigrationTarget target, Future<TargetRunResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MigrationExecutionException("Interrupted while migrating target " + target.getName(), e);
+        } catch (ExecutionException e) {
+            return new TargetRunResult(target.getName(), null, false, null, 0, e.getCause().getMessage());
+        }
+    }
+
+    private void writeSummary(List<TargetRunResult> results) {
+        try {
+            SUMMARY_MAPPER.writeValue(new File(settings.getReportFile()), results);
+            log.info("Multi-target report generated at: {}", settings.getReportFile());
+        } catch (IOException e) {
+            log.error("Failed to generate multi-target report: {}", e.getMessage());
+            throw new JsonReportGenerationException("Error generating multi-target report", e);
+        }
+    }
+
+    private String targetReportFile(MigrationTarget target) {
+        Path reportFile = Path.of(settings.getReportFile());
+        String fileName = reportFile.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        String safeName = target.getName().replaceAll("[^A-Za-z0-9_.-]", "_");
+        String targetFileName = extension > 0
+                ? fileName.substring(0, extension) + "-" + safeName + fileName.substring(extension)
+                : fileName + "-" + safeName;
+        return reportFile.resolveSibling(targetFileName).toString();
+    }
+
+    private static ExecutorService newExecutor(int concurrency) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available, migrating targets on {} platform threads", concurrency);
+            return Executors.newFixedThreadPool(concurrency);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
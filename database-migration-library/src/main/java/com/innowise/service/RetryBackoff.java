@@ -0,0 +1,71 @@
+package com.innowise.service;
+
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.model.MigrationHeader;
+import com.innowise.model.MigrationSettings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The RetryBackoff class decides whether a migration that hit a lock timeout is retried and how long to wait first
+ * Waits grow exponentially from the initial backoff up to the maximum, with random jitter so that
+ * retries of several nodes do not line up
+ */
+
+@Slf4j
+public final class RetryBackoff {
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * Returns how many times a migration may be retried after a lock timeout
+     * @param header the migration header, whose retries option takes precedence
+     * @param settings the run settings
+     * @return the maximum number of retries
+     */
+    public static int maxRetries(MigrationHeader header, MigrationSettings settings) {
+        return header.getRetries() >= 0 ? header.getRetries() : settings.getLockRetries();
+    }
+
+    /**
+     * Checks whether the exception, or any exception chained to it, is a lock timeout
+     * @param e the exception to inspect
+     * @return true if the statement failed because a lock was not available in time
+     */
+    public static boolean isLockTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                for (SQLException sqlException = (SQLException) cause; sqlException != null; sqlException = sqlException.getNextException()) {
+                    if (LOCK_NOT_AVAILABLE.equals(sqlException.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sleeps before the given retry
+     * @param settings the run settings with the backoff bounds
+     * @param attempt the number of the retry, starting at 1
+     * @throws MigrationExecutionException if the thread is interrupted
+     */
+    public static void pause(MigrationSettings settings, int attempt) {
+        long ceiling = Math.min(settings.getRetryMaxBackoffMillis(),
+                (long) settings.getRetryInitialBackoffMillis() << Math.min(attempt - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        log.info("Lock timeout, retry {} in {} ms", attempt, delay);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MigrationExecutionException("Interrupted while waiting to retry a migration", e);
+        }
+    }
+}
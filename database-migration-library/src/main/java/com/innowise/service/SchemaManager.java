@@ -2,34 +2,44 @@ package com.innowise.service;
 
 import com.innowise.connection.ConnectionManager;
 import com.innowise.constants.SchemaVersionQueries;
-import com.innowise.exception.CurrentVersionException;
-import com.innowise.exception.MigrationCheckSumException;
 import com.innowise.exception.SchemaVersionException;
-import com.innowise.model.Migration;
+import com.innowise.model.SchemaHistory;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The SchemaManager class is responsible for managing database schema versions
  * It provides methods for creating a schema version table,
- * retrieving the current schema version, and verifying the migration checksum
+ * retrieving the current schema version, loading the applied history and verifying the migration checksum
+ * Repeatable migrations are tracked by name in a separate schema_repeatable table
  */
 
 @Slf4j
 @AllArgsConstructor
 public class SchemaManager {
 
+    private static final int HISTORY_INITIAL_SIZE = 256;
+
     private ConnectionManager connectionManager;
 
     /**
      * Creates a schema version table in the database
+     * Tables created by earlier releases get the execution_time_ms, installed_on and installed_rank columns added
+     * installed_rank records the order in which versions were completed, which differs from the version order
+     * when migrations run in parallel
      */
     public void createSchemaVersionTable() {
         try (Connection connection = connectionManager.getConnection();
              Statement statement = connection.createStatement()) {
             statement.executeUpdate(SchemaVersionQueries.CREATE_TABLE_SCHEMA_VERSION);
+            statement.executeUpdate(SchemaVersionQueries.ADD_EXECUTION_TIME_TO_SCHEMA_VERSION);
+            statement.executeUpdate(SchemaVersionQueries.ADD_INSTALLED_ON_TO_SCHEMA_VERSION);
+            statement.executeUpdate(SchemaVersionQueries.ADD_INSTALLED_RANK_TO_SCHEMA_VERSION);
+            statement.executeUpdate(SchemaVersionQueries.ADD_BASELINE_TO_SCHEMA_VERSION);
             log.info("Schema version table created successfully");
         } catch (SQLException e) {
             log.error("Failed to create schema version table", e);
@@ -38,47 +48,72 @@ public class SchemaManager {
     }
 
     /**
-     * Retrieves the current schema version from the database
-     * @return the current schema version as an integer
-     * Returns 0 if the version is not found
+     * Creates the table recording the last applied checksum of every repeatable migration
+     */
+    public void createRepeatableTable() {
+        try (Connection connection = connectionManager.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(SchemaVersionQueries.CREATE_TABLE_SCHEMA_REPEATABLE);
+        } catch (SQLException e) {
+            log.error("Failed to create schema repeatable table", e);
+            throw new SchemaVersionException("Error occurred while creating schema repeatable table", e);
+        }
+    }
+
+    /**
+     * Loads the applied repeatable migrations with a single query
+     * @return the last applied checksum by repeatable migration name
      */
-    public int getCurrentVersion() {
+    public Map<String, Integer> loadRepeatableHistory() {
         try (Connection connection = connectionManager.getConnection();
              Statement statement = connection.createStatement();
-             ResultSet rs = statement.executeQuery (SchemaVersionQueries.SELECT_VERSION_FROM_SCHEMA_VERSION)) {
+             ResultSet rs = statement.executeQuery(SchemaVersionQueries.SELECT_HISTORY_FROM_SCHEMA_REPEATABLE)) {
 
-            int currentVersion = rs.next() ? rs.getInt(1) : 0;
-            log.info("Successfully received the current version: {}", currentVersion);
-            return currentVersion;
+            Map<String, Integer> checksums = new HashMap<>();
+            while (rs.next()) {
+                checksums.put(rs.getString(1), rs.getInt(2));
+            }
+            log.info("Loaded {} applied repeatable migrations", checksums.size());
+            return checksums;
         } catch (SQLException e) {
-            log.error("Failed to get the current version from the database", e);
-            throw new CurrentVersionException("Unable to receive the current version from schema version table", e);
+            log.error("Failed to load the schema repeatable history", e);
+            throw new SchemaVersionException("Unable to load the schema repeatable history", e);
         }
     }
 
     /**
-     * Verifies the checksum for the specified migration object
-     * @param migration the migration object for which the checksum needs to be verified
-     * @return true if the checksum matches, otherwise false
+     * Checks whether the schema version table exists, without creating it
+     * @return true if the table exists
      */
-    public boolean verifyMigrationChecksum(Migration migration) {
-        try (Connection connection =  connectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(SchemaVersionQueries.SELECT_CHECKSUM_FROM_SCHEMA_VERSION)) {
-            preparedStatement.setInt(1, migration.getVersion());
-            ResultSet rs = preparedStatement.executeQuery();
+    public boolean hasSchemaVersionTable() {
+        try (Connection connection = connectionManager.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SchemaVersionQueries.SELECT_SCHEMA_VERSION_EXISTS)) {
+            return rs.next() && rs.getBoolean(1);
+        } catch (SQLException e) {
+            log.error("Failed to look up the schema version table", e);
+            throw new SchemaVersionException("Unable to look up the schema version table", e);
+        }
+    }
 
-            log.info("Executing checksum verification for version: " + migration.getVersion());
+    /**
+     * Loads the whole schema version table with a single query
+     * @return an in-memory snapshot of applied versions and their checksums
+     */
+    public SchemaHistory loadHistory() {
+        try (Connection connection = connectionManager.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SchemaVersionQueries.SELECT_HISTORY_FROM_SCHEMA_VERSION)) {
 
-            if (rs.next()) {
-                int checksum = rs.getInt("checksum");
-                return checksum == migration.getChecksum();
+            SchemaHistory history = new SchemaHistory(HISTORY_INITIAL_SIZE);
+            while (rs.next()) {
+                history.put(rs.getInt(1), rs.getInt(2));
             }
-
-            log.info("No checksum found for version: " + migration.getVersion());
-            return false;
+            log.info("Loaded {} applied versions, current version: {}", history.size(), history.getCurrentVersion());
+            return history;
         } catch (SQLException e) {
-            log.error("Error verifying checksum for migration version: " + migration.getVersion());
-            throw new MigrationCheckSumException("Error verifying checksum for migration version: " + migration.getVersion(), e);
+            log.error("Failed to load the schema version history", e);
+            throw new SchemaVersionException("Unable to load the schema version history", e);
         }
     }
 }
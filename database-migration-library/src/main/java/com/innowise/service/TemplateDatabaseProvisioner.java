@@ -0,0 +1,285 @@
+package com.innowise.service;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionPool;
+import com.innowise.exception.TemplateDatabaseException;
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.innowise.constants.TemplateDatabaseQueries.COMMENT_ON_DATABASE;
+import static com.innowise.constants.TemplateDatabaseQueries.CREATE_DATABASE;
+import static com.innowise.constants.TemplateDatabaseQueries.CREATE_DATABASE_FROM_TEMPLATE;
+import static com.innowise.constants.TemplateDatabaseQueries.DROP_DATABASE;
+import static com.innowise.constants.TemplateDatabaseQueries.RENAME_DATABASE;
+import static com.innowise.constants.TemplateDatabaseQueries.SELECT_DATABASE_EXISTS;
+import static com.innowise.constants.TemplateDatabaseQueries.SELECT_TEMPLATES;
+import static com.innowise.constants.TemplateDatabaseQueries.TEMPLATE_PREFIX;
+
+/**
+ * The TemplateDatabaseProvisioner class creates migrated PostgreSQL databases by copying a cached template database
+ * A template is named after a hash of the ordered versions and checksums of the migrations it contains,
+ * so it is built once per migration set. When migrations are added, the new template is copied from the
+ * newest template whose migrations are a prefix of the current set and only the added migrations are applied to it
+ * A copy of the template needs no further migration, except when there are repeatable migrations: they are not part
+ * of the template name, so the ones changed since the template was built are applied to the copy
+ * The last use of every template is kept in its database comment; templates beyond
+ * {@link MigrationSettings#getTemplateMaxCount()} are dropped, least recently used first
+ */
+
+@Slf4j
+public class TemplateDatabaseProvisioner {
+
+    private static final int HASH_LENGTH = 16;
+    private static final String BUILD_SUFFIX = "_build";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final MigrationFileReader migrationFileReader;
+    private final MigrationSettings settings;
+
+    /**
+     * Creates a provisioner
+     * @param url the URL of the maintenance database, used to create and drop databases
+     * @param user a database user with the CREATEDB privilege
+     * @param password the database password
+     * @param migrationFileReader the reader used to load the migrations
+     * @param settings the settings used to migrate the templates and the new databases
+     */
+    public TemplateDatabaseProvisioner(String url, String user, String password,
+                                       MigrationFileReader migrationFileReader, MigrationSettings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.migrationFileReader = migrationFileReader;
+        this.settings = settings;
+    }
+
+    /**
+     * Creates a database with all migrations applied, building the template for the current migrations first if needed
+     * @param databaseName the name of the new database
+     * @return the URL of the new database
+     * @throws TemplateDatabaseException if a database cannot be created or a migration fails
+     */
+    public String provision(String databaseName) {
+        List<Migration> migrations = Collections.unmodifiableList(migrationFileReader.loadMigrations(settings));
+        migrationFileReader.resolveChecksums(migrations);
+        List<String> prefixHashes = prefixHashes(migrations);
+        String templateName = TEMPLATE_PREFIX + prefixHashes.get(migrations.size());
+
+        try (ConnectionManager admin = new ConnectionManager(new ConnectionPool(url, user, password, 1,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS));
+             Connection connection = admin.getConnection()) {
+            if (!databaseExists(connection, templateName)) {
+                AdvisoryMigrationLock buildLock = new AdvisoryMigrationLock(templateName.hashCode(),
+                        AdvisoryMigrationLock.DEFAULT_TIMEOUT_MILLIS);
+                buildLock.acquire(connection);
+                try {
+                    if (!databaseExists(connection, templateName)) {
+                        buildTemplate(connection, templateName, migrations, prefixHashes);
+                    }
+                } finally {
+                    buildLock.release(connection);
+                }
+            }
+            execute(connection, String.format(COMMENT_ON_DATABASE, quote(templateName), System.currentTimeMillis()));
+            execute(connection, String.format(CREATE_DATABASE_FROM_TEMPLATE, quote(databaseName), quote(templateName)));
+            log.info("Created database {} from template {}", databaseName, templateName);
+            evictTemplates(connection, templateName);
+        } catch (SQLException e) {
+            throw new TemplateDatabaseException("Failed to provision database " + databaseName, e);
+        }
+
+        String databaseUrl = withDatabase(url, databaseName);
+        if (!migrationFileReader.loadRepeatableMigrations(settings).isEmpty()) {
+            migrate(databaseUrl, databaseName, migrations);
+        }
+        return databaseUrl;
+    }
+
+    /**
+     * Drops a database created by {@link #provision(String)}
+     * @param databaseName the name of the database
+     * @throws TemplateDatabaseException if the database cannot be dropped
+     */
+    public void drop(String databaseName) {
+        try (ConnectionManager admin = new ConnectionManager(new ConnectionPool(url, user, password, 1,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS));
+             Connection connection = admin.getConnection()) {
+            execute(connection, String.format(DROP_DATABASE, quote(databaseName)));
+            log.info("Dropped database {}", databaseName);
+        } catch (SQLException e) {
+            throw new TemplateDatabaseException("Failed to drop database " + databaseName, e);
+        }
+    }
+
+    private void buildTemplate(Connection connection, String templateName, List<Migration> migrations,
+                               List<String> prefixHashes) throws SQLException {
+        Map<String, Long> templates = findTemplates(connection);
+        int baseLength = -1;
+        for (int length = migrations.size() - 1; length >= 0 && baseLength < 0; length--) {
+            if (templates.containsKey(TEMPLATE_PREFIX + prefixHashes.get(length))) {
+                baseLength = length;
+            }
+        }
+
+        String buildName = templateName + BUILD_SUFFIX;
+        execute(connection, String.format(DROP_DATABASE, quote(buildName)));
+        if (baseLength >= 0) {
+            String baseName = TEMPLATE_PREFIX + prefixHashes.get(baseLength);
+            log.info("Building template {} from template {}, applying {} new migrations",
+                    templateName, baseName, migrations.size() - baseLength);
+            execute(connection, String.format(CREATE_DATABASE_FROM_TEMPLATE, quote(buildName), quote(baseName)));
+        } else {
+            log.info("Building template {} from scratch, applying {} migrations", templateName, migrations.size());
+            execute(connection, String.format(CREATE_DATABASE, quote(buildName)));
+        }
+
+        try {
+            migrate(withDatabase(url, buildName), templateName, migrations);
+        } catch (RuntimeException e) {
+            execute(connection, String.format(DROP_DATABASE, quote(buildName)));
+            throw e;
+        }
+        execute(connection, String.format(RENAME_DATABASE, quote(buildName), quote(templateName)));
+    }
+
+    private void migrate(String databaseUrl, String databaseName, List<Migration> migrations) {
+        MigrationSettings databaseSettings = new MigrationSettings(settings);
+        Path reportFile = Path.of(settings.getReportFile());
+        databaseSettings.setReportFile(reportFile.resolveSibling(databaseName + "-" + reportFile.getFileName()).toString());
+        try (ConnectionManager connectionManager = new ConnectionManager(new ConnectionPool(databaseUrl, user, password, 1,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS))) {
+            MigrationManager migrationManager = new MigrationManager(connectionManager,
+                    new SchemaManager(connectionManager), migrationFileReader, databaseSettings);
+            MigrationRunResult run = migrationManager.applyMigrations(migrations);
+            if (!run.isSuccess()) {
+                throw new TemplateDatabaseException("Failed to migrate database " + databaseName + ", "
+                        + run.getFailedCount() + " migrations failed", null);
+            }
+        }
+    }
+
+    private void evictTemplates(Connection connection, String currentTemplate) throws SQLException {
+        Map<String, Long> templates = findTemplates(connection);
+        if (templates.size() <= settings.getTemplateMaxCount()) {
+            return;
+        }
+        List<String> leastRecentlyUsed = new ArrayList<>(templates.keySet());
+        leastRecentlyUsed.remove(currentTemplate);
+        leastRecentlyUsed.sort(Comparator.comparing(templates::get));
+        int excess = templates.size() - Math.max(settings.getTemplateMaxCount(), 1);
+        for (String templateName : leastRecentlyUsed.subList(0, Math.min(excess, leastRecentlyUsed.size()))) {
+            try {
+                execute(connection, String.format(DROP_DATABASE, quote(templateName)));
+                log.info("Evicted template {}", templateName);
+            } catch (SQLException e) {
+                log.warn("Failed to evict template {}: {}", templateName, e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, Long> findTemplates(Connection connection) throws SQLException {
+        Map<String, Long> templates = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_TEMPLATES)) {
+            while (resultSet.next()) {
+                String name = resultSet.getString(1);
+                if (name.length() == TEMPLATE_PREFIX.length() + HASH_LENGTH) {
+                    templates.put(name, parseLastUse(resultSet.getString(2)));
+                }
+            }
+        }
+        return templates;
+    }
+
+    private static long parseLastUse(String comment) {
+        try {
+            return comment != null ? Long.parseLong(comment.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean databaseExists(Connection connection, String databaseName) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_DATABASE_EXISTS)) {
+            preparedStatement.setString(1, databaseName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Hashes every prefix of the ordered migrations; element n is the hash of the first n migrations
+     */
+    static List<String> prefixHashes(List<Migration> migrations) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            List<String> hashes = new ArrayList<>(migrations.size() + 1);
+            hashes.add(hash(digest));
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES);
+            for (Migration migration : migrations) {
+                buffer.clear();
+                buffer.putInt(migration.getVersion()).putInt(migration.getChecksum());
+                digest.update(buffer.array());
+                hashes.add(hash(digest));
+            }
+            return hashes;
+        } catch (NoSuchAlgorithmException e) {
+            throw new TemplateDatabaseException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hash(MessageDigest digest) {
+        try {
+            byte[] bytes = ((MessageDigest) digest.clone()).digest();
+            StringBuilder hex = new StringBuilder(HASH_LENGTH);
+            for (int i = 0; i < HASH_LENGTH / 2; i++) {
+                hex.append(String.format("%02x", bytes[i]));
+            }
+            return hex.toString();
+        } catch (CloneNotSupportedException e) {
+            throw new TemplateDatabaseException("SHA-256 digest cannot be cloned", e);
+        }
+    }
+
+    static String withDatabase(String url, String databaseName) {
+        int hostStart = url.indexOf("//");
+        int pathStart = url.indexOf('/', hostStart + 2);
+        int queryStart = url.indexOf('?', hostStart + 2);
+        String base = url.substring(0, pathStart >= 0 && (queryStart < 0 || pathStart < queryStart) ? pathStart
+                : queryStart >= 0 ? queryStart : url.length());
+        String query = queryStart >= 0 ? url.substring(queryStart) : "";
+        return base + "/" + databaseName + query;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,143 @@
+package com.innowise;
+
+import com.innowise.connection.ConnectionManager;
+import com.innowise.connection.ConnectionPool;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A fresh database on an embedded PostgreSQL server shared by all tests of the JVM
+ * Tests using it are skipped when the server cannot be started on the machine
+ */
+
+public final class TestDatabase {
+
+    private static final String USER = "postgres";
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    private static EmbeddedPostgres postgres;
+    private static boolean unavailable;
+
+    private final String url;
+
+    private TestDatabase(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Creates an empty database
+     * @return the created database
+     */
+    public static TestDatabase create() {
+        EmbeddedPostgres server = server();
+        String name = "test_" + DATABASE_COUNTER.incrementAndGet();
+        try (Connection connection = server.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + name);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to create test database " + name, e);
+        }
+        return new TestDatabase(server.getJdbcUrl(USER, name));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return USER;
+    }
+
+    /**
+     * Creates a connection manager backed by its own pool, as a separate node would have
+     * @param poolSize the maximum number of connections
+     * @return the connection manager
+     */
+    public ConnectionManager connectionManager(int poolSize) {
+        return new ConnectionManager(new ConnectionPool(url, USER, USER, poolSize,
+                ConnectionManager.DEFAULT_VALIDATION_TIMEOUT_SECONDS, ConnectionManager.DEFAULT_BORROW_TIMEOUT_MILLIS));
+    }
+
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, USER, USER);
+    }
+
+    /**
+     * Runs a query returning a single number
+     * @param sql the query
+     * @return the value of the first column of the first row
+     */
+    public long queryLong(String sql) {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Query failed: " + sql, e);
+        }
+    }
+
+    public void execute(String sql) {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Statement failed: " + sql, e);
+        }
+    }
+
+    /**
+     * Writes a migrations folder whose V1 creates a table and inserts 1, and whose later versions each sleep
+     * and then insert their own version, so a run takes long enough for concurrent callers to overlap
+     * @param directory the directory to create the migrations folder in
+     * @param table the table created by V1, with one int column named version
+     * @param count the number of migrations
+     * @param sleepSeconds how long every migration after V1 sleeps
+     * @param independent whether the migrations after V1 depend only on V1, so they can run in parallel
+     * @return the migrations folder
+     */
+    public static Path writeMigrations(Path directory, String table, int count, double sleepSeconds,
+                                       boolean independent) throws IOException {
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create_" + table + ".sql"),
+                "CREATE TABLE " + table + " (version int NOT NULL);\nINSERT INTO " + table + " VALUES (1);\n");
+        String header = independent ? "-- migration: depends=1\n" : "";
+        for (int version = 2; version <= count; version++) {
+            Files.writeString(migrationsDir.resolve("V" + version + "__insert_" + version + ".sql"), header
+                    + "SELECT pg_sleep(" + sleepSeconds + ");\nINSERT INTO " + table + " VALUES (" + version + ");\n");
+        }
+        return migrationsDir;
+    }
+
+    private static synchronized EmbeddedPostgres server() {
+        assumeTrue(!unavailable, "Embedded PostgreSQL is not available");
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException | RuntimeException e) {
+                unavailable = true;
+                assumeTrue(false, "Embedded PostgreSQL is not available: " + e.getMessage());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException e) {
+                    // the server process is killed with the JVM anyway
+                }
+            }));
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,56 @@
+package com.innowise.analysis;
+
+import com.innowise.parser.StatementClassifier;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DdlRulesTest {
+
+    static Stream<Arguments> flagged() {
+        return Stream.of(
+                Arguments.of(new VolatileDefaultRule(), "ALTER TABLE items ADD COLUMN token uuid DEFAULT gen_random_uuid()"),
+                Arguments.of(new VolatileDefaultRule(), "alter table items add score float default random() not null"),
+                Arguments.of(new VolatileDefaultRule(), "ALTER TABLE items ADD COLUMN seq bigint DEFAULT nextval('items_seq')"),
+                Arguments.of(new ColumnTypeChangeRule(), "ALTER TABLE items ALTER COLUMN price TYPE numeric(12, 2)"),
+                Arguments.of(new ColumnTypeChangeRule(), "ALTER TABLE items ALTER price SET DATA TYPE bigint"),
+                Arguments.of(new ForeignKeyValidationRule(), "ALTER TABLE items ADD CONSTRAINT items_owner_fk FOREIGN KEY (owner_id) REFERENCES owners (id)"),
+                Arguments.of(new ForeignKeyValidationRule(), "ALTER TABLE items ADD COLUMN owner_id int REFERENCES owners (id)"),
+                Arguments.of(new NonConcurrentIndexRule(), "CREATE INDEX items_name ON items (name)"),
+                Arguments.of(new NonConcurrentIndexRule(), "CREATE UNIQUE INDEX items_code ON items USING btree (code)"));
+    }
+
+    static Stream<Arguments> passing() {
+        return Stream.of(
+                Arguments.of(new VolatileDefaultRule(), "ALTER TABLE items ADD COLUMN created timestamptz DEFAULT now()"),
+                Arguments.of(new VolatileDefaultRule(), "ALTER TABLE items ADD COLUMN active boolean DEFAULT true"),
+                Arguments.of(new VolatileDefaultRule(), "ALTER TABLE items ALTER COLUMN token SET DEFAULT gen_random_uuid()"),
+                Arguments.of(new ColumnTypeChangeRule(), "ALTER TABLE items ALTER COLUMN price SET NOT NULL"),
+                Arguments.of(new ColumnTypeChangeRule(), "ALTER TABLE items ADD COLUMN kind text"),
+                Arguments.of(new ForeignKeyValidationRule(), "ALTER TABLE items ADD CONSTRAINT items_owner_fk FOREIGN KEY (owner_id) REFERENCES owners (id) NOT VALID"),
+                Arguments.of(new ForeignKeyValidationRule(), "ALTER TABLE items VALIDATE CONSTRAINT items_owner_fk"),
+                Arguments.of(new NonConcurrentIndexRule(), "CREATE INDEX CONCURRENTLY items_name ON items (name)"),
+                Arguments.of(new NonConcurrentIndexRule(), "DROP INDEX items_name"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("flagged")
+    void flagsExpensiveStatement(DdlRule rule, String sql) {
+        String message = rule.check(StatementClassifier.classify(sql));
+
+        assertNotNull(message, rule.getId() + " did not flag: " + sql);
+        assertTrue(message.contains("items"), message);
+    }
+
+    @ParameterizedTest
+    @MethodSource("passing")
+    void passesCheapStatement(DdlRule rule, String sql) {
+        assertNull(rule.check(StatementClassifier.classify(sql)), rule.getId() + " flagged: " + sql);
+    }
+}
@@ -0,0 +1,148 @@
+package com.innowise.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaHistoryTest {
+
+    @Test
+    void keepsAllVersionsAcrossResizes() {
+        SchemaHistory history = new SchemaHistory(1);
+        for (int version = 1; version <= 1000; version++) {
+            history.put(version, version * 31);
+        }
+        assertEquals(1000, history.size());
+        assertEquals(1000, history.getCurrentVersion());
+        for (int version = 1; version <= 1000; version++) {
+            assertTrue(history.contains(version));
+            assertEquals(version * 31, history.getChecksum(version));
+        }
+        assertFalse(history.contains(1001));
+    }
+
+    @Test
+    void overwritesChecksumOfExistingVersion() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(7, 1);
+        history.put(7, 2);
+        assertEquals(1, history.size());
+        assertEquals(2, history.getChecksum(7));
+    }
+
+    @Test
+    void handlesZeroAndNegativeVersionsAndChecksums() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(0, Integer.MIN_VALUE);
+        history.put(-5, 0);
+        assertTrue(history.contains(0));
+        assertTrue(history.contains(-5));
+        assertEquals(Integer.MIN_VALUE, history.getChecksum(0));
+        assertEquals(0, history.getCurrentVersion());
+    }
+
+    @Test
+    void rejectsFreeSentinelAsVersion() {
+        SchemaHistory history = new SchemaHistory(4);
+        assertThrows(IllegalArgumentException.class, () -> history.put(Integer.MIN_VALUE, 1));
+        assertFalse(history.contains(Integer.MIN_VALUE));
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void failsOnChecksumOfMissingVersion() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 1);
+        assertThrows(IllegalArgumentException.class, () -> history.getChecksum(2));
+    }
+
+    @Test
+    void findsCollidingVersionsAfterResize() {
+        SchemaHistory history = new SchemaHistory(2);
+        int[] versions = {1, 1 << 16, 1 << 20, 1 << 24, 3, 1 << 30};
+        for (int version : versions) {
+            history.put(version, -version);
+        }
+        for (int version : versions) {
+            assertEquals(-version, history.getChecksum(version));
+        }
+        assertEquals(versions.length, history.size());
+    }
+
+    @Test
+    void matchesMigrationByVersionAndChecksum() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 42);
+        assertTrue(history.isApplied(migration(1, 42)));
+        assertFalse(history.isApplied(migration(1, 43)));
+        assertFalse(history.isApplied(migration(2, 42)));
+    }
+
+    @Test
+    void completedVersionStopsAtFirstGap() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 1);
+        history.put(2, 2);
+        history.put(4, 4);
+        List<Migration> migrations = List.of(migration(1, 1), migration(2, 2), migration(3, 3), migration(4, 4));
+        assertEquals(4, history.getCurrentVersion());
+        assertEquals(2, history.getCompletedVersion(migrations));
+        assertEquals(2, history.getCompletedVersion(List.of(migration(3, 3), migration(4, 4))));
+    }
+
+    @Test
+    void completedVersionIsCurrentVersionWithoutGaps() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 1);
+        history.put(2, 2);
+        history.put(5, 5);
+        assertEquals(5, history.getCompletedVersion(List.of(migration(2, 2), migration(5, 5))));
+        assertEquals(5, history.getCompletedVersion(List.of()));
+        assertEquals(0, new SchemaHistory(4).getCompletedVersion(List.of(migration(1, 1))));
+    }
+
+    @Test
+    void validateReportsDrift() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 1);
+        history.put(2, 99);
+        history.put(4, 4);
+        history.put(5, 5);
+        List<Migration> migrations = List.of(migration(1, 1), migration(2, 2), migration(3, 3), migration(4, 4));
+
+        List<MigrationDrift> drifts = history.validate(migrations);
+
+        assertEquals(3, drifts.size());
+        assertEquals(2, drifts.get(0).getVersion());
+        assertEquals(DriftType.CHECKSUM_MISMATCH, drifts.get(0).getType());
+        assertEquals(3, drifts.get(1).getVersion());
+        assertEquals(DriftType.NOT_APPLIED, drifts.get(1).getType());
+        assertEquals(5, drifts.get(2).getVersion());
+        assertEquals(DriftType.MISSING_MIGRATION, drifts.get(2).getType());
+    }
+
+    @Test
+    void validateSkipsVersionsCoveredByBaseline() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 1);
+        history.put(2, 2);
+        history.put(10, 10);
+        Migration baseline = migration(10, 10);
+        baseline.setBaseline(true);
+
+        assertTrue(history.validate(List.of(baseline)).isEmpty());
+    }
+
+    private static Migration migration(int version, int checksum) {
+        Migration migration = new Migration(version, "m" + version, Path.of("V" + version + "__m" + version + ".sql"),
+                MigrationType.SQL, 0, 0);
+        migration.setChecksum(checksum);
+        return migration;
+    }
+}
@@ -0,0 +1,84 @@
+package com.innowise.parser;
+
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationType;
+import com.innowise.service.MigrationFileReader;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChecksumReaderTest {
+
+    private static final String LARGE = "INSERT INTO t VALUES ('" + "x".repeat(9000) + "');";
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "\n",
+            "SELECT 1;",
+            "SELECT 1;\n",
+            "SELECT 1;\nSELECT 2;",
+            "SELECT 1;\nSELECT 2;\n",
+            "SELECT 1;\n\n",
+            "\n\nSELECT 1;\n\n\n",
+            "SELECT 1;\r\nSELECT 2;\r\n",
+            "SELECT 1;\r\nSELECT 2;",
+            "SELECT 1;\r\n\r\n",
+            "SELECT 1;\rSELECT 2;\r",
+            "SELECT 1;\r\n\nSELECT 2;\n\r",
+            "SELECT 'caf\u00e9 \u20ac \ud83d\ude00';\n",
+            "SELECT 'caf\u00e9';\r\n"
+    })
+    void matchesLegacyChecksum(String script) throws IOException {
+        assertChecksums(script);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"\n", "\r\n"})
+    void matchesLegacyChecksumAcrossBufferBoundaries(String lineBreak) throws IOException {
+        assertChecksums(LARGE + lineBreak + LARGE + lineBreak + "\r" + LARGE);
+    }
+
+    private void assertChecksums(String script) throws IOException {
+        Path file = directory.resolve("V1__test.sql");
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        int legacy = legacyChecksum(file);
+
+        try (ChecksumReader reader = new ChecksumReader(new StringReader(script))) {
+            reader.drain();
+            assertEquals(legacy, reader.getChecksum(), "streamed checksum");
+        }
+        long mapped = MappedChecksum.scriptChecksum(file);
+        if (mapped >= 0) {
+            assertEquals(legacy, (int) mapped, "mapped checksum");
+        }
+        Migration migration = new Migration(1, "test", file, MigrationType.SQL, Files.size(file),
+                Files.getLastModifiedTime(file).toMillis());
+        assertEquals(legacy, new MigrationFileReader(directory.toString()).calculateCheckSum(migration), "reader checksum");
+    }
+
+    /**
+     * The checksum as computed before streaming: all lines read into memory and joined with line feeds
+     */
+    private static int legacyChecksum(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            CRC32 crc = new CRC32();
+            crc.update(lines.collect(Collectors.joining("\n")).getBytes());
+            return (int) crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.innowise.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SqlStatementSplitterTest {
+
+    @Test
+    void splitsOnSemicolonsAndDropsEmptyStatements() {
+        assertEquals(List.of("CREATE TABLE a (id int)", "INSERT INTO a VALUES (1)"),
+                split("CREATE TABLE a (id int);\n;\n  INSERT INTO a VALUES (1);\n"));
+    }
+
+    @Test
+    void keepsLastStatementWithoutSemicolon() {
+        assertEquals(List.of("SELECT 1", "SELECT 2"), split("SELECT 1;\nSELECT 2"));
+    }
+
+    @Test
+    void ignoresSemicolonsInQuotedLiteralsAndIdentifiers() {
+        assertEquals(List.of("INSERT INTO \"a;b\" VALUES ('x;y', 'it''s;')", "SELECT 1"),
+                split("INSERT INTO \"a;b\" VALUES ('x;y', 'it''s;');SELECT 1;"));
+    }
+
+    @Test
+    void ignoresSemicolonsInEscapeStrings() {
+        assertEquals(List.of("SELECT E'it\\'s; fine', e'\\\\'", "SELECT 2"),
+                split("SELECT E'it\\'s; fine', e'\\\\';SELECT 2;"));
+    }
+
+    @Test
+    void treatsBackslashAsPlainCharacterInStandardStrings() {
+        assertEquals(List.of("SELECT 'a\\'", "SELECT 'b'"), split("SELECT 'a\\';SELECT 'b';"));
+    }
+
+    @Test
+    void doesNotTreatIdentifierEndingInEAsEscapePrefix() {
+        assertEquals(List.of("SELECT name'\\'", "SELECT 1"), split("SELECT name'\\';SELECT 1;"));
+    }
+
+    @Test
+    void ignoresSemicolonsInComments() {
+        assertEquals(List.of("SELECT 1 -- one; two", "SELECT /* a; b */ 2"),
+                split("SELECT 1 -- one; two\n;SELECT /* a; b */ 2;"));
+    }
+
+    @Test
+    void handlesNestedBlockComments() {
+        assertEquals(List.of("SELECT /* outer /* inner; */ still; comment */ 1", "SELECT 2"),
+                split("SELECT /* outer /* inner; */ still; comment */ 1;SELECT 2;"));
+    }
+
+    @Test
+    void dropsStatementsMadeOfCommentsOnly() {
+        assertEquals(List.of("SELECT 1"), split("-- only a comment;\n/* and; another */;SELECT 1;"));
+    }
+
+    @Test
+    void ignoresSemicolonsInDollarQuotedBodies() {
+        String function = "CREATE FUNCTION f() RETURNS int AS $$ BEGIN RETURN 1; END; $$ LANGUAGE plpgsql";
+        assertEquals(List.of(function, "SELECT f()"), split(function + ";\nSELECT f();"));
+    }
+
+    @Test
+    void matchesDollarQuoteOnlyWithTheSameTag() {
+        String function = "CREATE FUNCTION f() RETURNS text AS $body$ SELECT $$;$$; SELECT $x$;$x$; $body$ LANGUAGE sql";
+        assertEquals(List.of(function, "SELECT 1"), split(function + ";SELECT 1;"));
+    }
+
+    @Test
+    void doesNotStartDollarQuoteOnPositionalParameters() {
+        assertEquals(List.of("PREPARE p AS SELECT $1", "SELECT 2"), split("PREPARE p AS SELECT $1;SELECT 2;"));
+    }
+
+    @Test
+    void doesNotStartDollarQuoteInsideIdentifiers() {
+        assertEquals(List.of("SELECT a$b$ FROM t", "SELECT 2"), split("SELECT a$b$ FROM t;SELECT 2;"));
+    }
+
+    @Test
+    void handlesStatementsSpanningBufferBoundaries() {
+        String longLiteral = "x".repeat(20_000);
+        String script = "INSERT INTO t VALUES ('" + longLiteral + ";');\nSELECT $$" + longLiteral + ";$$;";
+        List<String> statements = split(script);
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO t VALUES ('" + longLiteral + ";')", statements.get(0));
+        assertEquals("SELECT $$" + longLiteral + ";$$", statements.get(1));
+    }
+
+    @Test
+    void collectsLeadingLineCommentsAsHeader() {
+        try (SqlStatementSplitter splitter = new SqlStatementSplitter(
+                new StringReader("-- first\n--second\nSELECT 1; -- not header\n"), "test")) {
+            assertEquals(List.of("first", "second"), splitter.getHeaderComments());
+            assertEquals("-- first\n--second\nSELECT 1", splitter.nextStatement());
+        }
+    }
+
+    @Test
+    void computesChecksumOnlyAfterAllStatementsAreRead() {
+        String script = "SELECT 1;\r\nSELECT 2;\r\n";
+        try (SqlStatementSplitter splitter = new SqlStatementSplitter(new StringReader(script), "test")) {
+            splitter.nextStatement();
+            assertThrows(IllegalStateException.class, splitter::getChecksum);
+            while (splitter.nextStatement() != null) {
+                // read to the end
+            }
+            assertEquals(legacyChecksum(script), splitter.getChecksum());
+        }
+    }
+
+    private static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementSplitter splitter = new SqlStatementSplitter(new StringReader(script), "test")) {
+            String sql;
+            while ((sql = splitter.nextStatement()) != null) {
+                statements.add(sql);
+            }
+        }
+        return statements;
+    }
+
+    private static int legacyChecksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(new BufferedReader(new StringReader(script)).lines().collect(Collectors.joining("\n")).getBytes());
+        return (int) crc.getValue();
+    }
+}
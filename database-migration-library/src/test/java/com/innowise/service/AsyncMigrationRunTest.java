@@ -0,0 +1,108 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.monitoring.MigrationListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncMigrationRunTest {
+
+    private static final int MIGRATIONS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void stopRequestDoesNotCarryOverToTheNextRun() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        try (ConnectionManager connectionManager = database.connectionManager(2)) {
+            MigrationManager migrationManager = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings());
+            migrationManager.requestStop();
+
+            MigrationRunResult result = migrationManager.applyMigrations();
+
+            assertFalse(result.isStopped());
+            assertEquals(MIGRATIONS, result.getAppliedCount());
+        }
+    }
+
+    @Test
+    void stopBeforeTheRunStartsStopsIt() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        try (ConnectionManager connectionManager = database.connectionManager(2)) {
+            List<Runnable> tasks = new ArrayList<>();
+            AsyncMigrationRun run = AsyncMigrationRun.start(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings(), tasks::add);
+            run.stop();
+            tasks.forEach(Runnable::run);
+
+            MigrationRunResult result = run.getResult().get(1, TimeUnit.MINUTES);
+            assertTrue(result.isStopped());
+            assertEquals(0, result.getAppliedCount());
+            assertTrue(run.awaitVersion(1).isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void awaitedVersionWaitsForLowerVersionsStillRunning() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("parallel"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (version int);\n");
+        Files.writeString(migrationsDir.resolve("V2__slow.sql"),
+                "-- migration: depends=1\nSELECT pg_sleep(1);\nINSERT INTO log VALUES (2);\n");
+        Files.writeString(migrationsDir.resolve("V3__fast.sql"), "-- migration: depends=1\nINSERT INTO log VALUES (3);\n");
+        MigrationSettings settings = settings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setParallelWidth(2);
+        List<Integer> reported = new CopyOnWriteArrayList<>();
+        settings.getListeners().add(new MigrationListener() {
+            @Override
+            public void migrationCompleted(MigrationResultRecords result) {
+                reported.add(result.getVersion());
+            }
+        });
+
+        try (ConnectionManager connectionManager = database.connectionManager(4)) {
+            List<Runnable> tasks = new ArrayList<>();
+            AsyncMigrationRun run = AsyncMigrationRun.start(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings, tasks::add);
+            List<Integer> reportedWhenReached = new ArrayList<>();
+            CompletableFuture<Void> reached = run.awaitVersion(3).thenRun(() -> reportedWhenReached.addAll(reported));
+            tasks.forEach(Runnable::run);
+
+            assertTrue(run.getResult().get(1, TimeUnit.MINUTES).isSuccess());
+            reached.get(1, TimeUnit.MINUTES);
+            assertEquals(List.of(1, 3, 2), reported);
+            assertTrue(reportedWhenReached.contains(2), "version 3 was reached before version 2 was applied");
+        }
+    }
+
+    private MigrationSettings settings() throws IOException {
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        for (int version = 1; version <= MIGRATIONS; version++) {
+            Files.writeString(migrationsDir.resolve("V" + version + "__table.sql"), "CREATE TABLE t" + version + " (id int);\n");
+        }
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        return settings;
+    }
+}
@@ -0,0 +1,100 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.parser.SqlStatementSplitter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BaselineGeneratorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotRecreatesPartitionsTypesAndSqlFunctions() throws IOException, SQLException {
+        TestDatabase source = TestDatabase.create();
+        source.execute("CREATE TYPE status AS ENUM ('new', 'done')");
+        source.execute("CREATE DOMAIN positive_amount AS numeric(10, 2) DEFAULT 1 NOT NULL CONSTRAINT amount_positive CHECK (VALUE > 0)");
+        source.execute("CREATE TYPE money_pair AS (low positive_amount, high positive_amount)");
+        source.execute("CREATE TABLE orders (id bigint GENERATED BY DEFAULT AS IDENTITY, placed date NOT NULL, "
+                + "amount positive_amount, state status NOT NULL DEFAULT 'new', PRIMARY KEY (id, placed, state)) PARTITION BY RANGE (placed)");
+        source.execute("CREATE TABLE orders_2024 PARTITION OF orders FOR VALUES FROM ('2024-01-01') TO ('2025-01-01') "
+                + "PARTITION BY LIST (state)");
+        source.execute("CREATE TABLE orders_2024_new PARTITION OF orders_2024 FOR VALUES IN ('new')");
+        source.execute("CREATE TABLE orders_2024_done PARTITION OF orders_2024 FOR VALUES IN ('done')");
+        source.execute("CREATE TABLE orders_other PARTITION OF orders DEFAULT");
+        source.execute("CREATE INDEX orders_amount ON orders (amount)");
+        source.execute("INSERT INTO orders (placed, amount, state) VALUES ('2024-02-01', 5, 'new'), "
+                + "('2024-03-01', 7, 'done'), ('2023-01-01', 2, 'done')");
+        source.execute("CREATE FUNCTION order_total() RETURNS numeric LANGUAGE sql AS 'SELECT sum(amount) FROM orders'");
+        source.execute("CREATE FUNCTION pair_of(a positive_amount) RETURNS money_pair LANGUAGE plpgsql "
+                + "AS $$ BEGIN RETURN ROW(a, a)::money_pair; END $$");
+        source.execute("CREATE VIEW done_orders AS SELECT id, amount FROM orders WHERE state = 'done'");
+        Path baselineFile = directory.resolve("B1__baseline.sql");
+
+        try (Connection connection = source.connect()) {
+            BaselineGenerator.writeSnapshot(connection, baselineFile);
+        }
+        TestDatabase target = TestDatabase.create();
+        replay(target, baselineFile);
+
+        assertEquals(4, target.queryLong("SELECT count(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE c.relkind IN ('r', 'p')"));
+        assertEquals(1, target.queryLong("SELECT count(*) FROM orders_2024_new"));
+        assertEquals(1, target.queryLong("SELECT count(*) FROM orders_2024_done"));
+        assertEquals(1, target.queryLong("SELECT count(*) FROM orders_other"));
+        assertEquals(14, target.queryLong("SELECT order_total()"));
+        assertEquals(1, target.queryLong("SELECT count(*) FROM done_orders WHERE amount = 7"));
+        assertEquals(3, target.queryLong("SELECT (pair_of(3)).high"));
+        assertEquals(1, target.queryLong("SELECT count(*) FROM pg_indexes WHERE indexname = 'orders_amount'"));
+        assertEquals(4, target.queryLong("SELECT count(*) FROM pg_indexes WHERE tablename LIKE 'orders\\_%' AND indexdef LIKE '%(amount)'"));
+        assertEquals(4, target.queryLong("INSERT INTO orders (placed) VALUES ('2024-06-01') RETURNING id"));
+        assertTrue(assertThrows(IllegalStateException.class,
+                () -> target.execute("INSERT INTO orders (placed, amount) VALUES ('2024-05-01', -1)"))
+                .getCause().getMessage().contains("amount_positive"));
+    }
+
+    @Test
+    void snapshotRejectsObjectsItCannotRecreate() {
+        TestDatabase source = TestDatabase.create();
+        source.execute("CREATE TABLE accounts (id int PRIMARY KEY, owner text)");
+        source.execute("CREATE POLICY own_accounts ON accounts USING (owner = current_user)");
+        source.execute("CREATE TABLE archived_accounts () INHERITS (accounts)");
+
+        MigrationExecutionException exception = assertThrows(MigrationExecutionException.class, () -> {
+            try (Connection connection = source.connect()) {
+                BaselineGenerator.writeSnapshot(connection, directory.resolve("B1__baseline.sql"));
+            }
+        });
+
+        assertTrue(exception.getMessage().contains("own_accounts"), exception.getMessage());
+        assertTrue(exception.getMessage().contains("archived_accounts"), exception.getMessage());
+        assertTrue(Files.notExists(directory.resolve("B1__baseline.sql")));
+    }
+
+    private static void replay(TestDatabase database, Path script) throws IOException, SQLException {
+        try (Connection connection = database.connect();
+             Statement statement = connection.createStatement();
+             SqlStatementSplitter splitter = new SqlStatementSplitter(
+                     Files.newBufferedReader(script, StandardCharsets.UTF_8), script.toString())) {
+            statement.execute("SET check_function_bodies = on");
+            String sql;
+            while ((sql = splitter.nextStatement()) != null) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
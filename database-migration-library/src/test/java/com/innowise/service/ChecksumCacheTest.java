@@ -0,0 +1,61 @@
+package com.innowise.service;
+
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChecksumCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsSameNamedFilesInDifferentDirectoriesApart() {
+        ChecksumCache cache = ChecksumCache.load(directory);
+        cache.put(migration(directory.resolve("tenant_a/V1__init.sql"), 11));
+        cache.put(migration(directory.resolve("tenant_b/V1__init.sql"), 22));
+
+        Migration first = migration(directory.resolve("tenant_a/V1__init.sql"), null);
+        Migration second = migration(directory.resolve("tenant_b/./V1__init.sql"), null);
+        assertTrue(cache.fill(first));
+        assertTrue(cache.fill(second));
+        assertEquals(11, first.getChecksum());
+        assertEquals(22, second.getChecksum());
+    }
+
+    @Test
+    void missesWhenSizeOrModificationTimeChanges() {
+        ChecksumCache cache = ChecksumCache.load(directory);
+        Path file = directory.resolve("V1__init.sql");
+        cache.put(migration(file, 11));
+
+        assertFalse(cache.fill(new Migration(1, "init", file, MigrationType.SQL, 101, 1000)));
+        assertFalse(cache.fill(new Migration(1, "init", file, MigrationType.SQL, 100, 1001)));
+    }
+
+    @Test
+    void survivesSaveAndLoad() {
+        ChecksumCache cache = ChecksumCache.load(directory);
+        cache.put(migration(directory.resolve("a/V1__init.sql"), 11));
+        cache.put(migration(directory.resolve("b/V1__init.sql"), 22));
+        cache.save();
+
+        ChecksumCache loaded = ChecksumCache.load(directory);
+        Migration migration = migration(directory.resolve("b/V1__init.sql"), null);
+        assertTrue(loaded.fill(migration));
+        assertEquals(22, migration.getChecksum());
+    }
+
+    private static Migration migration(Path path, Integer checksum) {
+        Migration migration = new Migration(1, "init", path, MigrationType.SQL, 100, 1000);
+        migration.setChecksum(checksum);
+        return migration;
+    }
+}
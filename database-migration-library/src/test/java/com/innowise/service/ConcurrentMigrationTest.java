@@ -0,0 +1,81 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentMigrationTest {
+
+    private static final int CALLERS = 8;
+    private static final int MIGRATIONS = 6;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appliesEveryVersionExactlyOnceAcrossConcurrentCallers() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = TestDatabase.writeMigrations(directory, "applied_log", MIGRATIONS, 0.05, false);
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<MigrationRunResult>> futures = new ArrayList<>();
+        try {
+            for (int caller = 0; caller < CALLERS; caller++) {
+                int node = caller;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return migrate(database, migrationsDir, node);
+                }));
+            }
+            startGate.countDown();
+            List<MigrationRunResult> results = new ArrayList<>();
+            for (Future<MigrationRunResult> future : futures) {
+                results.add(future.get(2, TimeUnit.MINUTES));
+            }
+
+            long leaders = results.stream().filter(result -> result.getAppliedCount() == MIGRATIONS).count();
+            long idle = results.stream().filter(result -> result.getAppliedCount() == 0).count();
+            assertEquals(1, leaders, "exactly one caller applies the migrations");
+            assertEquals(CALLERS - 1, idle, "callers that waited for the lock find nothing to apply");
+            results.forEach(result -> {
+                assertTrue(result.isSuccess());
+                assertEquals(MIGRATIONS, result.getCurrentVersion());
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(MIGRATIONS, database.queryLong("SELECT count(*) FROM schema_version"));
+        assertEquals(MIGRATIONS, database.queryLong("SELECT count(*) FROM applied_log"));
+        assertEquals(MIGRATIONS, database.queryLong("SELECT count(DISTINCT version) FROM applied_log"));
+
+        MigrationRunResult late = migrate(database, migrationsDir, CALLERS);
+        assertEquals(0, late.getAppliedCount());
+        assertEquals(MIGRATIONS, late.getCurrentVersion());
+    }
+
+    private MigrationRunResult migrate(TestDatabase database, Path migrationsDir, int node) {
+        try (ConnectionManager connectionManager = database.connectionManager(2)) {
+            MigrationSettings settings = new MigrationSettings();
+            settings.setMigrationsDir(migrationsDir.toString());
+            settings.setReportFile(directory.resolve("report-" + node + ".json").toString());
+            return new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.resolve("cache-" + node).toString()), settings).applyMigrations();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.model.MigrationSettings;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockContentionWatchdogTest {
+
+    @Test
+    void cancelsMigrationWhenSessionsWaitTooLong() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id int)");
+        MigrationSettings settings = settings(300);
+
+        try (ConnectionManager connectionManager = database.connectionManager(1);
+             Connection migration = database.connect();
+             Statement statement = migration.createStatement()) {
+            migration.setAutoCommit(false);
+            statement.execute("LOCK TABLE items IN ACCESS EXCLUSIVE MODE");
+            LockContentionWatchdog watchdog = LockContentionWatchdog.start(1, migration, connectionManager, settings);
+            Thread waiter = startWaiter(database, "SELECT count(*) FROM items");
+
+            assertThrows(SQLException.class, () -> statement.execute("SELECT pg_sleep(10)"));
+            watchdog.stop(null);
+            migration.rollback();
+            waiter.join();
+
+            assertTrue(watchdog.isCancelled());
+        }
+    }
+
+    @Test
+    void measuresTheLockWaitInsteadOfTheStatementAge() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id int)");
+        MigrationSettings settings = settings(1000);
+
+        try (ConnectionManager connectionManager = database.connectionManager(1);
+             Connection migration = database.connect();
+             Statement statement = migration.createStatement()) {
+            migration.setAutoCommit(false);
+            statement.execute("LOCK TABLE items IN ACCESS EXCLUSIVE MODE");
+            LockContentionWatchdog watchdog = LockContentionWatchdog.start(1, migration, connectionManager, settings);
+            // the statement runs for 1.5 s before it queues behind the lock for about 0.7 s
+            Thread waiter = startWaiter(database, "DO $$ BEGIN PERFORM pg_sleep(1.5); PERFORM count(*) FROM items; END $$");
+
+            statement.execute("SELECT pg_sleep(2.2)");
+            watchdog.stop(null);
+            migration.commit();
+            waiter.join();
+
+            assertFalse(watchdog.isCancelled());
+        }
+    }
+
+    private static MigrationSettings settings(long maxWaitMillis) {
+        MigrationSettings settings = new MigrationSettings();
+        settings.setLockWatchdogEnabled(true);
+        settings.setLockWatchdogMaxWaiting(0);
+        settings.setLockWatchdogMaxWaitMillis(maxWaitMillis);
+        settings.setLockWatchdogSampleMillis(50);
+        return settings;
+    }
+
+    private static Thread startWaiter(TestDatabase database, String sql) {
+        Thread waiter = new Thread(() -> database.execute(sql));
+        waiter.start();
+        return waiter;
+    }
+}
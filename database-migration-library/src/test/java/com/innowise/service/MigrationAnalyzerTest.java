@@ -0,0 +1,100 @@
+package com.innowise.service;
+
+import com.innowise.model.DdlFinding;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.RuleSeverity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationAnalyzerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsEveryRuleWithItsDefaultSeverity() throws IOException {
+        write("V1__items.sql", "ALTER TABLE items ADD COLUMN token uuid DEFAULT gen_random_uuid();\n"
+                + "ALTER TABLE items ALTER COLUMN price TYPE bigint;\n"
+                + "ALTER TABLE items ADD CONSTRAINT items_owner_fk FOREIGN KEY (owner_id) REFERENCES owners (id);\n"
+                + "CREATE INDEX items_name ON items (name);\n");
+
+        List<DdlFinding> findings = analyze(new MigrationSettings());
+
+        assertEquals(List.of("volatile-default", "column-type-change", "foreign-key-not-valid", "index-not-concurrent"),
+                rules(findings));
+        findings.forEach(finding -> {
+            assertEquals(1, finding.getVersion());
+            assertEquals("V1__items.sql", finding.getFile());
+            assertEquals(RuleSeverity.WARNING, finding.getSeverity());
+        });
+        assertFalse(MigrationAnalyzer.hasErrors(findings));
+    }
+
+    @Test
+    void skipsTablesCreatedByAnEarlierMigration() throws IOException {
+        write("V1__create.sql", "CREATE TABLE orders (id int, owner_id int);\n");
+        write("V2__index.sql", "CREATE INDEX orders_owner ON orders (owner_id);\n"
+                + "CREATE INDEX items_owner ON items (owner_id);\n");
+
+        List<DdlFinding> findings = analyze(new MigrationSettings());
+
+        assertEquals(1, findings.size());
+        assertEquals(2, findings.get(0).getVersion());
+        assertTrue(findings.get(0).getSql().contains("items_owner"));
+    }
+
+    @Test
+    void appliesSeveritySettingsAndAllowHeader() throws IOException {
+        write("V1__index.sql", "CREATE INDEX items_name ON items (name);\n"
+                + "ALTER TABLE items ALTER COLUMN price TYPE bigint;\n");
+        write("V2__allowed.sql", "-- migration: allow=index-not-concurrent\nCREATE INDEX items_code ON items (code);\n");
+        write("V3__all_allowed.sql", "-- migration: allow=all\nALTER TABLE items ALTER COLUMN code TYPE bigint;\n");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setRuleSeverities(Map.of("index-not-concurrent", RuleSeverity.ERROR, "column-type-change", RuleSeverity.OFF));
+
+        List<DdlFinding> findings = analyze(settings);
+
+        assertEquals(1, findings.size());
+        assertEquals(1, findings.get(0).getVersion());
+        assertEquals(RuleSeverity.ERROR, findings.get(0).getSeverity());
+        assertTrue(MigrationAnalyzer.hasErrors(findings));
+    }
+
+    @Test
+    void truncatesLongStatements() throws IOException {
+        write("V1__index.sql", "CREATE INDEX items_name ON items (name) WHERE name <> '" + "x".repeat(300) + "';\n");
+
+        List<DdlFinding> findings = analyze(new MigrationSettings());
+
+        assertEquals(1, findings.size());
+        assertTrue(findings.get(0).getSql().endsWith("..."));
+        assertEquals(203, findings.get(0).getSql().length());
+    }
+
+    private List<DdlFinding> analyze(MigrationSettings settings) {
+        settings.setMigrationsDir(directory.resolve("migrations").toString());
+        MigrationFileReader reader = new MigrationFileReader(directory.toString());
+        List<Migration> migrations = reader.loadMigrations(settings);
+        return new MigrationAnalyzer(reader, settings).analyze(migrations);
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        Files.writeString(Files.createDirectories(directory.resolve("migrations")).resolve(fileName), content);
+    }
+
+    private static List<String> rules(List<DdlFinding> findings) {
+        return findings.stream().map(DdlFinding::getRule).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,160 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.exception.MigrationAnalysisException;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.lock.AdvisoryMigrationLock;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.RuleSeverity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationCoordinatorTest {
+
+    private static final int NODES = 4;
+    private static final int MIGRATIONS = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void oneNodeLeadsAndTheOthersFollowItsCompletion() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = TestDatabase.writeMigrations(directory, "applied_log", MIGRATIONS, 0.1, false);
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        List<Future<MigrationRunResult>> futures = new ArrayList<>();
+        try {
+            for (int node = 0; node < NODES; node++) {
+                int id = node;
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return coordinate(database, migrationsDir, id);
+                }));
+            }
+            startGate.countDown();
+            List<MigrationRunResult> results = new ArrayList<>();
+            for (Future<MigrationRunResult> future : futures) {
+                results.add(future.get(2, TimeUnit.MINUTES));
+            }
+
+            assertEquals(1, results.stream().filter(result -> result.getAppliedCount() == MIGRATIONS).count());
+            assertEquals(NODES - 1, results.stream().filter(result -> result.getAppliedCount() == 0).count());
+            results.forEach(result -> {
+                assertTrue(result.isSuccess());
+                assertEquals(MIGRATIONS, result.getCurrentVersion());
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(MIGRATIONS, database.queryLong("SELECT count(*) FROM applied_log"));
+
+        MigrationRunResult late = coordinate(database, migrationsDir, NODES);
+        assertEquals(0, late.getAppliedCount());
+        assertEquals(MIGRATIONS, late.getCurrentVersion());
+    }
+
+    @Test
+    void followerTakesOverWhenTheLeaderLockIsReleasedWithoutCompletion() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = TestDatabase.writeMigrations(directory, "applied_log", MIGRATIONS, 0.1, false);
+        MigrationRunResult result;
+        try (ConnectionManager connectionManager = database.connectionManager(3);
+             Connection deadLeader = database.connect();
+             Statement statement = deadLeader.createStatement()) {
+            MigrationSettings settings = settings(migrationsDir, 0);
+            MigrationCoordinator coordinator = new MigrationCoordinator(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.resolve("cache-0").toString()), settings);
+            statement.execute("SELECT pg_advisory_lock(" + (AdvisoryMigrationLock.DEFAULT_LOCK_KEY + 1) + ")");
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(300);
+                    deadLeader.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            releaser.start();
+            result = coordinator.run();
+            releaser.join();
+        }
+
+        assertEquals(MIGRATIONS, result.getAppliedCount());
+        assertEquals(MIGRATIONS, result.getCurrentVersion());
+    }
+
+    @Test
+    void followerFailsFastWhenTheLeaderRunThrows() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__index.sql"), "CREATE INDEX items_id ON items (id);\n");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection previousLeader = database.connect();
+             Statement statement = previousLeader.createStatement()) {
+            statement.execute("SELECT pg_advisory_lock(" + (AdvisoryMigrationLock.DEFAULT_LOCK_KEY + 1) + ")");
+            // the follower waits long before trying the leader lock again, so only the announcement can end its wait
+            MigrationSettings followerSettings = settings(migrationsDir, 0);
+            followerSettings.setCoordinationPollMillis(TimeUnit.MINUTES.toMillis(1));
+            Future<MigrationRunResult> follower = executor.submit(() -> {
+                try (ConnectionManager connectionManager = database.connectionManager(2)) {
+                    return new MigrationCoordinator(connectionManager, new SchemaManager(connectionManager),
+                            new MigrationFileReader(directory.resolve("cache-0").toString()), followerSettings).run();
+                }
+            });
+            Thread.sleep(500);
+            statement.execute("SELECT pg_advisory_unlock(" + (AdvisoryMigrationLock.DEFAULT_LOCK_KEY + 1) + ")");
+
+            MigrationSettings leaderSettings = settings(migrationsDir, 1);
+            leaderSettings.setRuleSeverities(Map.of("index-not-concurrent", RuleSeverity.ERROR));
+            try (ConnectionManager connectionManager = database.connectionManager(2)) {
+                MigrationCoordinator leader = new MigrationCoordinator(connectionManager, new SchemaManager(connectionManager),
+                        new MigrationFileReader(directory.resolve("cache-1").toString()), leaderSettings);
+                assertThrows(MigrationAnalysisException.class, leader::run);
+            }
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof MigrationExecutionException, String.valueOf(failure.getCause()));
+            assertTrue(failure.getCause().getMessage().contains("DDL analysis rejected migrations [V1__index.sql]"), failure.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MigrationRunResult coordinate(TestDatabase database, Path migrationsDir, int node) {
+        try (ConnectionManager connectionManager = database.connectionManager(3)) {
+            return new MigrationCoordinator(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.resolve("cache-" + node).toString()),
+                    settings(migrationsDir, node)).run();
+        }
+    }
+
+    private MigrationSettings settings(Path migrationsDir, int node) {
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report-" + node + ".json").toString());
+        settings.setCoordinationEnabled(true);
+        settings.setCoordinationPollMillis(50);
+        settings.setCoordinationTimeoutMillis(TimeUnit.MINUTES.toMillis(1));
+        return settings;
+    }
+}
@@ -0,0 +1,136 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.backfill.BackfillMigration;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.exception.MigrationExecutionException;
+import com.innowise.model.BackfillChunk;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationSettings;
+import com.innowise.monitoring.PhaseRecorder;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationExecutorTest {
+
+    private static final int ROWS = 10;
+
+    @Test
+    void backfillResumesAfterTheLastCommittedChunk() {
+        TestDatabase database = prepareItems();
+        MigrationSettings settings = new MigrationSettings();
+        settings.setBackfillChunkSize(3);
+
+        try (ConnectionManager connectionManager = database.connectionManager(1)) {
+            new SchemaManager(connectionManager).createSchemaVersionTable();
+
+            MarkingBackfill interrupted = new MarkingBackfill(2);
+            assertThrows(MigrationExecutionException.class, () -> backfill(interrupted, connectionManager, settings));
+            assertEquals(6, database.queryLong("SELECT last_key FROM schema_version_progress WHERE version = 2"));
+            assertEquals(6, database.queryLong("SELECT rows_processed FROM schema_version_progress WHERE version = 2"));
+            assertEquals(6, database.queryLong("SELECT count(*) FROM items WHERE done"));
+            assertEquals(0, database.queryLong("SELECT count(*) FROM schema_version"));
+
+            MarkingBackfill resumed = new MarkingBackfill(Integer.MAX_VALUE);
+            backfill(resumed, connectionManager, settings);
+            assertEquals(List.of(6L, 9L, 10L), resumed.lastKeys);
+            assertEquals(0, resumed.versionRowsDuringChunks);
+        }
+
+        assertEquals(ROWS, database.queryLong("SELECT count(*) FROM items WHERE done"));
+        assertEquals(2, database.queryLong("SELECT version FROM schema_version"));
+        assertEquals(0, database.queryLong("SELECT count(*) FROM schema_version_progress"));
+    }
+
+    @Test
+    void backfillIsThrottledToTheMaximumRowsPerSecond() {
+        TestDatabase database = prepareItems();
+        MigrationSettings settings = new MigrationSettings();
+        settings.setBackfillChunkSize(5);
+        settings.setBackfillMaxRowsPerSecond(20);
+
+        long start = System.nanoTime();
+        try (ConnectionManager connectionManager = database.connectionManager(1)) {
+            new SchemaManager(connectionManager).createSchemaVersionTable();
+            backfill(new MarkingBackfill(Integer.MAX_VALUE), connectionManager, settings);
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= ROWS * 1000 / 20);
+        assertEquals(ROWS, database.queryLong("SELECT count(*) FROM items WHERE done"));
+    }
+
+    private static TestDatabase prepareItems() {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id bigint PRIMARY KEY, done boolean NOT NULL DEFAULT false)");
+        database.execute("INSERT INTO items (id) SELECT generate_series(1, " + ROWS + ")");
+        return database;
+    }
+
+    private static void backfill(BackfillMigration backfill, ConnectionManager connectionManager, MigrationSettings settings) {
+        MigrationExecutor.executeBackfillMigration(new Migration(backfill), connectionManager, settings,
+                new PhaseRecorder(backfill.getVersion(), List.of()));
+    }
+
+    /**
+     * Marks items as done in key order and fails once the given number of chunks has been processed
+     */
+    private static final class MarkingBackfill implements BackfillMigration {
+
+        private final int chunksBeforeFailure;
+        private final List<Long> lastKeys = new ArrayList<>();
+        private long versionRowsDuringChunks;
+
+        private MarkingBackfill(int chunksBeforeFailure) {
+            this.chunksBeforeFailure = chunksBeforeFailure;
+        }
+
+        @Override
+        public int getVersion() {
+            return 2;
+        }
+
+        @Override
+        public String getDescription() {
+            return "mark items";
+        }
+
+        @Override
+        public BackfillChunk processChunk(Connection connection, long lastKey, int chunkSize) throws SQLException {
+            if (lastKeys.size() == chunksBeforeFailure) {
+                throw new SQLException("interrupted after " + chunksBeforeFailure + " chunks");
+            }
+            lastKeys.add(lastKey);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT count(*) FROM schema_version")) {
+                rs.next();
+                versionRowsDuringChunks += rs.getLong(1);
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement("UPDATE items SET done = true WHERE id IN "
+                    + "(SELECT id FROM items WHERE id > ? ORDER BY id LIMIT ?) RETURNING id")) {
+                preparedStatement.setLong(1, lastKey);
+                preparedStatement.setInt(2, chunkSize);
+                int rows = 0;
+                long maxKey = lastKey;
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        maxKey = Math.max(maxKey, rs.getLong(1));
+                    }
+                }
+                return new BackfillChunk(rows, maxKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.constants.SchemaVersionQueries;
+import com.innowise.exception.MigrationAnalysisException;
+import com.innowise.model.MigrationRunResult;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.RuleSeverity;
+import com.innowise.model.SchemaHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationManagerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void outOfOrderSequentialRunAppliesGapLeftByParallelRun() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (version int);\n");
+        Files.writeString(migrationsDir.resolve("V2__failing.sql"), "INSERT INTO missing_table VALUES (2);\n");
+        Files.writeString(migrationsDir.resolve("V3__independent.sql"),
+                "-- migration: depends=1\nINSERT INTO log VALUES (3);\n");
+
+        MigrationSettings parallel = settings(migrationsDir);
+        parallel.setParallelWidth(2);
+        MigrationRunResult first = migrate(database, parallel);
+        assertEquals(1, first.getFailedCount());
+        assertEquals(1, first.getCurrentVersion());
+        assertEquals(3, database.queryLong("SELECT max(version) FROM schema_version"));
+
+        Files.writeString(migrationsDir.resolve("V2__failing.sql"), "INSERT INTO log VALUES (2);\n");
+        MigrationSettings outOfOrder = settings(migrationsDir);
+        outOfOrder.setOutOfOrder(true);
+        MigrationRunResult second = migrate(database, outOfOrder);
+
+        assertTrue(second.isSuccess());
+        assertEquals(1, second.getAppliedCount());
+        assertEquals(3, second.getCurrentVersion());
+        assertEquals(3, database.queryLong("SELECT count(*) FROM schema_version"));
+        assertEquals(2, database.queryLong("SELECT count(*) FROM log"));
+    }
+
+    @Test
+    void sequentialRunSkipsGapBelowCurrentVersionUnlessOutOfOrder() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (version int);\n");
+        Files.writeString(migrationsDir.resolve("V2__failing.sql"), "INSERT INTO missing_table VALUES (2);\n");
+        Files.writeString(migrationsDir.resolve("V3__insert.sql"), "INSERT INTO log VALUES (3);\n");
+
+        MigrationRunResult first = migrate(database, settings(migrationsDir));
+        assertEquals(1, first.getFailedCount());
+        assertEquals(1, first.getCurrentVersion());
+
+        Files.writeString(migrationsDir.resolve("V2__failing.sql"), "INSERT INTO log VALUES (2);\n");
+        MigrationRunResult second = migrate(database, settings(migrationsDir));
+        assertTrue(second.isSuccess());
+        assertEquals(0, second.getAppliedCount());
+        assertEquals(3, second.getCurrentVersion());
+        assertEquals(0, database.queryLong("SELECT count(*) FROM schema_version WHERE version = 2"));
+
+        MigrationSettings outOfOrder = settings(migrationsDir);
+        outOfOrder.setOutOfOrder(true);
+        MigrationRunResult third = migrate(database, outOfOrder);
+        assertTrue(third.isSuccess());
+        assertEquals(1, third.getAppliedCount());
+        assertEquals(3, third.getCurrentVersion());
+        assertEquals(2, database.queryLong("SELECT count(*) FROM log"));
+    }
+
+    @Test
+    void reappliesRepeatableMigrationOnlyWhenItsChecksumChanges() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (run int);\n");
+        Files.writeString(migrationsDir.resolve("R__log_run.sql"), "INSERT INTO log VALUES (1);\n");
+
+        assertTrue(migrate(database, settings(migrationsDir)).isSuccess());
+        assertEquals(1, database.queryLong("SELECT count(*) FROM log"));
+
+        MigrationRunResult unchanged = migrate(database, settings(migrationsDir));
+        assertTrue(unchanged.isSuccess());
+        assertEquals(0, unchanged.getAppliedCount());
+        assertEquals(1, database.queryLong("SELECT count(*) FROM log"));
+
+        Files.writeString(migrationsDir.resolve("R__log_run.sql"), "INSERT INTO log VALUES (2), (2);\n");
+        MigrationRunResult changed = migrate(database, settings(migrationsDir));
+        assertTrue(changed.isSuccess());
+        assertEquals(1, changed.getAppliedCount());
+        assertEquals(2, database.queryLong("SELECT count(*) FROM log WHERE run = 2"));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM schema_repeatable"));
+        assertEquals(1, database.queryLong("SELECT max(version) FROM schema_version"));
+    }
+
+    @Test
+    void skipsRepeatableMigrationsWhenVersionedMigrationFails() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (run int);\n");
+        Files.writeString(migrationsDir.resolve("V2__failing.sql"), "INSERT INTO missing_table VALUES (2);\n");
+        Files.writeString(migrationsDir.resolve("R__log_run.sql"), "INSERT INTO log VALUES (1);\n");
+
+        MigrationRunResult result = migrate(database, settings(migrationsDir));
+
+        assertEquals(1, result.getFailedCount());
+        assertEquals(0, database.queryLong("SELECT count(*) FROM log"));
+    }
+
+    @Test
+    void rejectedRunLeavesTheDatabaseUntouched() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__index.sql"), "CREATE INDEX items_name ON items (name);\n");
+        MigrationSettings settings = settings(migrationsDir);
+        settings.setRuleSeverities(Map.of("index-not-concurrent", RuleSeverity.ERROR));
+
+        assertThrows(MigrationAnalysisException.class, () -> migrate(database, settings));
+
+        assertEquals(0, database.queryLong("SELECT count(*) FROM pg_class WHERE relname LIKE 'schema\\_%'"));
+    }
+
+    @Test
+    void knownHistoryRunRejectsRepeatableBeforeOpeningAConnection() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("R__index.sql"), "CREATE INDEX items_name ON items (name);\n");
+        MigrationSettings settings = settings(migrationsDir);
+        settings.setRuleSeverities(Map.of("index-not-concurrent", RuleSeverity.ERROR));
+
+        try (ConnectionManager connectionManager = database.connectionManager(4)) {
+            int openedBefore = connectionManager.getOpenedConnectionCount();
+            MigrationManager migrationManager = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings);
+            MigrationAnalysisException e = assertThrows(MigrationAnalysisException.class,
+                    () -> migrationManager.applyMigrations(List.of(), new SchemaHistory(0), null));
+            assertTrue(e.getMessage().contains("[R__index.sql]"), e.getMessage());
+            assertEquals(openedBefore, connectionManager.getOpenedConnectionCount());
+        }
+    }
+
+    @Test
+    void appliesConcurrentIndexOutsideATransaction() throws IOException, SQLException {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id int, name text)");
+        Path migrationsDir = writeConcurrentIndexMigration();
+
+        MigrationRunResult result = migrateAndCheckLockTimeoutReset(database, retrySettings(migrationsDir));
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, database.queryLong("SELECT version FROM schema_version"));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM pg_index WHERE indexrelid = 'items_name'::regclass AND indisvalid"));
+    }
+
+    @Test
+    void retriesConcurrentIndexAfterLockTimeout() throws IOException, SQLException, InterruptedException {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id int, name text)");
+        Path migrationsDir = writeConcurrentIndexMigration();
+
+        Thread releaser = holdFor(database, "LOCK TABLE items IN ACCESS EXCLUSIVE MODE", 1000);
+        MigrationRunResult result = migrateAndCheckLockTimeoutReset(database, retrySettings(migrationsDir));
+        releaser.join();
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, database.queryLong("SELECT version FROM schema_version"));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM pg_index WHERE indexrelid = 'items_name'::regclass AND indisvalid"));
+    }
+
+    @Test
+    void dropsInvalidIndexLeftByTimedOutBuildBeforeRetrying() throws IOException, SQLException, InterruptedException {
+        TestDatabase database = TestDatabase.create();
+        database.execute("CREATE TABLE items (id int, name text)");
+        Path migrationsDir = writeConcurrentIndexMigration();
+
+        // the open transaction lets the build create the index, then makes it time out waiting for the writer to finish
+        Thread releaser = holdFor(database, "INSERT INTO items VALUES (1, 'one')", 1000);
+        MigrationRunResult result = migrateAndCheckLockTimeoutReset(database, retrySettings(migrationsDir));
+        releaser.join();
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, database.queryLong("SELECT version FROM schema_version"));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM pg_index WHERE indexrelid = 'items_name'::regclass AND indisvalid"));
+        assertEquals(0, database.queryLong("SELECT count(*) FROM pg_index WHERE NOT indisvalid"));
+    }
+
+    @Test
+    void failingMemberRollsBackTheWholeGroup() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (version int);\n");
+        Files.writeString(migrationsDir.resolve("V2__insert.sql"), "INSERT INTO log VALUES (2);\n");
+        Files.writeString(migrationsDir.resolve("V3__failing.sql"), "INSERT INTO missing_table VALUES (3);\n");
+        MigrationSettings settings = settings(migrationsDir);
+        settings.setGroupSize(0);
+
+        MigrationRunResult result = migrate(database, settings);
+
+        assertEquals(3, result.getFailedCount());
+        assertEquals(0, result.getCurrentVersion());
+        assertEquals(0, database.queryLong("SELECT count(*) FROM schema_version"));
+        assertEquals(0, database.queryLong("SELECT count(*) FROM pg_class WHERE relname = 'log'"));
+        String report = Files.readString(directory.resolve("report.json"));
+        assertTrue(report.contains("rolled back, migration with version 3 failed"), report);
+        assertTrue(report.contains("Rolled back with its group"), report);
+    }
+
+    @Test
+    void groupRecordsItsVersionsWithOneBatchedInsert() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (version int);\n");
+        for (int version = 2; version <= 4; version++) {
+            Files.writeString(migrationsDir.resolve("V" + version + "__insert.sql"), "INSERT INTO log VALUES (" + version + ");\n");
+        }
+        MigrationSettings settings = settings(migrationsDir);
+        settings.setGroupSize(0);
+        AtomicInteger versionInserts = new AtomicInteger();
+
+        MigrationRunResult result;
+        try (ConnectionManager connectionManager = new ConnectionManager(
+                () -> countingVersionInserts(database.connect(), versionInserts))) {
+            result = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings).applyMigrations();
+        }
+
+        assertTrue(result.isSuccess());
+        assertEquals(4, result.getAppliedCount());
+        assertEquals(1, versionInserts.get());
+        assertEquals(4, database.queryLong("SELECT count(*) FROM schema_version"));
+        assertEquals(1, database.queryLong("SELECT count(DISTINCT xmin::text) FROM schema_version"));
+    }
+
+    /**
+     * Wraps the connection so that every execution of a schema version insert is counted
+     */
+    private static Connection countingVersionInserts(Connection connection, AtomicInteger executions) {
+        return proxy(Connection.class, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement") && SchemaVersionQueries.INSERT_INTO_SCHEMA_VERSION.equals(args[0])) {
+                PreparedStatement statement = (PreparedStatement) result;
+                return proxy(PreparedStatement.class, (statementMethod, statementArgs) -> {
+                    if (statementMethod.getName().startsWith("execute")) {
+                        executions.incrementAndGet();
+                    }
+                    return invoke(statement, statementMethod, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path writeConcurrentIndexMigration() throws IOException {
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__index.sql"),
+                "-- migration: transactional=false, lock_timeout=100ms, retries=50\n"
+                        + "CREATE INDEX CONCURRENTLY items_name ON items (name);\n");
+        return migrationsDir;
+    }
+
+    private MigrationSettings retrySettings(Path migrationsDir) {
+        MigrationSettings settings = settings(migrationsDir);
+        settings.setRetryInitialBackoffMillis(50);
+        settings.setRetryMaxBackoffMillis(100);
+        return settings;
+    }
+
+    /**
+     * Runs the statement in a transaction that is committed after the given time
+     */
+    private static Thread holdFor(TestDatabase database, String sql, long millis) throws SQLException {
+        Connection connection = database.connect();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        Thread releaser = new Thread(() -> {
+            try (connection) {
+                Thread.sleep(millis);
+                connection.commit();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        releaser.start();
+        return releaser;
+    }
+
+    private MigrationRunResult migrateAndCheckLockTimeoutReset(TestDatabase database, MigrationSettings settings) throws SQLException {
+        try (ConnectionManager connectionManager = database.connectionManager(1)) {
+            MigrationRunResult result = new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings).applyMigrations();
+            try (Connection connection = connectionManager.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SHOW lock_timeout")) {
+                rs.next();
+                assertEquals("0", rs.getString(1));
+            }
+            return result;
+        }
+    }
+
+    private MigrationSettings settings(Path migrationsDir) {
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        return settings;
+    }
+
+    private MigrationRunResult migrate(TestDatabase database, MigrationSettings settings) {
+        try (ConnectionManager connectionManager = database.connectionManager(4)) {
+            return new MigrationManager(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings).applyMigrations();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.model.LockMode;
+import com.innowise.model.MigrationPlan;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.PlannedMigration;
+import com.innowise.model.PlannedStatement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationPlannerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void plansPendingMigrationsWithoutChangingTheDatabase() throws IOException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE items (id int, price int);\n"
+                + "INSERT INTO items SELECT i, i FROM generate_series(1, 1000) i;\nANALYZE items;\n");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        settings.setPlanFile(directory.resolve("plan.json").toString());
+
+        MigrationPlan plan;
+        try (ConnectionManager connectionManager = database.connectionManager(2)) {
+            SchemaManager schemaManager = new SchemaManager(connectionManager);
+            MigrationFileReader reader = new MigrationFileReader(directory.toString());
+            assertTrue(new MigrationManager(connectionManager, schemaManager, reader, settings).applyMigrations().isSuccess());
+            Files.writeString(migrationsDir.resolve("V2__widen_price.sql"), "ALTER TABLE items ALTER COLUMN price TYPE bigint;\n");
+            Files.writeString(migrationsDir.resolve("V3__index_price.sql"),
+                    "-- migration: transactional=false\nCREATE INDEX CONCURRENTLY items_price ON items (price);\n");
+
+            plan = new MigrationPlanner(connectionManager, schemaManager, reader, settings).plan();
+        }
+
+        assertEquals(1, plan.getCurrentVersion());
+        assertEquals(LockMode.ACCESS_EXCLUSIVE, plan.getLockMode());
+        assertTrue(plan.isRewrite());
+        assertEquals(2, plan.getMigrations().size());
+
+        PlannedMigration typeChange = plan.getMigrations().get(0);
+        assertEquals(2, typeChange.getVersion());
+        assertTrue(typeChange.isTransactional());
+        assertTrue(typeChange.isRewrite());
+        assertEquals(LockMode.ACCESS_EXCLUSIVE, typeChange.getLockMode());
+        PlannedStatement alter = typeChange.getStatements().get(0);
+        assertEquals("ALTER TABLE", alter.getKind());
+        assertEquals(1000, alter.getEstimatedRows());
+        assertTrue(alter.getTableBytes() > 0);
+
+        PlannedMigration index = plan.getMigrations().get(1);
+        assertEquals(3, index.getVersion());
+        assertFalse(index.isTransactional());
+        assertFalse(index.isRewrite());
+        assertEquals(LockMode.SHARE_UPDATE_EXCLUSIVE, index.getLockMode());
+        assertEquals("CREATE INDEX", index.getStatements().get(0).getKind());
+
+        assertTrue(Files.exists(directory.resolve("plan.json")));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM schema_version"));
+        assertEquals(1, database.queryLong("SELECT count(*) FROM information_schema.columns "
+                + "WHERE table_name = 'items' AND column_name = 'price' AND data_type = 'integer'"));
+        assertEquals(0, database.queryLong("SELECT count(*) FROM pg_class WHERE relname = 'items_price'"));
+    }
+}
@@ -0,0 +1,200 @@
+package com.innowise.service;
+
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationResultRecords;
+import com.innowise.model.MigrationType;
+import com.innowise.model.SchemaHistory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationSchedulerTest {
+
+    @Test
+    void runsEveryMigrationAfterItsDependencies() {
+        Map<Integer, List<Integer>> dependencies = new HashMap<>();
+        dependencies.put(2, List.of(1));
+        dependencies.put(3, List.of(1));
+        dependencies.put(4, List.of(2, 3));
+        dependencies.put(5, List.of());
+        dependencies.put(6, List.of(4, 5));
+        RecordingCallbacks callbacks = new RecordingCallbacks(dependencies, Set.of());
+
+        boolean stopped = new MigrationScheduler(3, () -> false).run(migrations(1, 6), new SchemaHistory(4), callbacks);
+
+        assertFalse(stopped);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), sorted(callbacks.completed));
+        dependencies.forEach((version, required) -> required.forEach(dependency ->
+                assertTrue(callbacks.finishOrder.indexOf(dependency) < callbacks.startOrder.indexOf(version),
+                        version + " started before " + dependency + " finished")));
+    }
+
+    @Test
+    void dependsOnPreviousVersionByDefault() {
+        RecordingCallbacks callbacks = new RecordingCallbacks(Map.of(), Set.of());
+
+        new MigrationScheduler(4, () -> false).run(migrations(1, 5), new SchemaHistory(4), callbacks);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), callbacks.startOrder);
+        assertEquals(1, callbacks.maxConcurrency.get());
+    }
+
+    @Test
+    void neverRunsMoreThanWidthMigrationsAtOnce() {
+        Map<Integer, List<Integer>> dependencies = new HashMap<>();
+        for (int version = 1; version <= 12; version++) {
+            dependencies.put(version, List.of());
+        }
+        RecordingCallbacks callbacks = new RecordingCallbacks(dependencies, Set.of());
+
+        new MigrationScheduler(3, () -> false).run(migrations(1, 12), new SchemaHistory(4), callbacks);
+
+        assertEquals(12, callbacks.completed.size());
+        assertTrue(callbacks.maxConcurrency.get() <= 3);
+    }
+
+    @Test
+    void skipsDependentsOfFailedMigrations() {
+        Map<Integer, List<Integer>> dependencies = new HashMap<>();
+        dependencies.put(3, List.of(1));
+        dependencies.put(4, List.of(3));
+        RecordingCallbacks callbacks = new RecordingCallbacks(dependencies, Set.of(2));
+
+        new MigrationScheduler(2, () -> false).run(migrations(1, 4), new SchemaHistory(4), callbacks);
+
+        assertEquals(List.of(1, 3, 4), sorted(callbacks.completed));
+        assertEquals(Set.of(2), callbacks.failed.keySet());
+    }
+
+    @Test
+    void skipsUnknownDependenciesAndCycles() {
+        Map<Integer, List<Integer>> dependencies = new HashMap<>();
+        dependencies.put(1, List.of(99));
+        dependencies.put(2, List.of(3));
+        dependencies.put(3, List.of(2));
+        dependencies.put(4, List.of());
+        RecordingCallbacks callbacks = new RecordingCallbacks(dependencies, Set.of());
+
+        new MigrationScheduler(2, () -> false).run(migrations(1, 4), new SchemaHistory(4), callbacks);
+
+        assertEquals(List.of(4), callbacks.completed);
+        assertTrue(callbacks.failed.get(1).getMessage().contains("unknown version 99"));
+        assertTrue(callbacks.failed.get(2).getMessage().contains("cycle"));
+        assertTrue(callbacks.failed.get(3).getMessage().contains("cycle"));
+    }
+
+    @Test
+    void runsGapsAndTreatsAppliedDependenciesAsSatisfied() {
+        SchemaHistory history = new SchemaHistory(4);
+        history.put(1, 0);
+        history.put(3, 0);
+        RecordingCallbacks callbacks = new RecordingCallbacks(Map.of(), Set.of());
+
+        new MigrationScheduler(2, () -> false).run(migrations(1, 4), history, callbacks);
+
+        assertEquals(List.of(2, 4), sorted(callbacks.startOrder));
+    }
+
+    @Test
+    void stopsStartingMigrationsOnRequest() {
+        RecordingCallbacks callbacks = new RecordingCallbacks(Map.of(), Set.of());
+
+        boolean stopped = new MigrationScheduler(2, () -> callbacks.completed.size() >= 2)
+                .run(migrations(1, 5), new SchemaHistory(4), callbacks);
+
+        assertTrue(stopped);
+        assertEquals(List.of(1, 2), callbacks.completed);
+    }
+
+    @Test
+    void reportsResultsOnTheCallingThread() {
+        Map<Integer, List<Integer>> dependencies = Map.of(1, List.of(), 2, List.of(), 3, List.of());
+        RecordingCallbacks callbacks = new RecordingCallbacks(dependencies, Set.of(3));
+
+        new MigrationScheduler(3, () -> false).run(migrations(1, 3), new SchemaHistory(4), callbacks);
+
+        assertEquals(Set.of(Thread.currentThread()), callbacks.resultThreads);
+        assertFalse(callbacks.executeThreads.contains(Thread.currentThread()));
+    }
+
+    private static List<Migration> migrations(int from, int to) {
+        List<Migration> migrations = new ArrayList<>();
+        for (int version = from; version <= to; version++) {
+            migrations.add(new Migration(version, "m" + version, Path.of("V" + version + "__m.sql"), MigrationType.SQL, 0, 0));
+        }
+        return migrations;
+    }
+
+    private static List<Integer> sorted(List<Integer> versions) {
+        List<Integer> sorted = new ArrayList<>(versions);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static final class RecordingCallbacks implements MigrationScheduler.Callbacks {
+
+        private final Map<Integer, List<Integer>> dependencies;
+        private final Set<Integer> failing;
+        private final List<Integer> startOrder = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> finishOrder = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> completed = new ArrayList<>();
+        private final Map<Integer, Exception> failed = new HashMap<>();
+        private final Set<Thread> executeThreads = ConcurrentHashMap.newKeySet();
+        private final Set<Thread> resultThreads = new HashSet<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrency = new AtomicInteger();
+
+        private RecordingCallbacks(Map<Integer, List<Integer>> dependencies, Set<Integer> failing) {
+            this.dependencies = dependencies;
+            this.failing = failing;
+        }
+
+        @Override
+        public List<Integer> dependencies(Migration migration) {
+            return dependencies.get(migration.getVersion());
+        }
+
+        @Override
+        public MigrationResultRecords execute(Migration migration) throws Exception {
+            executeThreads.add(Thread.currentThread());
+            startOrder.add(migration.getVersion());
+            maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                if (failing.contains(migration.getVersion())) {
+                    throw new IllegalStateException("Migration " + migration.getVersion() + " failed");
+                }
+                return new MigrationResultRecords(migration.getVersion(), true, "applied");
+            } finally {
+                running.decrementAndGet();
+                finishOrder.add(migration.getVersion());
+            }
+        }
+
+        @Override
+        public void completed(Migration migration, MigrationResultRecords result) {
+            resultThreads.add(Thread.currentThread());
+            assertEquals(migration.getVersion(), result.getVersion());
+            completed.add(migration.getVersion());
+        }
+
+        @Override
+        public void failed(Migration migration, Exception e) {
+            resultThreads.add(Thread.currentThread());
+            failed.put(migration.getVersion(), e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.innowise.service;
+
+import com.innowise.exception.PropertiesUtilsException;
+import com.innowise.model.RuleSeverity;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationToolTest {
+
+    @Test
+    void parsesRuleSeverities() {
+        assertEquals(Map.of("index-not-concurrent", RuleSeverity.ERROR, "volatile-default", RuleSeverity.OFF),
+                MigrationTool.parseRuleSeverities(" Index-Not-Concurrent : error, volatile-default:off,"));
+    }
+
+    @Test
+    void rejectsInvalidRuleSeverities() {
+        assertRejected("index-not-concurrent", "index-not-concurrent");
+        assertRejected("index-not-concurrent:error:info", "index-not-concurrent:error:info");
+        assertRejected("no-such-rule:error", "no-such-rule:error");
+        assertRejected("index-not-concurrent:fatal", "index-not-concurrent:fatal");
+    }
+
+    private static void assertRejected(String severities, String entry) {
+        PropertiesUtilsException e = assertThrows(PropertiesUtilsException.class,
+                () -> MigrationTool.parseRuleSeverities(severities));
+        assertTrue(e.getMessage().contains("'" + entry + "'"), e.getMessage());
+    }
+}
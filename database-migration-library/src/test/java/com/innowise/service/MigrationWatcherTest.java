@@ -0,0 +1,131 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.connection.ConnectionManager;
+import com.innowise.model.Migration;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.RuleSeverity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsWatchingAfterAnalysisRejectsAChange() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE items (id int);\n");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        settings.setWatchDebounceMillis(100);
+        settings.setRuleSeverities(Map.of("index-not-concurrent", RuleSeverity.ERROR));
+
+        try (ConnectionManager connectionManager = database.connectionManager(4)) {
+            MigrationWatcher watcher = new MigrationWatcher(connectionManager, new SchemaManager(connectionManager),
+                    new MigrationFileReader(directory.toString()), settings);
+            Thread thread = new Thread(watcher::run, "migration-watcher");
+            thread.start();
+            try {
+                awaitVersions(database, 1);
+
+                Files.writeString(migrationsDir.resolve("V2__index.sql"), "CREATE INDEX items_id ON items (id);\n");
+                Thread.sleep(1000);
+                assertTrue(thread.isAlive(), "watching stopped after a rejected change");
+                assertEquals(1, database.queryLong("SELECT count(*) FROM schema_version"));
+
+                Files.writeString(migrationsDir.resolve("V2__index.sql"),
+                        "-- migration: allow=index-not-concurrent\nCREATE INDEX items_id ON items (id);\n");
+                awaitVersions(database, 2);
+
+                Files.writeString(migrationsDir.resolve("V3__column.sql"), "ALTER TABLE items ADD COLUMN name text;\n");
+                awaitVersions(database, 3);
+                assertTrue(thread.isAlive());
+            } finally {
+                watcher.stop();
+                thread.join(TIMEOUT_MILLIS);
+            }
+        }
+    }
+
+    @Test
+    void reappliesChangedRepeatableWithoutRescanningTheOthers() throws Exception {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE log (name text);\n");
+        Files.writeString(migrationsDir.resolve("R__first.sql"), "INSERT INTO log VALUES ('first');\n");
+        Files.writeString(migrationsDir.resolve("R__second.sql"), "INSERT INTO log VALUES ('second');\n");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        settings.setWatchDebounceMillis(100);
+        AtomicInteger repeatableScans = new AtomicInteger();
+        MigrationFileReader reader = new MigrationFileReader(directory.toString()) {
+            @Override
+            public List<Migration> loadRepeatableMigrations(MigrationSettings runSettings) {
+                repeatableScans.incrementAndGet();
+                return super.loadRepeatableMigrations(runSettings);
+            }
+        };
+
+        try (ConnectionManager connectionManager = database.connectionManager(4)) {
+            MigrationWatcher watcher = new MigrationWatcher(connectionManager, new SchemaManager(connectionManager),
+                    reader, settings);
+            Thread thread = new Thread(watcher::run, "migration-watcher");
+            thread.start();
+            try {
+                awaitCount(database, "SELECT count(*) FROM log", 2);
+
+                Files.writeString(migrationsDir.resolve("R__first.sql"), "INSERT INTO log VALUES ('first again');\n");
+                awaitCount(database, "SELECT count(*) FROM log", 3);
+                Files.writeString(migrationsDir.resolve("V2__insert.sql"), "INSERT INTO log VALUES ('v2');\n");
+                awaitVersions(database, 2);
+            } finally {
+                watcher.stop();
+                thread.join(TIMEOUT_MILLIS);
+            }
+        }
+
+        assertEquals(1, repeatableScans.get());
+        assertEquals(1, database.queryLong("SELECT count(*) FROM log WHERE name = 'second'"));
+        assertEquals(2, database.queryLong("SELECT count(*) FROM schema_repeatable"));
+    }
+
+    private static void awaitCount(TestDatabase database, String sql, long count) throws InterruptedException {
+        await(() -> {
+            try {
+                return database.queryLong(sql) == count;
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        });
+    }
+
+    private static void awaitVersions(TestDatabase database, int count) throws InterruptedException {
+        awaitCount(database, "SELECT count(*) FROM schema_version", count);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.model.MigrationSettings;
+import com.innowise.model.MigrationTarget;
+import com.innowise.model.TargetRunResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiTargetMigrationRunnerTest {
+
+    private static final int MIGRATIONS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void migratesDatabaseAndSchemaTargetsInParallel() throws IOException {
+        TestDatabase defaultDatabase = TestDatabase.create();
+        List<TestDatabase> databases = List.of(TestDatabase.create(), TestDatabase.create());
+        List<MigrationTarget> targets = new ArrayList<>();
+        for (int i = 0; i < databases.size(); i++) {
+            targets.add(MigrationTarget.ofUrl("db" + i, databases.get(i).getUrl()));
+        }
+        for (int i = 0; i < 4; i++) {
+            defaultDatabase.execute("CREATE SCHEMA tenant_" + i);
+            targets.add(MigrationTarget.ofSchema("tenant_" + i));
+        }
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(TestDatabase.writeMigrations(directory, "items", MIGRATIONS, 0.05, true).toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        settings.setParallelWidth(2);
+        settings.setTargetConcurrency(3);
+        settings.setLockWatchdogEnabled(true);
+
+        List<TargetRunResult> results = new MultiTargetMigrationRunner(defaultDatabase.getUrl(), defaultDatabase.getUser(),
+                defaultDatabase.getUser(), new MigrationFileReader(directory.toString()), settings).run(targets);
+
+        assertEquals(targets.size(), results.size());
+        for (TargetRunResult result : results) {
+            assertTrue(result.isSuccess(), result.getTarget() + ": " + result.getError());
+            assertEquals(MIGRATIONS, result.getRun().getAppliedCount());
+            assertEquals(MIGRATIONS, result.getRun().getCurrentVersion());
+        }
+        for (TestDatabase database : databases) {
+            assertEquals(MIGRATIONS, database.queryLong("SELECT count(*) FROM schema_version"));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(MIGRATIONS, defaultDatabase.queryLong("SELECT count(*) FROM tenant_" + i + ".schema_version"));
+            assertEquals(MIGRATIONS, defaultDatabase.queryLong("SELECT count(*) FROM tenant_" + i + ".items"));
+        }
+        assertTrue(Files.exists(directory.resolve("report.json")));
+    }
+}
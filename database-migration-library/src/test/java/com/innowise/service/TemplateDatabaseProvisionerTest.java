@@ -0,0 +1,116 @@
+package com.innowise.service;
+
+import com.innowise.TestDatabase;
+import com.innowise.model.MigrationSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateDatabaseProvisionerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reusesTemplatesAndEvictsTheLeastRecentlyUsed() throws IOException, SQLException, InterruptedException {
+        TestDatabase database = TestDatabase.create();
+        Path migrationsDir = Files.createDirectories(directory.resolve("migrations"));
+        Files.writeString(migrationsDir.resolve("V1__create.sql"), "CREATE TABLE provisioned_items (id int);\n");
+        MigrationSettings settings = new MigrationSettings();
+        settings.setMigrationsDir(migrationsDir.toString());
+        settings.setReportFile(directory.resolve("report.json").toString());
+        settings.setTemplateMaxCount(2);
+        TemplateDatabaseProvisioner provisioner = new TemplateDatabaseProvisioner(database.getUrl(), database.getUser(),
+                database.getUser(), new MigrationFileReader(directory.toString()), settings);
+        Set<String> before = templates(database);
+
+        provisioner.provision("provisioned_1");
+        String first = single(difference(templates(database), before));
+        // a marker only the existing template has shows that the second copy is not built again
+        execute(database, first, "CREATE TABLE template_marker (id int)");
+        String secondUrl = provisioner.provision("provisioned_2");
+        assertEquals(1, difference(templates(database), before).size());
+        assertEquals(1, count(database, secondUrl, "SELECT count(*) FROM pg_class WHERE relname = 'template_marker'"));
+        assertEquals(1, count(database, secondUrl, "SELECT count(*) FROM schema_version"));
+        assertFalse(Files.exists(directory.resolve("provisioned_2-report.json")));
+
+        Thread.sleep(10);
+        Files.writeString(migrationsDir.resolve("V2__insert.sql"), "INSERT INTO provisioned_items VALUES (2);\n");
+        provisioner.provision("provisioned_3");
+        String second = single(difference(templates(database), Set.of(first), before));
+
+        Thread.sleep(10);
+        Files.delete(migrationsDir.resolve("V2__insert.sql"));
+        provisioner.provision("provisioned_4");
+
+        Thread.sleep(10);
+        Files.writeString(migrationsDir.resolve("V2__other.sql"), "INSERT INTO provisioned_items VALUES (3), (3);\n");
+        String fifthUrl = provisioner.provision("provisioned_5");
+
+        Set<String> remaining = difference(templates(database), before);
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.contains(first), "the recently used template was evicted");
+        assertFalse(remaining.contains(second), "the least recently used template was kept");
+        assertEquals(2, count(database, fifthUrl, "SELECT count(*) FROM provisioned_items"));
+        for (int i = 1; i <= 5; i++) {
+            provisioner.drop("provisioned_" + i);
+        }
+    }
+
+    private static Set<String> templates(TestDatabase database) throws SQLException {
+        Set<String> templates = new HashSet<>();
+        try (Connection connection = database.connect();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT datname FROM pg_database WHERE datname LIKE 'migration\\_template\\_%'")) {
+            while (rs.next()) {
+                templates.add(rs.getString(1));
+            }
+        }
+        return templates;
+    }
+
+    @SafeVarargs
+    private static Set<String> difference(Set<String> templates, Set<String>... excluded) {
+        Set<String> difference = new HashSet<>(templates);
+        for (Set<String> names : excluded) {
+            difference.removeAll(names);
+        }
+        return difference;
+    }
+
+    private static String single(Set<String> templates) {
+        assertEquals(1, templates.size(), templates.toString());
+        return templates.iterator().next();
+    }
+
+    private static void execute(TestDatabase database, String databaseName, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(TemplateDatabaseProvisioner.withDatabase(database.getUrl(),
+                databaseName), database.getUser(), database.getUser());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static long count(TestDatabase database, String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, database.getUser(), database.getUser());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}